@@ -25,20 +25,41 @@
 package me.finalchild.finalnbt;
 
 import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.io.NBTReader;
+import me.finalchild.finalnbt.io.NBTWriter;
+import me.finalchild.finalnbt.query.NBTQuery;
+import me.finalchild.finalnbt.serialize.NBTSerializable;
 import me.finalchild.finalnbt.serialize.NBTSerializer;
+import me.finalchild.finalnbt.serialize.ReflectiveSerializer;
 import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArena;
+import me.finalchild.finalnbt.type.TagInterner;
 
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FinalNBT {
 
     private static Map<Class, NBTSerializer> serializers = new HashMap<>();
-    private static Map<DataInputStream, Integer> depths = new HashMap<>();
+    private static final ClassValue<NBTSerializer> fallbacks = new ClassValue<NBTSerializer>() {
+        @Override
+        protected NBTSerializer computeValue(Class<?> type) {
+            Method serialize = method(type, "serialize");
+            Method deserialize = method(type, "deserialize", Compound.class);
+            if (serialize == null && deserialize == null && !NBTSerializable.class.isAssignableFrom(type)) {
+                return ReflectiveSerializer.of(type);
+            }
+            return new MethodSerializer(type, serialize, deserialize);
+        }
+    };
+    private static Map<DataInput, Integer> depths = new ConcurrentHashMap<>();
+    private static Map<DataInput, TagInterner> interners = new ConcurrentHashMap<>();
+    private static Map<DataInput, NBTLimits.Tracker> trackers = new ConcurrentHashMap<>();
+    private static Map<DataInput, OffHeapArena> arenas = new ConcurrentHashMap<>();
 
     /**
      * Register an NBTSerializer.
@@ -67,10 +88,55 @@ public class FinalNBT {
      * @throws IOException
      */
     public static NamedTag<Compound> readNBT(InputStream input) throws IOException {
-        DataInputStream stream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)));
-        NamedTag<Compound> value = NamedTag.read(stream);
-        stream.close();
-        return value;
+        return NBTReader.forThread().read(input);
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream using GZIP, deduplicating identical values through the interner.
+     * Small compounds and lists may share their contents with others and are copied on their first change.
+     * Interned arrays are shared, so they MUST NOT be changed in place.
+     * @param input The stream to read from. DO NOT put a GZIPped stream. We will do it for you.
+     * @param interner The interner to deduplicate values through. It may be shared between reads.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public static NamedTag<Compound> readNBT(InputStream input, TagInterner interner) throws IOException {
+        return NBTReader.forThread().read(input, interner);
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream using GZIP, within the limits.
+     * @param input The stream to read from. DO NOT put a GZIPped stream. We will do it for you.
+     * @param limits The limits, such as {@link NBTLimits#UNTRUSTED}.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     * @throws me.finalchild.finalnbt.exception.LimitException If the data exceeds the limits.
+     */
+    public static NamedTag<Compound> readNBT(InputStream input, NBTLimits limits) throws IOException {
+        return NBTReader.forThread().read(input, null, limits);
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream using GZIP, decoding large byte and int arrays into the arena's native memory.
+     * Such arrays are {@link me.finalchild.finalnbt.type.OffHeapArray}s and MUST NOT be used after the arena is closed.
+     * @param input The stream to read from. DO NOT put a GZIPped stream. We will do it for you.
+     * @param arena The arena to allocate large arrays from.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public static NamedTag<Compound> readNBT(InputStream input, OffHeapArena arena) throws IOException {
+        return NBTReader.forThread().read(input, arena);
+    }
+
+    /**
+     * Run the query on a named NBT compound tag from the stream using GZIP, decoding only what the query needs.
+     * @param input The stream to read from. DO NOT put a GZIPped stream. We will do it for you.
+     * @param query The query.
+     * @return The root's name with the projection, or null if it doesn't match.
+     * @throws IOException IOException.
+     */
+    public static NamedTag<Compound> readNBT(InputStream input, NBTQuery query) throws IOException {
+        return NBTReader.forThread().read(input, query);
     }
 
     /**
@@ -82,10 +148,7 @@ public class FinalNBT {
      * @throws IOException IOException.
      */
     public static <T> NamedTag<T> readNBT(InputStream input, Class<T> c) throws IOException {
-        DataInputStream stream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(input)));
-        NamedTag<T> value = NamedTag.read(stream, c);
-        stream.close();
-        return value;
+        return NBTReader.forThread().read(input, c);
     }
 
     /**
@@ -95,9 +158,7 @@ public class FinalNBT {
      * @throws IOException IOException.
      */
     public static void writeNBT(OutputStream output, NamedTag<Compound> nbt) throws IOException {
-        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(output)));
-        nbt.write(stream);
-        stream.close();
+        NBTWriter.forThread().write(output, nbt);
     }
 
     /**
@@ -109,49 +170,45 @@ public class FinalNBT {
      * @throws IOException IOException.
      */
     public static <T> void writeNBT(OutputStream output, NamedTag<T> nbt, Class<T> c) throws IOException {
-        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(output)));
-        nbt.write(stream, c);
-        stream.close();
+        NBTWriter.forThread().write(output, nbt, c);
     }
 
     /**
      * Deserialize an NBT compound tag.
+     * Types that neither have a registered serializer nor implement NBTSerializable are deserialized by {@link ReflectiveSerializer}.
      * @param nbt NBT compound tag.
      * @param c The type of the NBT.
      * @param <T> The type of the NBT.
      * @return Deserialized object.
      */
     public static <T> T deserialize(Compound nbt, Class<T> c) {
-        NBTSerializer<T> serializer = FinalNBT.getSerializer(c);
-        if (serializer != null) {
-            return serializer.deserialize(nbt);
-        } else {
-            try {
-                return (T) c.getMethod("deserialize", Compound.class).invoke(null, nbt);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                throw new UnsupportedTypeException(c);
-            }
-        }
+        return resolveSerializer(c).deserialize(nbt);
     }
 
     /**
      * Serialize an object to an NBT compound tag.
+     * Types that neither have a registered serializer nor implement NBTSerializable are serialized by {@link ReflectiveSerializer}.
      * @param object The object.
      * @param c The type of the object.
      * @param <T> The type of the object.
      * @return Serialized NBT compound tag.
      */
     public static <T> Compound serialize(T object, Class<T> c) {
+        return resolveSerializer(c).serialize(object);
+    }
+
+    /**
+     * Get the serializer that {@link #serialize(Object, Class)} and {@link #deserialize(Compound, Class)} use for the type:
+     * the registered one, one calling the methods of NBTSerializable, or a {@link ReflectiveSerializer}.
+     * Resolve it once to convert many objects of the same type.
+     * @param c The type.
+     * @param <T> The type.
+     * @return The serializer.
+     * @throws UnsupportedTypeException If the type can't be serialized.
+     */
+    public static <T> NBTSerializer<T> resolveSerializer(Class<T> c) {
         NBTSerializer<T> serializer = FinalNBT.getSerializer(c);
-        if (serializer != null) {
-            return serializer.serialize(object);
-        } else {
-            try {
-                return (Compound) c.getMethod("serialize").invoke(object);
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                throw new UnsupportedTypeException(c);
-            }
-        }
+        return serializer != null ? serializer : fallbacks.get(c);
     }
 
     /**
@@ -177,19 +234,129 @@ public class FinalNBT {
     /**
      * For internal use only.
      */
-    public static int getDepth(DataInputStream stream) {
-        if (depths.containsKey(stream)) {
-            return depths.get(stream);
+    public static int getDepth(DataInput stream) {
+        Integer depth = depths.get(stream);
+        return depth != null ? depth : 0;
+    }
+
+    /**
+     * For internal use only. Depth 0 removes the stream.
+     */
+    public static void setDepth(DataInput stream, int depth) {
+        if (depth == 0) {
+            depths.remove(stream);
         } else {
-            return 0;
+            depths.put(stream, depth);
         }
     }
 
     /**
      * For internal use only.
      */
-    public static void setDepth(DataInputStream stream, int depth) {
-        depths.put(stream, depth);
+    public static TagInterner getInterner(DataInput stream) {
+        return interners.isEmpty() ? null : interners.get(stream);
+    }
+
+    /**
+     * Deduplicate the values read from the stream through the interner.
+     * @param stream The stream.
+     * @param interner The interner, or null to stop deduplicating.
+     */
+    public static void setInterner(DataInput stream, TagInterner interner) {
+        if (interner == null) {
+            interners.remove(stream);
+        } else {
+            interners.put(stream, interner);
+        }
+    }
+
+    /**
+     * For internal use only.
+     */
+    public static NBTLimits.Tracker getTracker(DataInput stream) {
+        return trackers.isEmpty() ? null : trackers.get(stream);
+    }
+
+    /**
+     * Limit what may be read from the stream, from now on.
+     * @param stream The stream.
+     * @param limits The limits, or null to stop limiting.
+     */
+    public static void setLimits(DataInput stream, NBTLimits limits) {
+        if (limits == null) {
+            trackers.remove(stream);
+        } else {
+            trackers.put(stream, limits.track());
+        }
+    }
+
+    /**
+     * For internal use only.
+     */
+    public static OffHeapArena getArena(DataInput stream) {
+        return arenas.isEmpty() ? null : arenas.get(stream);
+    }
+
+    /**
+     * Decode large arrays read from the stream into the arena, from now on.
+     * @param stream The stream.
+     * @param arena The arena, or null to decode them on the heap.
+     */
+    public static void setArena(DataInput stream, OffHeapArena arena) {
+        if (arena == null) {
+            arenas.remove(stream);
+        } else {
+            arenas.put(stream, arena);
+        }
+    }
+
+    private static Method method(Class<?> c, String name, Class<?>... parameterTypes) {
+        try {
+            return c.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calls the serialize method of an NBTSerializable and its static deserialize method.
+     */
+    private static class MethodSerializer implements NBTSerializer<Object> {
+
+        private final Class<?> type;
+        private final Method serialize;
+        private final Method deserialize;
+
+        MethodSerializer(Class<?> type, Method serialize, Method deserialize) {
+            this.type = type;
+            this.serialize = serialize;
+            this.deserialize = deserialize;
+        }
+
+        @Override
+        public Compound serialize(Object object) {
+            if (serialize == null) {
+                throw new UnsupportedTypeException(type);
+            }
+            try {
+                return (Compound) serialize.invoke(object);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new UnsupportedTypeException(type);
+            }
+        }
+
+        @Override
+        public Object deserialize(Compound nbt) {
+            if (deserialize == null) {
+                throw new UnsupportedTypeException(type);
+            }
+            try {
+                return deserialize.invoke(null, nbt);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new UnsupportedTypeException(type);
+            }
+        }
+
     }
 
 }
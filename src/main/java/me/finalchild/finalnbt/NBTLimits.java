@@ -0,0 +1,187 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt;
+
+import me.finalchild.finalnbt.exception.LimitException;
+
+/**
+ * Limits on what a single read may decode, for NBT from untrusted sources.
+ *
+ * Every array, string, list and compound is charged its estimated heap size before it is allocated,
+ * so a forged length fails the read instead of allocating. The read is also limited in its number of tags
+ * and in the length of its strings. Exceeding a limit throws {@link LimitException}.
+ */
+public final class NBTLimits {
+
+    /**
+     * No limits.
+     */
+    public static final NBTLimits UNLIMITED = new NBTLimits(Long.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    /**
+     * Limits for NBT from clients: 2 MiB, 65536 tags, and strings of 32767 chars.
+     */
+    public static final NBTLimits UNTRUSTED = new NBTLimits(2L << 20, 65536, 32767);
+
+    private final long maxBytes;
+    private final long maxTags;
+    private final int maxStringLength;
+
+    /**
+     * @param maxBytes The estimated heap size the decoded tags may take.
+     * @param maxTags The number of tags that may be decoded.
+     * @param maxStringLength The number of chars a string may have.
+     */
+    public NBTLimits(long maxBytes, long maxTags, int maxStringLength) {
+        this.maxBytes = maxBytes;
+        this.maxTags = maxTags;
+        this.maxStringLength = maxStringLength;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getMaxTags() {
+        return maxTags;
+    }
+
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Start accounting for a read.
+     * @return A new tracker.
+     */
+    public Tracker track() {
+        return new Tracker();
+    }
+
+    /**
+     * What a read has used so far.
+     */
+    public final class Tracker {
+
+        private long bytes;
+        private long tags;
+
+        private Tracker() {
+        }
+
+        /**
+         * Charge heap bytes about to be allocated.
+         * @param n The number of bytes.
+         * @throws LimitException If that exceeds the budget.
+         * @throws IllegalArgumentException If n is negative, which would refund the budget.
+         */
+        public void charge(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("Negative charge " + n);
+            }
+            bytes += n;
+            if (bytes > maxBytes || bytes < 0) {
+                throw new LimitException("Tried to read NBT data of more than " + maxBytes + " bytes!");
+            }
+        }
+
+        /**
+         * Count tags about to be decoded.
+         * @param n The number of tags.
+         * @throws LimitException If that exceeds the limit.
+         * @throws IllegalArgumentException If n is negative, which would refund the limit.
+         */
+        public void count(long n) {
+            if (n < 0) {
+                throw new IllegalArgumentException("Negative count " + n);
+            }
+            tags += n;
+            if (tags > maxTags || tags < 0) {
+                throw new LimitException("Tried to read more than " + maxTags + " NBT tags!");
+            }
+        }
+
+        /**
+         * Charge a decoded string.
+         * @param s The string.
+         * @throws LimitException If it is too long, or exceeds the budget.
+         */
+        public void string(String s) {
+            if (s.length() > maxStringLength) {
+                throw new LimitException("Tried to read an NBT string longer than " + maxStringLength + " chars!");
+            }
+            charge(40 + 2L * s.length());
+        }
+
+        /**
+         * Check a string's encoded length before it is read.
+         * @param bytes The length in UTF-8, which takes at most 3 bytes per char.
+         * @throws LimitException If no string of that many bytes fits in the limit.
+         */
+        public void encodedString(long bytes) {
+            if (bytes > 3L * maxStringLength) {
+                throw new LimitException("Tried to read an NBT string longer than " + maxStringLength + " chars!");
+            }
+        }
+
+        /**
+         * Charge an array before it is allocated.
+         * @param length The number of elements.
+         * @param elementBytes The heap size of each element.
+         * @throws LimitException If the length is negative, or the array exceeds the budget.
+         */
+        public void array(int length, long elementBytes) {
+            if (length < 0) {
+                throw new LimitException("Tried to read an NBT array of negative length!");
+            }
+            count(1);
+            charge(16 + elementBytes * length);
+        }
+
+        /**
+         * Charge a list's elements before they are decoded.
+         * @param type The tag type of the elements.
+         * @param length The number of elements.
+         * @throws LimitException If the length is negative, or the elements exceed the limits.
+         */
+        public void list(TagType<?> type, int length) {
+            if (length < 0) {
+                throw new LimitException("Tried to read an NBT list of negative length!");
+            }
+            count(length);
+            // A reference each, plus the box of a number. Other elements charge themselves.
+            charge((type.getId() >= 1 && type.getId() <= 6 ? 20L : 4L) * length);
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getTags() {
+            return tags;
+        }
+
+    }
+
+}
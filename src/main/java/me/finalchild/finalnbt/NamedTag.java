@@ -27,8 +27,8 @@ package me.finalchild.finalnbt;
 import me.finalchild.finalnbt.exception.UnsupportedTypeException;
 import me.finalchild.finalnbt.type.Compound;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 
 /**
@@ -54,13 +54,13 @@ public class NamedTag<T> {
     }
 
     /**
-     * Read a NamedTag with a standard tag type from the DataInputStream.
+     * Read a NamedTag with a standard tag type from the DataInput.
      * @param stream The stream to read from. A GZIPped stream is recommended.
      * @param <T> A standard tag type.
      * @return A NamedTag with a standard tag type.
      * @throws IOException IOException.
      */
-    public static <T> NamedTag<T> read(DataInputStream stream) throws IOException {
+    public static <T> NamedTag<T> read(DataInput stream) throws IOException {
         TagType type = TagType.read(stream);
         assert type != null;
         String name;
@@ -69,29 +69,29 @@ public class NamedTag<T> {
         } else {
             name = stream.readUTF();
         }
-        T value = (T) type.readValue(stream);
+        T value = (T) type.readTag(stream);
         return new NamedTag<>(name, value);
     }
 
     /**
-     * Read a NamedTag with a non-standard tag type(custom class) from the DataInputStream.
+     * Read a NamedTag with a non-standard tag type(custom class) from the DataInput.
      * @param stream The stream to read from. A GZIPped stream is recommended.
      * @param c A non-standard tag type.
      * @param <T> A non-standard tag type.
      * @return A NamedTag with a non-standard tag type.
      * @throws IOException IOException.
      */
-    public static <T> NamedTag<T> read(DataInputStream stream, Class<T> c) throws IOException {
+    public static <T> NamedTag<T> read(DataInput stream, Class<T> c) throws IOException {
         NamedTag<Compound> tag = NamedTag.read(stream);
         return new NamedTag<>(tag.getName(), FinalNBT.deserialize(tag.getValue(), c));
     }
 
     /**
-     * Write this NameTag with a standard tag type to the DataOutputStream.
+     * Write this NameTag with a standard tag type to the DataOutput.
      * @param stream The stream to write to. A GZIPped stream is recommended.
      * @throws IOException IOException.
      */
-    public void write(DataOutputStream stream) throws IOException {
+    public void write(DataOutput stream) throws IOException {
         TagType type = TagType.fromValue(getValue());
         if (type == null) {
             throw new UnsupportedTypeException(getValue().getClass());
@@ -100,16 +100,16 @@ public class NamedTag<T> {
         if (type != TagType.END) {
             stream.writeUTF(getName());
         }
-        type.writeValue(stream, getValue());
+        type.writeTag(stream, getValue());
     }
 
     /**
-     * Write this NameTag with a non-standard tag type(custom class) to the DataOutputStream.
+     * Write this NameTag with a non-standard tag type(custom class) to the DataOutput.
      * @param stream The stream to write to. A GZIPped stream is recommended.
      * @param c A non-standard tag type.
      * @throws IOException IOException.
      */
-    public void write(DataOutputStream stream, Class<T> c) throws IOException {
+    public void write(DataOutput stream, Class<T> c) throws IOException {
         NamedTag<Compound> tag = new NamedTag<>(getName(), FinalNBT.serialize(getValue(), c));
         tag.write(stream);
     }
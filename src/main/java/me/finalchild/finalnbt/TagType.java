@@ -25,13 +25,21 @@
 package me.finalchild.finalnbt;
 
 import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.io.NBTDataInput;
 import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArena;
+import me.finalchild.finalnbt.type.OffHeapArray;
+import me.finalchild.finalnbt.type.OffHeapByteArray;
+import me.finalchild.finalnbt.type.OffHeapIntArray;
+import me.finalchild.finalnbt.type.TagInterner;
 import me.finalchild.finalnbt.type.TypedList;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * Standard NBT tag types.
@@ -41,160 +49,338 @@ public abstract class TagType<T> {
 
     public static final TagType<Void> END = new TagType<Void>((byte) 0, Void.class) {
         @Override
-        public Void readValue(DataInputStream stream) {
+        public Void readValue(DataInput stream) {
             return null;
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Void value) {
+        public void writeValue(DataOutput stream, Void value) {
         }
     };
     public static final TagType<Byte> BYTE = new TagType<Byte>((byte) 1, Byte.class) {
         @Override
-        public Byte readValue(DataInputStream stream) throws IOException {
+        public Byte readValue(DataInput stream) throws IOException {
             return stream.readByte();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Byte value) throws IOException {
+        public void writeValue(DataOutput stream, Byte value) throws IOException {
             stream.writeByte(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipFully(stream, 1);
+        }
     };
     public static final TagType<Short> SHORT = new TagType<Short>((byte) 2, Short.class) {
         @Override
-        public Short readValue(DataInputStream stream) throws IOException {
+        public Short readValue(DataInput stream) throws IOException {
             return stream.readShort();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Short value) throws IOException {
+        public void writeValue(DataOutput stream, Short value) throws IOException {
             stream.writeShort(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipFully(stream, 2);
+        }
     };
     public static final TagType<Integer> INT = new TagType<Integer>((byte) 3, Integer.class) {
         @Override
-        public Integer readValue(DataInputStream stream) throws IOException {
+        public Integer readValue(DataInput stream) throws IOException {
             return stream.readInt();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Integer value) throws IOException {
+        public void writeValue(DataOutput stream, Integer value) throws IOException {
             stream.writeInt(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipInt(stream);
+        }
     };
     public static final TagType<Long> LONG = new TagType<Long>((byte) 4, Long.class) {
         @Override
-        public Long readValue(DataInputStream stream) throws IOException {
+        public Long readValue(DataInput stream) throws IOException {
             return stream.readLong();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Long value) throws IOException {
+        public void writeValue(DataOutput stream, Long value) throws IOException {
             stream.writeLong(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            if (stream instanceof NBTDataInput) {
+                ((NBTDataInput) stream).skipLong();
+            } else {
+                skipFully(stream, 8);
+            }
+        }
     };
     public static final TagType<Float> FLOAT = new TagType<Float>((byte) 5, Float.class) {
         @Override
-        public Float readValue(DataInputStream stream) throws IOException {
+        public Float readValue(DataInput stream) throws IOException {
             return stream.readFloat();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Float value) throws IOException {
+        public void writeValue(DataOutput stream, Float value) throws IOException {
             stream.writeFloat(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipFully(stream, 4);
+        }
     };
     public static final TagType<Double> DOUBLE = new TagType<Double>((byte) 6, Double.class) {
         @Override
-        public Double readValue(DataInputStream stream) throws IOException {
+        public Double readValue(DataInput stream) throws IOException {
             return stream.readDouble();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Double value) throws IOException {
+        public void writeValue(DataOutput stream, Double value) throws IOException {
             stream.writeDouble(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipFully(stream, 8);
+        }
     };
     public static final TagType<Byte[]> BYTE_ARRAY = new TagType<Byte[]>((byte) 7, Byte[].class) {
         @Override
-        public Byte[] readValue(DataInputStream stream) throws IOException {
+        public Byte[] readValue(DataInput stream) throws IOException {
             int length = stream.readInt();
-            Byte[] value = new Byte[length];
-            for (int i = 0; i < length; i ++) {
-                value[i] = stream.readByte();
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.array(length, 4);
+            }
+            return readElements(stream, length);
+        }
+
+        @Override
+        public Object readTag(DataInput stream) throws IOException {
+            OffHeapArena arena = FinalNBT.getArena(stream);
+            if (arena == null) {
+                return readValue(stream);
+            }
+            int length = stream.readInt();
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.array(length, arena.accepts(length) ? 1 : 4);
+            }
+            return arena.accepts(length) ? arena.readBytes(stream, length) : readElements(stream, length);
+        }
+
+        private Byte[] readElements(DataInput stream, int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Negative length " + length);
+            }
+            // Grow as the elements arrive, so a forged length fails at the end of the input rather than allocating.
+            Byte[] value = new Byte[Math.min(length, 8192)];
+            byte[] chunk = new byte[Math.min(length, 8192)];
+            for (int i = 0; i < length; i += chunk.length) {
+                if (i == value.length) {
+                    value = Arrays.copyOf(value, (int) Math.min(length, 2L * i));
+                }
+                int n = Math.min(chunk.length, length - i);
+                stream.readFully(chunk, 0, n);
+                for (int j = 0; j < n; j ++) {
+                    value[i + j] = chunk[j];
+                }
             }
             return value;
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Byte[] value) throws IOException {
+        public void writeValue(DataOutput stream, Byte[] value) throws IOException {
             stream.writeInt(value.length);
-            for (Byte b : value) {
-                stream.writeByte(b);
+            byte[] chunk = new byte[Math.min(value.length, 8192)];
+            for (int i = 0; i < value.length; i += chunk.length) {
+                int n = Math.min(chunk.length, value.length - i);
+                for (int j = 0; j < n; j ++) {
+                    chunk[j] = value[i + j];
+                }
+                stream.write(chunk, 0, n);
             }
         }
+
+        @Override
+        public void writeTag(DataOutput stream, Object value) throws IOException {
+            if (value instanceof OffHeapByteArray) {
+                ((OffHeapByteArray) value).writeTo(stream);
+            } else {
+                writeValue(stream, (Byte[]) value);
+            }
+        }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            skipFully(stream, stream.readInt());
+        }
     };
     public static final TagType<String> STRING = new TagType<String>((byte) 8, String.class) {
         @Override
-        public String readValue(DataInputStream stream) throws IOException {
+        public String readValue(DataInput stream) throws IOException {
             return stream.readUTF();
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, String value) throws IOException {
+        public void writeValue(DataOutput stream, String value) throws IOException {
             stream.writeUTF(value);
         }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            if (stream instanceof NBTDataInput) {
+                ((NBTDataInput) stream).skipString();
+            } else {
+                skipFully(stream, stream.readUnsignedShort());
+            }
+        }
     };
     public static final TagType<TypedList> LIST = new TagType<TypedList>((byte) 9, TypedList.class) {
         @Override
-        public TypedList readValue(DataInputStream stream) throws IOException {
+        public TypedList readValue(DataInput stream) throws IOException {
             int depth = FinalNBT.getDepth(stream);
             if (depth > 511) {
                 throw new DepthException();
             }
             FinalNBT.setDepth(stream, depth + 1);
 
-            TagType type = TagType.read(stream);
-            assert type != null;
-            int length = stream.readInt();
-            TypedList value = new TypedList(type);
-            for (int i = 0; i < length; i ++) {
-                value.add(type.readValue(stream));
+            TypedList value;
+            try {
+                TagType type = TagType.read(stream);
+                if (type == null) {
+                    throw new IOException("Unknown tag type");
+                }
+                int length = stream.readInt();
+                if (length < 0) {
+                    throw new IOException("Negative length " + length);
+                }
+                if (type == END && length > 0) {
+                    throw new IOException("A list of " + length + " end tags");
+                }
+                NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+                if (tracker != null) {
+                    tracker.charge(40);
+                    tracker.list(type, length);
+                }
+                value = new TypedList(type);
+                for (int i = 0; i < length; i ++) {
+                    Object element = type.readTag(stream);
+                    if (tracker != null && type == STRING) {
+                        tracker.string((String) element);
+                    }
+                    value.add(element);
+                }
+            } finally {
+                FinalNBT.setDepth(stream, depth);
+            }
+            TagInterner interner = FinalNBT.getInterner(stream);
+            return interner != null ? interner.intern(value) : value;
+        }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            int depth = FinalNBT.getDepth(stream);
+            if (depth > 511) {
+                throw new DepthException();
+            }
+            FinalNBT.setDepth(stream, depth + 1);
+            try {
+                TagType type = TagType.read(stream);
+                if (type == null) {
+                    throw new IOException("Unknown tag type");
+                }
+                int length = stream.readInt();
+                if (length < 0) {
+                    throw new IOException("Negative length " + length);
+                }
+                if (type == END && length > 0) {
+                    throw new IOException("A list of " + length + " end tags");
+                }
+                for (int i = 0; i < length; i ++) {
+                    type.skipValue(stream);
+                }
+            } finally {
+                FinalNBT.setDepth(stream, depth);
             }
-            FinalNBT.setDepth(stream, depth);
-            return value;
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, TypedList value) throws IOException {
+        public void writeValue(DataOutput stream, TypedList value) throws IOException {
             TagType type = value.getType();
             type.write(stream);
             stream.writeInt(value.size());
             for (Object e : value) {
-                type.writeValue(stream, e);
+                type.writeTag(stream, e);
             }
         }
     };
     public static final TagType<Compound> COMPOUND = new TagType<Compound>((byte) 10, Compound.class) {
         @Override
-        public Compound readValue(DataInputStream stream) throws IOException {
+        public Compound readValue(DataInput stream) throws IOException {
             int depth = FinalNBT.getDepth(stream);
             if (depth > 511) {
                 throw new DepthException();
             }
             FinalNBT.setDepth(stream, depth + 1);
 
+            TagInterner interner = FinalNBT.getInterner(stream);
             Compound value = new Compound();
-            NamedTag tag;
-            while ((tag = NamedTag.read(stream)).getValue() != null) {
-                value.put(tag.getName(), tag.getValue());
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            try {
+                if (tracker != null) {
+                    tracker.charge(48);
+                }
+                NamedTag tag;
+                while ((tag = NamedTag.read(stream)).getValue() != null) {
+                    if (tracker != null) {
+                        charge(tracker, tag);
+                    }
+                    value.put(interner != null ? interner.intern(tag.getName()) : tag.getName(), tag.getValue());
+                }
+            } finally {
+                FinalNBT.setDepth(stream, depth);
             }
-            FinalNBT.setDepth(stream, depth);
-            return value;
+            return interner != null ? interner.intern(value) : value;
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Compound value) throws IOException {
+        public void skipValue(DataInput stream) throws IOException {
+            int depth = FinalNBT.getDepth(stream);
+            if (depth > 511) {
+                throw new DepthException();
+            }
+            FinalNBT.setDepth(stream, depth + 1);
+            try {
+                byte id;
+                while ((id = stream.readByte()) != 0) {
+                    TagType type = TagType.fromId(id);
+                    if (type == null) {
+                        throw new IOException("Unknown tag type " + id);
+                    }
+                    STRING.skipValue(stream);
+                    type.skipValue(stream);
+                }
+            } finally {
+                FinalNBT.setDepth(stream, depth);
+            }
+        }
+
+        @Override
+        public void writeValue(DataOutput stream, Compound value) throws IOException {
             for (Map.Entry<String, Object> entry : value.entrySet()) {
                 new NamedTag(entry.getKey(), entry.getValue()).write(stream);
             }
@@ -203,22 +389,71 @@ public abstract class TagType<T> {
     };
     public static final TagType<Integer[]> INT_ARRAY = new TagType<Integer[]>((byte) 11, Integer[].class) {
         @Override
-        public Integer[] readValue(DataInputStream stream) throws IOException {
+        public Integer[] readValue(DataInput stream) throws IOException {
             int length = stream.readInt();
-            Integer[] value = new Integer[length];
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.array(length, 20);
+            }
+            return readElements(stream, length);
+        }
+
+        @Override
+        public Object readTag(DataInput stream) throws IOException {
+            OffHeapArena arena = FinalNBT.getArena(stream);
+            if (arena == null) {
+                return readValue(stream);
+            }
+            int length = stream.readInt();
+            boolean offHeap = arena.accepts(length * 4L);
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.array(length, offHeap ? 4 : 20);
+            }
+            return offHeap ? arena.readInts(stream, length) : readElements(stream, length);
+        }
+
+        private Integer[] readElements(DataInput stream, int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Negative length " + length);
+            }
+            // Grow as the elements arrive, so a forged length fails at the end of the input rather than allocating.
+            Integer[] value = new Integer[Math.min(length, 8192)];
             for (int i = 0; i < length; i ++) {
+                if (i == value.length) {
+                    value = Arrays.copyOf(value, (int) Math.min(length, 2L * i));
+                }
                 value[i] = stream.readInt();
             }
             return value;
         }
 
         @Override
-        public void writeValue(DataOutputStream stream, Integer[] value) throws IOException {
+        public void writeValue(DataOutput stream, Integer[] value) throws IOException {
             stream.writeInt(value.length);
             for (Integer i : value) {
                 stream.writeInt(i);
             }
         }
+
+        @Override
+        public void writeTag(DataOutput stream, Object value) throws IOException {
+            if (value instanceof OffHeapIntArray) {
+                ((OffHeapIntArray) value).writeTo(stream);
+            } else {
+                writeValue(stream, (Integer[]) value);
+            }
+        }
+
+        @Override
+        public void skipValue(DataInput stream) throws IOException {
+            int length = stream.readInt();
+            if (stream instanceof NBTDataInput) {
+                ((NBTDataInput) stream).skipInts(length);
+            } else {
+                skipFully(stream, length * 4L);
+            }
+        }
     };
 
     private final byte id;
@@ -293,6 +528,14 @@ public abstract class TagType<T> {
             return COMPOUND;
         } else if (c == Integer[].class) {
             return INT_ARRAY;
+        } else if (c == OffHeapByteArray.class) {
+            return BYTE_ARRAY;
+        } else if (c == OffHeapIntArray.class) {
+            return INT_ARRAY;
+        } else if (Compound.class.isAssignableFrom(c)) {
+            return COMPOUND;
+        } else if (TypedList.class.isAssignableFrom(c)) {
+            return LIST;
         } else {
             return null;
         }
@@ -306,16 +549,158 @@ public abstract class TagType<T> {
         }
     }
 
-    public static TagType read(DataInputStream stream) throws IOException {
+    /**
+     * Deeply copy a value of a standard tag type.
+     * Primitives and strings are shared, arrays are copied, and compounds and lists are deeply copied.
+     * Off-heap arrays are copied to the heap, so the copy outlives their arena.
+     * @param value The value to copy.
+     * @return A deep copy of the value.
+     */
+    public static Object deepCopy(Object value) {
+        if (value instanceof Compound) {
+            return ((Compound) value).deepCopy();
+        } else if (value instanceof TypedList) {
+            return ((TypedList) value).deepCopy();
+        } else if (value instanceof Byte[]) {
+            Byte[] array = (Byte[]) value;
+            Byte[] copy = new Byte[array.length];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            return copy;
+        } else if (value instanceof Integer[]) {
+            Integer[] array = (Integer[]) value;
+            Integer[] copy = new Integer[array.length];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            return copy;
+        } else if (value instanceof OffHeapArray) {
+            return ((OffHeapArray) value).toHeap();
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Compare two values of standard tag types deeply. Arrays are compared by their elements.
+     * @param a A value.
+     * @param b Another value.
+     * @return Whether the values are deeply equal.
+     */
+    public static boolean deepEquals(Object a, Object b) {
+        if (a instanceof Object[] && b instanceof Object[]) {
+            return Arrays.equals((Object[]) a, (Object[]) b);
+        }
+        if (a instanceof OffHeapArray) {
+            return ((OffHeapArray) a).contentEquals(b);
+        }
+        if (b instanceof OffHeapArray) {
+            return ((OffHeapArray) b).contentEquals(a);
+        }
+        return Objects.equals(a, b);
+    }
+
+    /**
+     * Hash a value of a standard tag type deeply. Arrays are hashed by their elements.
+     * @param value The value.
+     * @return The hash code.
+     */
+    public static int deepHashCode(Object value) {
+        if (value instanceof Object[]) {
+            return Arrays.hashCode((Object[]) value);
+        }
+        if (value instanceof OffHeapArray) {
+            return ((OffHeapArray) value).contentHashCode();
+        }
+        return Objects.hashCode(value);
+    }
+
+    public static TagType read(DataInput stream) throws IOException {
         return fromId(stream.readByte());
     }
 
-    public void write(DataOutputStream stream) throws IOException {
+    public void write(DataOutput stream) throws IOException {
         stream.writeByte(getId());
     }
 
-    public abstract T readValue(DataInputStream stream) throws IOException;
+    public abstract T readValue(DataInput stream) throws IOException;
+
+    public abstract void writeValue(DataOutput stream, T value) throws IOException;
+
+    /**
+     * Read a value of this type, which may be off the heap if an {@link OffHeapArena} is set on the stream.
+     * @param stream The stream to read from.
+     * @return The value.
+     * @throws IOException IOException.
+     */
+    public Object readTag(DataInput stream) throws IOException {
+        return readValue(stream);
+    }
+
+    /**
+     * Write a value of this type, which may be off the heap.
+     * @param stream The stream to write to.
+     * @param value The value.
+     * @throws IOException IOException.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeTag(DataOutput stream, Object value) throws IOException {
+        writeValue(stream, (T) value);
+    }
 
-    public abstract void writeValue(DataOutputStream stream, T value) throws IOException;
+    /**
+     * Skip a value of this type without decoding it.
+     * @param stream The stream to read from.
+     * @throws IOException IOException.
+     */
+    public void skipValue(DataInput stream) throws IOException {
+        readValue(stream);
+    }
+
+    /**
+     * Charge a compound's entry, except for what its value has charged itself.
+     */
+    private static void charge(NBTLimits.Tracker tracker, NamedTag tag) {
+        tracker.count(1);
+        tracker.string(tag.getName());
+        Object value = tag.getValue();
+        if (value instanceof String) {
+            tracker.string((String) value);
+        } else if (value instanceof Number) {
+            tracker.charge(16);
+        }
+        // A hash map node.
+        tracker.charge(32);
+    }
+
+    /**
+     * Skip an int, which a dialect may encode in fewer or more than 4 bytes.
+     */
+    private static void skipInt(DataInput stream) throws IOException {
+        if (stream instanceof NBTDataInput) {
+            ((NBTDataInput) stream).skipInt();
+        } else {
+            skipFully(stream, 4);
+        }
+    }
+
+    /**
+     * Skip exactly n bytes, even where skipBytes skips fewer.
+     * @throws IOException If n is negative.
+     */
+    private static void skipFully(DataInput stream, long n) throws IOException {
+        if (n < 0) {
+            throw new IOException("Negative length " + n);
+        }
+        if (stream instanceof NBTDataInput) {
+            ((NBTDataInput) stream).skipFully(n);
+            return;
+        }
+        while (n > 0) {
+            int skipped = stream.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                stream.readByte();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
 
 }
@@ -0,0 +1,415 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.batch;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.query.NBTQuery;
+import me.finalchild.finalnbt.type.Compound;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads and writes many GZIPped NBT files in parallel on a ForkJoinPool.
+ *
+ * Reads are bounded by a memory budget: a file is only started when its estimated decoded size,
+ * its size on disk times the expansion factor, fits in what is left of the budget.
+ * A file's share is given back once its result has been consumed, so a slow consumer holds back the reads.
+ * Each file succeeds or fails on its own.
+ */
+public class NBTBatch {
+
+    private final ForkJoinPool pool;
+    private final int permits;
+    private int expansion = 8;
+
+    /**
+     * A batch on the common pool with a memory budget of 256 MiB.
+     */
+    public NBTBatch() {
+        this(ForkJoinPool.commonPool(), 256L << 20);
+    }
+
+    /**
+     * A batch on the given pool.
+     * @param pool The pool to decode and encode on.
+     * @param memoryBudget The number of bytes the files being read may take at once, as estimated.
+     */
+    public NBTBatch(ForkJoinPool pool, long memoryBudget) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget must be positive");
+        }
+        this.pool = pool;
+        this.permits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget >> 10));
+    }
+
+    /**
+     * Set how many times larger than its GZIPped file a decoded tree is estimated to be. 8 by default.
+     * @param expansion The factor.
+     * @return This batch.
+     */
+    public NBTBatch expansion(int expansion) {
+        if (expansion <= 0) {
+            throw new IllegalArgumentException("expansion must be positive");
+        }
+        this.expansion = expansion;
+        return this;
+    }
+
+    /**
+     * Read the files in parallel. Results come in the order the files finish, not the order of the paths.
+     * Close the stream to stop early.
+     * @param paths The files to read.
+     * @return A stream of the results.
+     */
+    public Stream<Result<NamedTag<Compound>>> read(Stream<Path> paths) {
+        return start(paths, FinalNBT::readNBT);
+    }
+
+    /**
+     * Read the files in parallel and deserialize them. Results come in the order the files finish.
+     * Close the stream to stop early.
+     * @param paths The files to read.
+     * @param c The type of the NBT.
+     * @param <T> The type of the NBT.
+     * @return A stream of the results.
+     */
+    public <T> Stream<Result<NamedTag<T>>> read(Stream<Path> paths, Class<T> c) {
+        return start(paths, in -> FinalNBT.readNBT(in, c));
+    }
+
+    /**
+     * Run the query on the files in parallel, decoding only what it needs. Results come in the order the files finish.
+     * The value of a file that doesn't match is null. Close the stream to stop early.
+     * @param paths The files to read.
+     * @param query The query.
+     * @return A stream of the results.
+     */
+    public Stream<Result<NamedTag<Compound>>> read(Stream<Path> paths, NBTQuery query) {
+        return start(paths, in -> FinalNBT.readNBT(in, query));
+    }
+
+    /**
+     * Read the files in the directory matching the glob, like "*.dat", in parallel.
+     * Close the stream to stop early.
+     * @param directory The directory.
+     * @param glob The glob the file names should match.
+     * @return A stream of the results.
+     * @throws IOException If the directory can't be opened.
+     */
+    public Stream<Result<NamedTag<Compound>>> read(Path directory, String glob) throws IOException {
+        DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob);
+        Stream<Path> paths = StreamSupport.stream(files.spliterator(), false).onClose(() -> {
+            try {
+                files.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return read(paths);
+    }
+
+    /**
+     * Read the files in parallel, passing each result to the callback on this thread as soon as it is ready.
+     * @param paths The files to read.
+     * @param callback The callback.
+     */
+    public void forEach(Stream<Path> paths, Consumer<? super Result<NamedTag<Compound>>> callback) {
+        try (Stream<Result<NamedTag<Compound>>> results = read(paths)) {
+            results.forEach(callback);
+        }
+    }
+
+    private <T> Stream<Result<NamedTag<T>>> start(Stream<Path> paths, Decoder<T> decoder) {
+        Reading<T> reading = new Reading<>(paths, decoder);
+        pool.execute(reading::feed);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(reading, Spliterator.NONNULL), false)
+                .onClose(reading::cancel);
+    }
+
+    /**
+     * Write the files in parallel. Each file is written next to its destination and then moved over it,
+     * so a failed write leaves the old file alone and no temporary file behind.
+     * @param files The tags to write, by path.
+     * @return The results, in the order of the map.
+     */
+    public List<Result<NamedTag<Compound>>> write(Map<Path, NamedTag<Compound>> files) {
+        List<ForkJoinTask<Result<NamedTag<Compound>>>> tasks = new ArrayList<>(files.size());
+        for (Map.Entry<Path, NamedTag<Compound>> entry : files.entrySet()) {
+            Path path = entry.getKey();
+            NamedTag<Compound> tag = entry.getValue();
+            tasks.add(pool.submit(() -> {
+                Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+                try {
+                    try (OutputStream out = Files.newOutputStream(temporary)) {
+                        FinalNBT.writeNBT(out, tag);
+                    }
+                    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    return new Result<>(path, tag, null, 0);
+                } catch (IOException | RuntimeException e) {
+                    try {
+                        Files.deleteIfExists(temporary);
+                    } catch (IOException suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                    return new Result<>(path, null, e, 0);
+                }
+            }));
+        }
+        List<Result<NamedTag<Compound>>> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Result<NamedTag<Compound>>> task : tasks) {
+            try {
+                results.add(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while writing", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private interface Decoder<T> {
+        NamedTag<T> decode(InputStream in) throws IOException;
+    }
+
+    /**
+     * One run of {@link #start(Stream, Decoder)}: the feeder starts the reads as the budget allows,
+     * and the results are queued for the consumer.
+     */
+    private final class Reading<T> implements Iterator<Result<NamedTag<T>>> {
+
+        private final Stream<Path> paths;
+        private final Decoder<T> decoder;
+        private final Semaphore budget = new Semaphore(permits);
+        private final LinkedBlockingQueue<Result<NamedTag<T>>> results = new LinkedBlockingQueue<>();
+        /**
+         * The reads in flight, plus one for the feeder while it runs.
+         */
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile boolean cancelled;
+        private Result<NamedTag<T>> next;
+        private Result<NamedTag<T>> previous;
+        private boolean done;
+
+        Reading(Stream<Path> paths, Decoder<T> decoder) {
+            this.paths = paths;
+            this.decoder = decoder;
+        }
+
+        void feed() {
+            try {
+                Iterator<Path> iterator = paths.iterator();
+                while (!cancelled && iterator.hasNext()) {
+                    Path path = iterator.next();
+                    int weight;
+                    try {
+                        weight = (int) Math.min(permits, Math.max(1, Files.size(path) * expansion >> 10));
+                    } catch (IOException | RuntimeException e) {
+                        results.add(new Result<>(path, null, e, 0));
+                        continue;
+                    }
+                    acquire(weight);
+                    if (cancelled) {
+                        budget.release(weight);
+                        break;
+                    }
+                    pending.incrementAndGet();
+                    pool.execute(() -> decode(path, weight));
+                }
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                results.add(new Result<>(null, null, e, 0));
+            } finally {
+                finished();
+            }
+        }
+
+        private void acquire(int weight) throws InterruptedException {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean acquired;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    if (!acquired) {
+                        budget.acquire(weight);
+                        acquired = true;
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return acquired || (acquired = budget.tryAcquire(weight));
+                }
+            });
+        }
+
+        private void decode(Path path, int weight) {
+            try {
+                if (cancelled) {
+                    budget.release(weight);
+                    return;
+                }
+                try (InputStream in = Files.newInputStream(path)) {
+                    results.add(new Result<>(path, decoder.decode(in), null, weight));
+                } catch (IOException | RuntimeException e) {
+                    results.add(new Result<>(path, null, e, weight));
+                }
+            } finally {
+                finished();
+            }
+        }
+
+        private void finished() {
+            if (pending.decrementAndGet() == 0) {
+                results.add(new Result<>(null, null, null, -1));
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            release();
+            Result<NamedTag<T>> result;
+            while ((result = results.poll()) != null) {
+                budget.release(Math.max(0, result.weight));
+            }
+            paths.close();
+        }
+
+        /**
+         * Give back the budget of the result handed out last, since the consumer has moved on.
+         */
+        private void release() {
+            if (previous != null) {
+                budget.release(previous.weight);
+                previous = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                release();
+                try {
+                    Result<NamedTag<T>> result = results.take();
+                    if (result.weight < 0) {
+                        done = true;
+                    } else {
+                        next = result;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                    done = true;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Result<NamedTag<T>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            previous = next;
+            next = null;
+            return previous;
+        }
+
+    }
+
+    /**
+     * The outcome for one file.
+     * @param <T> The type of the value.
+     */
+    public static class Result<T> {
+
+        private final Path path;
+        private final T value;
+        private final Exception error;
+        private final int weight;
+
+        Result(Path path, T value, Exception error, int weight) {
+            this.path = path;
+            this.value = value;
+            this.error = error;
+            this.weight = weight;
+        }
+
+        /**
+         * @return The file, or null if listing the files failed.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return The value, or null if this failed.
+         */
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * @return The IOException or RuntimeException this failed with, or null if this succeeded.
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+    }
+
+}
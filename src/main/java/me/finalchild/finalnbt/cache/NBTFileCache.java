@@ -0,0 +1,224 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.cache;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.io.NBTReader;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.PersistentCompound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of GZIPped NBT files decoded into {@link PersistentCompound}s, for files read again and again, such as level.dat.
+ *
+ * An entry is valid while its file keeps the modification time and size it had when it was read.
+ * Entries are weighed by an estimate of the memory they retain, and the least recently used ones are evicted
+ * once the total weight exceeds the maximum.
+ * The compounds are immutable and may be shared by any number of callers; use {@link PersistentCompound#toBuilder()}
+ * to edit a copy. Their array values are handed out as copies, so no caller can change what the others see.
+ *
+ * A cache may be shared by several threads. Files are read outside the lock,
+ * so two threads missing the same file at once both read it.
+ */
+public class NBTFileCache {
+
+    private final long maxWeight;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75F, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxWeight The most memory, in estimated bytes, the entries may retain.
+     */
+    public NBTFileCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Get the decoded file, reading it if it isn't cached or has changed since.
+     * @param path The file.
+     * @return The named compound.
+     * @throws IOException IOException.
+     */
+    public NamedTag<PersistentCompound> get(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        // Stat before reading, so a change during the read is seen next time.
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        FileTime modified = attributes.lastModifiedTime();
+        long size = attributes.size();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.modified.equals(modified)) {
+                hits.incrementAndGet();
+                return entry.tag;
+            }
+        }
+        misses.incrementAndGet();
+        NamedTag<Compound> read;
+        try (InputStream in = Files.newInputStream(key)) {
+            read = NBTReader.forThread().read(in);
+        }
+        NamedTag<PersistentCompound> tag = new NamedTag<>(read.getName(), PersistentCompound.copyOf(read.getValue()));
+        Entry entry = new Entry(tag, modified, size, 64 + weigh(key.toString()) + weigh(tag.getName()) + weigh(read.getValue()));
+        synchronized (this) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                weight -= old.weight;
+            }
+            if (entry.weight <= maxWeight) {
+                entries.put(key, entry);
+                weight += entry.weight;
+                evict();
+            }
+        }
+        return tag;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop the file's entry, if any.
+     * @param path The file.
+     */
+    public synchronized void invalidate(Path path) {
+        Entry entry = entries.remove(path.toAbsolutePath().normalize());
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    /**
+     * Drop every entry.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * @return The estimated bytes the entries retain.
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The share of gets served from the cache, or NaN before the first get.
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+     * Estimate the memory a decoded value retains, with the same costs {@link me.finalchild.finalnbt.NBTLimits} charges.
+     */
+    private static long weigh(Object value) {
+        if (value instanceof Compound) {
+            long weight = 48;
+            for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                weight += 32 + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        } else if (value instanceof TypedList) {
+            TypedList<?> list = (TypedList<?>) value;
+            long weight = 40 + 8L * list.size();
+            for (Object e : list) {
+                weight += weigh(e);
+            }
+            return weight;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof Byte[]) {
+            return 16 + 4L * ((Byte[]) value).length;
+        } else if (value instanceof Integer[]) {
+            return 16 + 20L * ((Integer[]) value).length;
+        } else {
+            return 16;
+        }
+    }
+
+    private static class Entry {
+
+        final NamedTag<PersistentCompound> tag;
+        final FileTime modified;
+        final long size;
+        final long weight;
+
+        Entry(NamedTag<PersistentCompound> tag, FileTime modified, long size, long weight) {
+            this.tag = tag;
+            this.modified = modified;
+            this.size = size;
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.io.UTFDataFormatException;
+
+/**
+ * Reads Java Edition NBT: big-endian numbers, and strings in Java's modified UTF-8 with a u16 length.
+ * Strings are decoded through a char array that is kept between reads.
+ */
+public final class BigEndianDataInput extends BufferedDataInput {
+
+    private byte[] bytes = new byte[0];
+    private char[] chars = new char[64];
+
+    public BigEndianDataInput(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(2);
+        int p = pos;
+        pos = p + 2;
+        return (short) (buffer[p] << 8 | buffer[p + 1] & 0xFF);
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        int p = pos;
+        pos = p + 4;
+        return buffer[p] << 24 | (buffer[p + 1] & 0xFF) << 16 | (buffer[p + 2] & 0xFF) << 8 | buffer[p + 3] & 0xFF;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+    }
+
+    @Override
+    int readStringLength() throws IOException {
+        return readUnsignedShort();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        int length = readStringLength();
+        byte[] source;
+        int offset;
+        if (length <= buffer.length) {
+            require(length);
+            source = buffer;
+            offset = pos;
+            pos += length;
+        } else {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            readFully(bytes, 0, length);
+            source = bytes;
+            offset = 0;
+        }
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        return decodeUTF(source, offset, length, chars);
+    }
+
+    /**
+     * Decode modified UTF-8.
+     * @param chars Scratch space of at least length chars.
+     */
+    static String decodeUTF(byte[] source, int offset, int length, char[] chars) throws UTFDataFormatException {
+        int end = offset + length;
+        int count = 0;
+        int i = offset;
+        while (i < end) {
+            int b = source[i] & 0xFF;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i ++;
+            } else if ((b & 0xE0) == 0xC0) {
+                if (i + 1 >= end || (source[i + 1] & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+                }
+                chars[count++] = (char) ((b & 0x1F) << 6 | source[i + 1] & 0x3F);
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                if (i + 2 >= end || (source[i + 1] & 0xC0) != 0x80 || (source[i + 2] & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+                }
+                chars[count++] = (char) ((b & 0x0F) << 12 | (source[i + 1] & 0x3F) << 6 | source[i + 2] & 0x3F);
+                i += 3;
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * The decode loop, copied into each dialect so that its reads are calls on this final class.
+     */
+    @Override
+    Object readPayload(byte id, int depth, NBTLimits.Tracker tracker) throws IOException {
+        switch (id) {
+            case 1:
+                return readByte();
+            case 2:
+                return readShort();
+            case 3:
+                return readInt();
+            case 4:
+                return readLong();
+            case 5:
+                return readFloat();
+            case 6:
+                return readDouble();
+            case 7: {
+                int length = readInt();
+                if (tracker != null) {
+                    tracker.array(length, 4);
+                }
+                return readByteElements(length);
+            }
+            case 8:
+                return readUTF();
+            case 9: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                byte element = readByte();
+                int length = readInt();
+                TagType type = elementType(element, length);
+                if (tracker != null) {
+                    tracker.charge(40);
+                    tracker.list(type, length);
+                }
+                TypedList value = new TypedList(type);
+                for (int i = 0; i < length; i ++) {
+                    Object e = readPayload(element, depth + 1, tracker);
+                    if (tracker != null && element == 8) {
+                        tracker.string((String) e);
+                    }
+                    value.add(e);
+                }
+                return value;
+            }
+            case 10: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                if (tracker != null) {
+                    tracker.charge(48);
+                }
+                Compound value = new Compound();
+                byte child;
+                while ((child = readByte()) != 0) {
+                    String name = readUTF();
+                    Object e = readPayload(child, depth + 1, tracker);
+                    if (tracker != null) {
+                        charge(tracker, name, e);
+                    }
+                    value.put(name, e);
+                }
+                return value;
+            }
+            case 11: {
+                int length = readInt();
+                if (tracker != null) {
+                    tracker.array(length, 20);
+                } else if (length < 0) {
+                    throw new IOException("Negative length " + length);
+                }
+                Integer[] value = new Integer[Math.min(length, ELEMENT_CHUNK)];
+                for (int i = 0; i < length; i ++) {
+                    if (i == value.length) {
+                        value = Arrays.copyOf(value, (int) Math.min(length, 2L * i));
+                    }
+                    value[i] = readInt();
+                }
+                return value;
+            }
+            default:
+                throw new IOException("Unknown tag type " + id);
+        }
+    }
+
+    @Override
+    int readFixedInt() throws IOException {
+        return readInt();
+    }
+
+    @Override
+    long readFixedLong() throws IOException {
+        return readLong();
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A DataInput with its own buffer, so that each dialect decodes its primitives straight out of a byte array.
+ * The subclasses are final and each has its own copy of the decode loop, so the JIT can inline their primitive reads.
+ */
+abstract class BufferedDataInput implements NBTDataInput, Closeable {
+
+    /**
+     * The most elements an array is first allocated for. It grows as the elements arrive,
+     * so a forged length fails at the end of the input rather than allocating what it claims.
+     */
+    static final int ELEMENT_CHUNK = 8192;
+
+    private InputStream in;
+    final byte[] buffer;
+    int pos;
+    int limit;
+    private long consumed;
+
+    BufferedDataInput(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Start over on another stream, dropping whatever is buffered.
+     */
+    final void reset(InputStream in) {
+        this.in = in;
+        pos = 0;
+        limit = 0;
+        consumed = 0;
+    }
+
+    /**
+     * @return The number of bytes read through this since it was created or reset.
+     */
+    public final long position() {
+        return consumed - (limit - pos);
+    }
+
+    /**
+     * Make sure at least n bytes are buffered. n MUST NOT exceed the buffer's length.
+     * @throws EOFException If the input ends first.
+     */
+    final void require(int n) throws IOException {
+        if (limit - pos >= n) {
+            return;
+        }
+        System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+        limit -= pos;
+        pos = 0;
+        while (limit < n) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            consumed += read;
+            limit += read;
+        }
+    }
+
+    @Override
+    public final void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public final void readFully(byte[] b, int off, int len) throws IOException {
+        int buffered = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, buffered);
+        pos += buffered;
+        off += buffered;
+        len -= buffered;
+        while (len > 0) {
+            int read = in.read(b, off, len);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            consumed += read;
+            off += read;
+            len -= read;
+        }
+    }
+
+    @Override
+    public final int skipBytes(int n) throws IOException {
+        int skipped = Math.min(n, limit - pos);
+        pos += skipped;
+        while (skipped < n) {
+            long s = in.skip(n - skipped);
+            if (s <= 0) {
+                if (in.read() < 0) {
+                    break;
+                }
+                s = 1;
+            }
+            consumed += s;
+            skipped += s;
+        }
+        return skipped;
+    }
+
+    @Override
+    public final void skipFully(long n) throws IOException {
+        if (n < 0) {
+            throw new IOException("Negative length " + n);
+        }
+        while (n > 0) {
+            int skipped = skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            n -= skipped;
+        }
+    }
+
+    @Override
+    public void skipInt() throws IOException {
+        skipFully(4);
+    }
+
+    @Override
+    public void skipInts(int count) throws IOException {
+        skipFully(count * 4L);
+    }
+
+    @Override
+    public void skipLong() throws IOException {
+        skipFully(8);
+    }
+
+    @Override
+    public final void skipString() throws IOException {
+        skipFully(readStringLength());
+    }
+
+    /**
+     * The length in bytes that precedes a string.
+     */
+    abstract int readStringLength() throws IOException;
+
+    @Override
+    public final boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public final byte readByte() throws IOException {
+        if (pos == limit) {
+            require(1);
+        }
+        return buffer[pos++];
+    }
+
+    @Override
+    public final int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public final int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public final char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public final float readFloat() throws IOException {
+        return Float.intBitsToFloat(readFixedInt());
+    }
+
+    @Override
+    public final double readDouble() throws IOException {
+        return Double.longBitsToDouble(readFixedLong());
+    }
+
+    /**
+     * Not supported, as no NBT dialect uses it.
+     */
+    @Override
+    public final String readLine() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Read a UTF-8 string of the given length in bytes.
+     * A long string is checked against the limits first, and read in growing chunks,
+     * so a forged length fails on the limits or at the end of the input rather than allocating.
+     */
+    final String readUTF8(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        if (length <= buffer.length) {
+            require(length);
+            String s = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+        NBTLimits.Tracker tracker = FinalNBT.getTracker(this);
+        if (tracker != null) {
+            tracker.encodedString(length);
+        }
+        byte[] bytes = new byte[Math.min(length, buffer.length * 2)];
+        readFully(bytes);
+        while (bytes.length < length) {
+            int read = bytes.length;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * read));
+            readFully(bytes, read, bytes.length - read);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    final short readShortLE() throws IOException {
+        require(2);
+        int p = pos;
+        pos = p + 2;
+        return (short) (buffer[p] & 0xFF | buffer[p + 1] << 8);
+    }
+
+    final int readIntLE() throws IOException {
+        require(4);
+        int p = pos;
+        pos = p + 4;
+        return buffer[p] & 0xFF | (buffer[p + 1] & 0xFF) << 8 | (buffer[p + 2] & 0xFF) << 16 | buffer[p + 3] << 24;
+    }
+
+    final long readLongLE() throws IOException {
+        return readIntLE() & 0xFFFFFFFFL | (long) readIntLE() << 32;
+    }
+
+    /**
+     * Read a NamedTag with a standard tag type.
+     * Unless an interner or an arena is set, this decodes through the dialect's own decode loop instead of TagType's,
+     * so its reads are calls on a final class and stay inlined however many dialects the JVM has seen.
+     * @param <T> A standard tag type.
+     * @return A NamedTag with a standard tag type.
+     * @throws IOException IOException.
+     */
+    final <T> NamedTag<T> readNamedTag() throws IOException {
+        if (FinalNBT.getInterner(this) != null || FinalNBT.getArena(this) != null) {
+            return NamedTag.read(this);
+        }
+        byte id = readByte();
+        if (id == 0) {
+            return new NamedTag<>("", null);
+        }
+        String name = readUTF();
+        return new NamedTag<>(name, (T) readPayload(id, 0, FinalNBT.getTracker(this)));
+    }
+
+    /**
+     * Decode a value as TagType would, charging the tracker the same.
+     * @param id The value's tag type id.
+     * @param depth How many lists and compounds the value is in.
+     * @param tracker The tracker, or null.
+     */
+    abstract Object readPayload(byte id, int depth, NBTLimits.Tracker tracker) throws IOException;
+
+    /**
+     * Read a byte array's elements.
+     */
+    final Byte[] readByteElements(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        Byte[] value = new Byte[Math.min(length, ELEMENT_CHUNK)];
+        int i = 0;
+        while (i < length) {
+            if (pos == limit) {
+                require(1);
+            }
+            if (i == value.length) {
+                value = Arrays.copyOf(value, (int) Math.min(length, 2L * i));
+            }
+            int n = Math.min(limit - pos, value.length - i);
+            for (int j = 0; j < n; j ++) {
+                value[i + j] = buffer[pos + j];
+            }
+            pos += n;
+            i += n;
+        }
+        return value;
+    }
+
+    /**
+     * Look up a list's element type.
+     */
+    static TagType<?> elementType(byte id, int length) throws IOException {
+        TagType<?> type = TagType.fromId(id);
+        if (type == null) {
+            throw new IOException("Unknown tag type " + id);
+        }
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        if (type == TagType.END && length > 0) {
+            throw new IOException("A list of " + length + " end tags");
+        }
+        return type;
+    }
+
+    /**
+     * Charge a compound's entry, except for what its value has charged itself.
+     */
+    static void charge(NBTLimits.Tracker tracker, String name, Object value) {
+        tracker.count(1);
+        tracker.string(name);
+        if (value instanceof String) {
+            tracker.string((String) value);
+        } else if (value instanceof Number) {
+            tracker.charge(16);
+        }
+        // A hash map node.
+        tracker.charge(32);
+    }
+
+    /**
+     * The 4-byte int that floats are made of.
+     */
+    abstract int readFixedInt() throws IOException;
+
+    /**
+     * The 8-byte long that doubles are made of.
+     */
+    abstract long readFixedLong() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A DataOutput with its own buffer, so that each dialect encodes its primitives straight into a byte array.
+ * The subclasses are final and each has its own copy of the encode loop, so the JIT can inline their primitive writes.
+ * Remember to flush or close it.
+ */
+abstract class BufferedDataOutput implements DataOutput, Flushable, Closeable {
+
+    private OutputStream out;
+    final byte[] buffer;
+    int pos;
+
+    BufferedDataOutput(OutputStream out) {
+        this.out = out;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Start over on another stream. Flush first, or whatever is buffered is dropped.
+     */
+    final void reset(OutputStream out) {
+        this.out = out;
+        pos = 0;
+    }
+
+    /**
+     * Make room for at least n bytes. n MUST NOT exceed the buffer's length.
+     */
+    final void reserve(int n) throws IOException {
+        if (buffer.length - pos < n) {
+            out.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    @Override
+    public final void write(int b) throws IOException {
+        writeByte(b);
+    }
+
+    @Override
+    public final void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public final void write(byte[] b, int off, int len) throws IOException {
+        if (len <= buffer.length - pos) {
+            System.arraycopy(b, off, buffer, pos, len);
+            pos += len;
+        } else {
+            out.write(buffer, 0, pos);
+            pos = 0;
+            out.write(b, off, len);
+        }
+    }
+
+    @Override
+    public final void writeBoolean(boolean v) throws IOException {
+        writeByte(v ? 1 : 0);
+    }
+
+    @Override
+    public final void writeByte(int v) throws IOException {
+        if (pos == buffer.length) {
+            reserve(1);
+        }
+        buffer[pos++] = (byte) v;
+    }
+
+    @Override
+    public final void writeChar(int v) throws IOException {
+        writeShort(v);
+    }
+
+    @Override
+    public final void writeFloat(float v) throws IOException {
+        writeFixedInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public final void writeDouble(double v) throws IOException {
+        writeFixedLong(Double.doubleToLongBits(v));
+    }
+
+    @Override
+    public final void writeBytes(String s) throws IOException {
+        for (int i = 0; i < s.length(); i ++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    @Override
+    public final void writeChars(String s) throws IOException {
+        for (int i = 0; i < s.length(); i ++) {
+            writeChar(s.charAt(i));
+        }
+    }
+
+    /**
+     * Encode the string as UTF-8.
+     * @param maxLength The longest encoding allowed.
+     * @throws UTFDataFormatException If the encoding is longer.
+     */
+    final byte[] encodeUTF8(String s, int maxLength) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxLength) {
+            throw new UTFDataFormatException("encoded string too long: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    final void writeShortLE(int v) throws IOException {
+        reserve(2);
+        int p = pos;
+        buffer[p] = (byte) v;
+        buffer[p + 1] = (byte) (v >>> 8);
+        pos = p + 2;
+    }
+
+    final void writeIntLE(int v) throws IOException {
+        reserve(4);
+        int p = pos;
+        buffer[p] = (byte) v;
+        buffer[p + 1] = (byte) (v >>> 8);
+        buffer[p + 2] = (byte) (v >>> 16);
+        buffer[p + 3] = (byte) (v >>> 24);
+        pos = p + 4;
+    }
+
+    final void writeLongLE(long v) throws IOException {
+        writeIntLE((int) v);
+        writeIntLE((int) (v >>> 32));
+    }
+
+    /**
+     * Write a NamedTag with a standard tag type.
+     * This encodes through the dialect's own encode loop instead of TagType's,
+     * so its writes are calls on a final class and stay inlined however many dialects the JVM has seen.
+     * @param tag A NamedTag with a standard tag type.
+     * @throws IOException IOException.
+     */
+    final void writeNamedTag(NamedTag<?> tag) throws IOException {
+        Object value = tag.getValue();
+        byte id = typeOf(value);
+        writeByte(id);
+        if (id != 0) {
+            writeUTF(tag.getName());
+            writePayload(id, value);
+        }
+    }
+
+    /**
+     * Encode a value as TagType would.
+     * @param id The value's tag type id.
+     */
+    abstract void writePayload(byte id, Object value) throws IOException;
+
+    /**
+     * Write a byte array's elements.
+     */
+    final void writeByteElements(Byte[] value) throws IOException {
+        int i = 0;
+        while (i < value.length) {
+            if (pos == buffer.length) {
+                reserve(1);
+            }
+            int n = Math.min(buffer.length - pos, value.length - i);
+            for (int j = 0; j < n; j ++) {
+                buffer[pos + j] = value[i + j];
+            }
+            pos += n;
+            i += n;
+        }
+    }
+
+    /**
+     * Look up a value's tag type id.
+     */
+    static byte typeOf(Object value) {
+        TagType<?> type = TagType.fromValue(value);
+        if (type == null) {
+            throw new UnsupportedTypeException(value.getClass());
+        }
+        return type.getId();
+    }
+
+    /**
+     * The 4-byte int that floats are made of.
+     */
+    abstract void writeFixedInt(int v) throws IOException;
+
+    /**
+     * The 8-byte long that doubles are made of.
+     */
+    abstract void writeFixedLong(long v) throws IOException;
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, pos);
+        pos = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+}
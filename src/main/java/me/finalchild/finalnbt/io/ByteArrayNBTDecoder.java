@@ -0,0 +1,295 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Decodes uncompressed Java Edition NBT straight out of a byte array, without a stream.
+ *
+ * Primitives are read with shifts on the array, and the bounds are checked once per value,
+ * so the decode loop has no virtual calls left for the JIT to get through.
+ * A decoder is not thread-safe, but may decode several tags one after another.
+ */
+public final class ByteArrayNBTDecoder {
+
+    private final byte[] bytes;
+    private final int limit;
+    private int pos;
+    private char[] chars = new char[64];
+    private NBTLimits.Tracker tracker;
+
+    /**
+     * Decode the whole array.
+     * @param bytes The array.
+     */
+    public ByteArrayNBTDecoder(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode part of the array.
+     * @param bytes The array.
+     * @param offset Where to start.
+     * @param length How many bytes there are.
+     */
+    public ByteArrayNBTDecoder(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.bytes = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * Limit what this may decode from now on.
+     * @param limits The limits, or null for none.
+     * @return This decoder.
+     */
+    public ByteArrayNBTDecoder limits(NBTLimits limits) {
+        this.tracker = limits != null ? limits.track() : null;
+        return this;
+    }
+
+    /**
+     * Decode a NamedTag out of the whole array.
+     * @param bytes The array.
+     * @param <T> A standard tag type.
+     * @return The NamedTag.
+     * @throws IOException If the data is malformed or ends early.
+     */
+    public static <T> NamedTag<T> decode(byte[] bytes) throws IOException {
+        return new ByteArrayNBTDecoder(bytes).readNamedTag();
+    }
+
+    /**
+     * @return The index of the next byte to decode.
+     */
+    public int position() {
+        return pos;
+    }
+
+    /**
+     * Decode the next NamedTag.
+     * @param <T> A standard tag type.
+     * @return The NamedTag.
+     * @throws IOException If the data is malformed or ends early.
+     */
+    public <T> NamedTag<T> readNamedTag() throws IOException {
+        require(1);
+        byte id = bytes[pos++];
+        if (id == 0) {
+            return new NamedTag<>("", null);
+        }
+        String name = readString();
+        return new NamedTag<>(name, (T) readValue(id, 0));
+    }
+
+    /**
+     * Decode the next value's payload.
+     * @param type The tag type of the value.
+     * @return The value.
+     * @throws IOException If the data is malformed or ends early.
+     */
+    public Object readValue(TagType<?> type) throws IOException {
+        return readValue(type.getId(), 0);
+    }
+
+    private void require(int n) throws EOFException {
+        if (limit - pos < n) {
+            throw new EOFException("Needed " + n + " bytes at " + pos + " but only " + (limit - pos) + " are left");
+        }
+    }
+
+    private int getInt(int p) {
+        byte[] b = bytes;
+        return b[p] << 24 | (b[p + 1] & 0xFF) << 16 | (b[p + 2] & 0xFF) << 8 | b[p + 3] & 0xFF;
+    }
+
+    private long getLong(int p) {
+        return (long) getInt(p) << 32 | getInt(p + 4) & 0xFFFFFFFFL;
+    }
+
+    private int readLength() throws IOException {
+        require(4);
+        int length = getInt(pos);
+        pos += 4;
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Decode the next string, such as a tag's name, with its length.
+     * @return The string.
+     * @throws IOException If the data is malformed or ends early.
+     */
+    public String readString() throws IOException {
+        require(2);
+        int length = (bytes[pos] & 0xFF) << 8 | bytes[pos + 1] & 0xFF;
+        pos += 2;
+        require(length);
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        String s = BigEndianDataInput.decodeUTF(bytes, pos, length, chars);
+        pos += length;
+        return s;
+    }
+
+    private Object readValue(byte id, int depth) throws IOException {
+        byte[] b = bytes;
+        int p = pos;
+        switch (id) {
+            case 1:
+                require(1);
+                pos = p + 1;
+                return b[p];
+            case 2:
+                require(2);
+                pos = p + 2;
+                return (short) (b[p] << 8 | b[p + 1] & 0xFF);
+            case 3:
+                require(4);
+                pos = p + 4;
+                return getInt(p);
+            case 4:
+                require(8);
+                pos = p + 8;
+                return getLong(p);
+            case 5:
+                require(4);
+                pos = p + 4;
+                return Float.intBitsToFloat(getInt(p));
+            case 6:
+                require(8);
+                pos = p + 8;
+                return Double.longBitsToDouble(getLong(p));
+            case 7: {
+                int length = readLength();
+                require(length);
+                if (tracker != null) {
+                    tracker.array(length, 4);
+                }
+                Byte[] value = new Byte[length];
+                p = pos;
+                for (int i = 0; i < length; i ++) {
+                    value[i] = b[p + i];
+                }
+                pos = p + length;
+                return value;
+            }
+            case 8: {
+                String value = readString();
+                if (tracker != null) {
+                    tracker.string(value);
+                }
+                return value;
+            }
+            case 9: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                require(1);
+                byte element = b[pos++];
+                TagType type = TagType.fromId(element);
+                if (type == null) {
+                    throw new IOException("Unknown tag type " + element);
+                }
+                int length = readLength();
+                if (length > 0 && element == 0) {
+                    throw new IOException("A list of " + length + " end tags");
+                }
+                // Each element takes at least this many bytes, so a huge length fails before anything is allocated.
+                if (length > (limit - pos) / NBTValidator.MIN_SIZES[element]) {
+                    throw new EOFException("Needed at least " + (long) length * NBTValidator.MIN_SIZES[element] + " bytes at " + pos + " but only " + (limit - pos) + " are left");
+                }
+                if (tracker != null) {
+                    tracker.charge(40);
+                    tracker.list(type, length);
+                }
+                TypedList value = new TypedList(type);
+                for (int i = 0; i < length; i ++) {
+                    value.add(readValue(element, depth + 1));
+                }
+                return value;
+            }
+            case 10: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                if (tracker != null) {
+                    tracker.charge(48);
+                }
+                Compound value = new Compound();
+                while (true) {
+                    require(1);
+                    byte child = b[pos++];
+                    if (child == 0) {
+                        return value;
+                    }
+                    String name = readString();
+                    if (tracker != null) {
+                        tracker.count(1);
+                        tracker.string(name);
+                        tracker.charge(child >= 1 && child <= 6 ? 48 : 32);
+                    }
+                    value.put(name, readValue(child, depth + 1));
+                }
+            }
+            case 11: {
+                int length = readLength();
+                if (length > (limit - pos) / 4) {
+                    throw new EOFException("Needed " + length * 4L + " bytes at " + pos + " but only " + (limit - pos) + " are left");
+                }
+                if (tracker != null) {
+                    tracker.array(length, 20);
+                }
+                Integer[] value = new Integer[length];
+                p = pos;
+                for (int i = 0; i < length; i ++) {
+                    value[i] = getInt(p + i * 4);
+                }
+                pos = p + length * 4;
+                return value;
+            }
+            case 0:
+                return null;
+            default:
+                throw new IOException("Unknown tag type " + id);
+        }
+    }
+
+}
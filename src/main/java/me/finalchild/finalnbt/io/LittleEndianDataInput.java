@@ -0,0 +1,169 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads Bedrock's on-disk NBT: little-endian numbers, and strings as UTF-8 with a little-endian u16 length.
+ */
+public final class LittleEndianDataInput extends BufferedDataInput {
+
+    public LittleEndianDataInput(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        return readShortLE();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        return readIntLE();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        return readLongLE();
+    }
+
+    @Override
+    int readStringLength() throws IOException {
+        return readShortLE() & 0xFFFF;
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return readUTF8(readStringLength());
+    }
+
+    /**
+     * The decode loop, copied into each dialect so that its reads are calls on this final class.
+     */
+    @Override
+    Object readPayload(byte id, int depth, NBTLimits.Tracker tracker) throws IOException {
+        switch (id) {
+            case 1:
+                return readByte();
+            case 2:
+                return readShort();
+            case 3:
+                return readInt();
+            case 4:
+                return readLong();
+            case 5:
+                return readFloat();
+            case 6:
+                return readDouble();
+            case 7: {
+                int length = readInt();
+                if (tracker != null) {
+                    tracker.array(length, 4);
+                }
+                return readByteElements(length);
+            }
+            case 8:
+                return readUTF();
+            case 9: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                byte element = readByte();
+                int length = readInt();
+                TagType type = elementType(element, length);
+                if (tracker != null) {
+                    tracker.charge(40);
+                    tracker.list(type, length);
+                }
+                TypedList value = new TypedList(type);
+                for (int i = 0; i < length; i ++) {
+                    Object e = readPayload(element, depth + 1, tracker);
+                    if (tracker != null && element == 8) {
+                        tracker.string((String) e);
+                    }
+                    value.add(e);
+                }
+                return value;
+            }
+            case 10: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                if (tracker != null) {
+                    tracker.charge(48);
+                }
+                Compound value = new Compound();
+                byte child;
+                while ((child = readByte()) != 0) {
+                    String name = readUTF();
+                    Object e = readPayload(child, depth + 1, tracker);
+                    if (tracker != null) {
+                        charge(tracker, name, e);
+                    }
+                    value.put(name, e);
+                }
+                return value;
+            }
+            case 11: {
+                int length = readInt();
+                if (tracker != null) {
+                    tracker.array(length, 20);
+                } else if (length < 0) {
+                    throw new IOException("Negative length " + length);
+                }
+                Integer[] value = new Integer[Math.min(length, ELEMENT_CHUNK)];
+                for (int i = 0; i < length; i ++) {
+                    if (i == value.length) {
+                        value = Arrays.copyOf(value, (int) Math.min(length, 2L * i));
+                    }
+                    value[i] = readInt();
+                }
+                return value;
+            }
+            default:
+                throw new IOException("Unknown tag type " + id);
+        }
+    }
+
+    @Override
+    int readFixedInt() throws IOException {
+        return readIntLE();
+    }
+
+    @Override
+    long readFixedLong() throws IOException {
+        return readLongLE();
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapByteArray;
+import me.finalchild.finalnbt.type.OffHeapIntArray;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Writes Bedrock's on-disk NBT: little-endian numbers, and strings as UTF-8 with a little-endian u16 length.
+ */
+public final class LittleEndianDataOutput extends BufferedDataOutput {
+
+    public LittleEndianDataOutput(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        writeShortLE(v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        writeIntLE(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        writeLongLE(v);
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+        byte[] bytes = encodeUTF8(s, 0xFFFF);
+        writeShortLE(bytes.length);
+        write(bytes);
+    }
+
+    /**
+     * The encode loop, copied into each dialect so that its writes are calls on this final class.
+     */
+    @Override
+    void writePayload(byte id, Object value) throws IOException {
+        switch (id) {
+            case 1:
+                writeByte((Byte) value);
+                break;
+            case 2:
+                writeShort((Short) value);
+                break;
+            case 3:
+                writeInt((Integer) value);
+                break;
+            case 4:
+                writeLong((Long) value);
+                break;
+            case 5:
+                writeFloat((Float) value);
+                break;
+            case 6:
+                writeDouble((Double) value);
+                break;
+            case 7:
+                if (value instanceof OffHeapByteArray) {
+                    ((OffHeapByteArray) value).writeTo(this);
+                } else {
+                    Byte[] bytes = (Byte[]) value;
+                    writeInt(bytes.length);
+                    writeByteElements(bytes);
+                }
+                break;
+            case 8:
+                writeUTF((String) value);
+                break;
+            case 9: {
+                TypedList<?> list = (TypedList<?>) value;
+                byte element = list.getType().getId();
+                writeByte(element);
+                writeInt(list.size());
+                for (Object e : list) {
+                    writePayload(element, e);
+                }
+                break;
+            }
+            case 10:
+                for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                    Object e = entry.getValue();
+                    byte child = typeOf(e);
+                    writeByte(child);
+                    if (child != 0) {
+                        writeUTF(entry.getKey());
+                        writePayload(child, e);
+                    }
+                }
+                writeByte(0);
+                break;
+            case 11:
+                if (value instanceof OffHeapIntArray) {
+                    ((OffHeapIntArray) value).writeTo(this);
+                } else {
+                    Integer[] ints = (Integer[]) value;
+                    writeInt(ints.length);
+                    for (Integer i : ints) {
+                        writeInt(i);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown tag type " + id);
+        }
+    }
+
+    @Override
+    void writeFixedInt(int v) throws IOException {
+        writeIntLE(v);
+    }
+
+    @Override
+    void writeFixedLong(long v) throws IOException {
+        writeLongLE(v);
+    }
+
+}
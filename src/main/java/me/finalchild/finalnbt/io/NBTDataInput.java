@@ -0,0 +1,68 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A DataInput of an NBT dialect, which knows how its dialect encodes values
+ * and so can skip them without decoding them.
+ */
+public interface NBTDataInput extends DataInput {
+
+    /**
+     * Skip exactly n bytes.
+     * @param n The number of bytes.
+     * @throws IOException If n is negative or the input ends first.
+     */
+    void skipFully(long n) throws IOException;
+
+    /**
+     * Skip an int as this dialect encodes it.
+     * @throws IOException IOException.
+     */
+    void skipInt() throws IOException;
+
+    /**
+     * Skip ints as this dialect encodes them, such as an int array's elements.
+     * @param count The number of ints.
+     * @throws IOException IOException.
+     */
+    void skipInts(int count) throws IOException;
+
+    /**
+     * Skip a long as this dialect encodes it.
+     * @throws IOException IOException.
+     */
+    void skipLong() throws IOException;
+
+    /**
+     * Skip a string with its length as this dialect encodes it.
+     * @throws IOException IOException.
+     */
+    void skipString() throws IOException;
+
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A binary encoding of NBT. TagType reads and writes through the DataInput and DataOutput a dialect provides.
+ *
+ * Each dialect's input and output are final classes, so a decode loop that only sees one dialect
+ * gets its primitive reads inlined.
+ */
+public abstract class NBTDialect {
+
+    /**
+     * Java Edition: big-endian numbers, and strings in Java's modified UTF-8.
+     */
+    public static final NBTDialect JAVA = new NBTDialect("java") {
+        @Override
+        public DataInput newInput(InputStream in) {
+            return new BigEndianDataInput(in);
+        }
+
+        @Override
+        public DataOutput newOutput(OutputStream out) {
+            return new BigEndianDataOutput(out);
+        }
+    };
+    /**
+     * Bedrock Edition on disk: little-endian numbers, and strings in UTF-8.
+     */
+    public static final NBTDialect BEDROCK = new NBTDialect("bedrock") {
+        @Override
+        public DataInput newInput(InputStream in) {
+            return new LittleEndianDataInput(in);
+        }
+
+        @Override
+        public DataOutput newOutput(OutputStream out) {
+            return new LittleEndianDataOutput(out);
+        }
+    };
+    /**
+     * Bedrock Edition on the network: ints and longs as zigzag varints, and the rest like {@link #BEDROCK}.
+     */
+    public static final NBTDialect BEDROCK_NETWORK = new NBTDialect("bedrock_network") {
+        @Override
+        public DataInput newInput(InputStream in) {
+            return new VarIntDataInput(in);
+        }
+
+        @Override
+        public DataOutput newOutput(OutputStream out) {
+            return new VarIntDataOutput(out);
+        }
+    };
+
+    private final String name;
+
+    private NBTDialect(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wrap the stream to read this dialect. The DataInput buffers, so don't read the stream directly afterwards.
+     * @param in The stream to read from.
+     * @return A DataInput for TagType and NamedTag.
+     */
+    public abstract DataInput newInput(InputStream in);
+
+    /**
+     * Wrap the stream to write this dialect. The DataOutput buffers, so flush it when done.
+     * @param out The stream to write to.
+     * @return A DataOutput for TagType and NamedTag.
+     */
+    public abstract DataOutput newOutput(OutputStream out);
+
+    /**
+     * Read an uncompressed NamedTag in this dialect.
+     * @param in The stream to read from. It isn't closed.
+     * @param <T> A standard tag type.
+     * @return A NamedTag.
+     * @throws IOException IOException.
+     */
+    public <T> NamedTag<T> read(InputStream in) throws IOException {
+        return ((BufferedDataInput) newInput(in)).readNamedTag();
+    }
+
+    /**
+     * Read an uncompressed NamedTag in this dialect, within the limits.
+     * @param in The stream to read from. It isn't closed.
+     * @param limits The limits, such as {@link NBTLimits#UNTRUSTED}.
+     * @param <T> A standard tag type.
+     * @return A NamedTag.
+     * @throws IOException IOException.
+     * @throws me.finalchild.finalnbt.exception.LimitException If the data exceeds the limits.
+     */
+    public <T> NamedTag<T> read(InputStream in, NBTLimits limits) throws IOException {
+        DataInput input = newInput(in);
+        FinalNBT.setLimits(input, limits);
+        try {
+            return ((BufferedDataInput) input).readNamedTag();
+        } finally {
+            FinalNBT.setLimits(input, null);
+        }
+    }
+
+    /**
+     * Write an uncompressed NamedTag in this dialect.
+     * @param out The stream to write to. It is flushed but not closed.
+     * @param tag The NamedTag.
+     * @throws IOException IOException.
+     */
+    public void write(OutputStream out, NamedTag<?> tag) throws IOException {
+        DataOutput output = newOutput(out);
+        ((BufferedDataOutput) output).writeNamedTag(tag);
+        ((Flushable) output).flush();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.LimitException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A preset Deflate dictionary for compressing many small NBT blobs, such as cache entries,
+ * which otherwise compress badly because each blob has to spell out the same keys again.
+ *
+ * A dictionary is trained from sample tags, and is made of the encoded key names with their type bytes,
+ * and the string values, that recur the most among the samples.
+ * Blobs are zlib streams of uncompressed Java Edition NBT. Their header carries the dictionary's id,
+ * the Adler-32 of its bytes, so a blob can't be decompressed with the wrong dictionary.
+ * The dictionary itself MUST be kept, such as with {@link #getBytes()}, to read the blobs back.
+ *
+ * A dictionary may be shared by several threads. Each thread keeps its own Deflater and Inflater.
+ */
+public final class NBTDictionary {
+
+    /**
+     * The most a Deflate window can see back.
+     */
+    public static final int MAX_SIZE = 32768;
+
+    private final byte[] bytes;
+    private final int id;
+    private final int level;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+    /**
+     * Use a dictionary kept from {@link #getBytes()}, with the default compression level.
+     * @param bytes The dictionary.
+     */
+    public NBTDictionary(byte[] bytes) {
+        this(bytes, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Use a dictionary kept from {@link #getBytes()}.
+     * @param bytes The dictionary.
+     * @param level The compression level, from 0 to 9, or -1 for the default.
+     */
+    public NBTDictionary(byte[] bytes, int level) {
+        if (bytes.length > MAX_SIZE) {
+            throw new IllegalArgumentException("A dictionary holds at most " + MAX_SIZE + " bytes, not " + bytes.length);
+        }
+        this.bytes = bytes.clone();
+        Adler32 adler = new Adler32();
+        adler.update(bytes, 0, bytes.length);
+        this.id = (int) adler.getValue();
+        this.level = level;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level));
+    }
+
+    /**
+     * Train a dictionary of at most {@link #MAX_SIZE} bytes from sample tags.
+     * @param samples The samples, which should look like the blobs to compress.
+     * @return The dictionary.
+     */
+    public static NBTDictionary train(Collection<? extends NamedTag<?>> samples) {
+        return train(samples, MAX_SIZE);
+    }
+
+    /**
+     * Train a dictionary from sample tags. Fragments that occur at least twice are kept,
+     * those saving the most bytes overall first, and are laid out so the most valuable ones come last,
+     * where Deflate reaches them with the shortest distances.
+     * @param samples The samples, which should look like the blobs to compress.
+     * @param maxSize The most bytes the dictionary may hold, up to {@link #MAX_SIZE}.
+     * @return The dictionary.
+     */
+    public static NBTDictionary train(Collection<? extends NamedTag<?>> samples, int maxSize) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (NamedTag<?> sample : samples) {
+            Object value = sample.getValue();
+            count(counts, fragment(TagType.fromValue(value), sample.getName()));
+            collect(counts, value);
+        }
+        List<Map.Entry<String, Integer>> fragments = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            // A match shorter than 3 bytes isn't worth a back-reference.
+            if (entry.getValue() >= 2 && entry.getKey().length() >= 3) {
+                fragments.add(entry);
+            }
+        }
+        fragments.sort((a, b) -> Long.compare(score(b), score(a)));
+        List<String> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> fragment : fragments) {
+            int length = fragment.getKey().length();
+            if (size + length <= Math.min(maxSize, MAX_SIZE)) {
+                chosen.add(fragment.getKey());
+                size += length;
+            }
+        }
+        byte[] bytes = new byte[size];
+        int p = size;
+        for (String fragment : chosen) {
+            p -= fragment.length();
+            // Each char of a fragment holds one byte.
+            System.arraycopy(fragment.getBytes(StandardCharsets.ISO_8859_1), 0, bytes, p, fragment.length());
+        }
+        return new NBTDictionary(bytes);
+    }
+
+    private static long score(Map.Entry<String, Integer> fragment) {
+        return (long) fragment.getValue() * fragment.getKey().length();
+    }
+
+    private static void collect(Map<String, Integer> counts, Object value) {
+        if (value instanceof Compound) {
+            for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                count(counts, fragment(TagType.fromValue(entry.getValue()), entry.getKey()));
+                collect(counts, entry.getValue());
+            }
+        } else if (value instanceof TypedList) {
+            for (Object e : (TypedList<?>) value) {
+                collect(counts, e);
+            }
+        } else if (value instanceof String) {
+            count(counts, fragment(null, (String) value));
+        }
+    }
+
+    private static void count(Map<String, Integer> counts, String fragment) {
+        if (fragment != null) {
+            counts.merge(fragment, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Encode a string with its length, after a type byte if given, into a String holding a byte per char.
+     */
+    private static String fragment(TagType<?> type, String s) {
+        if (type == null && s.length() > 255) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (type != null) {
+                out.writeByte(type.getId());
+            }
+            out.writeUTF(s);
+        } catch (IOException e) {
+            // Too long a string can't occur in NBT either.
+            return null;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return A copy of the dictionary, to keep alongside the blobs.
+     */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * @return The Adler-32 of the dictionary, which zlib stores in the header of each blob.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Compress a tag into a blob.
+     * @param tag The tag.
+     * @return The blob.
+     */
+    public byte[] compress(NamedTag<?> tag) {
+        byte[] input = NBTEncoder.encode(tag);
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setDictionary(bytes);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] output = new byte[input.length + (input.length >> 3) + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+        }
+        return Arrays.copyOf(output, length);
+    }
+
+    /**
+     * Decompress a blob.
+     * @param blob The blob.
+     * @param <T> The type of the tag.
+     * @return The tag.
+     * @throws IOException If the blob is corrupt, or was compressed with another dictionary.
+     */
+    public <T> NamedTag<T> decompress(byte[] blob) throws IOException {
+        return decompress(blob, 0, blob.length, null);
+    }
+
+    /**
+     * Decompress a blob within the limits. The decompressed size counts against their bytes.
+     * @param blob The array holding the blob.
+     * @param offset Where the blob starts.
+     * @param length The length of the blob.
+     * @param limits The limits, or null for none.
+     * @param <T> The type of the tag.
+     * @return The tag.
+     * @throws IOException If the blob is corrupt, or was compressed with another dictionary.
+     * @throws LimitException If the blob exceeds the limits.
+     */
+    public <T> NamedTag<T> decompress(byte[] blob, int offset, int length, NBTLimits limits) throws IOException {
+        long maxBytes = limits == null ? Integer.MAX_VALUE - 8 : Math.min(limits.getMaxBytes(), Integer.MAX_VALUE - 8);
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(blob, offset, length);
+        byte[] output = new byte[(int) Math.min(Math.max(length * 4L, 256), maxBytes)];
+        int size = 0;
+        try {
+            while (!inflater.finished()) {
+                if (size == output.length) {
+                    if (size >= maxBytes) {
+                        throw new LimitException("A blob decompresses to more than " + maxBytes + " bytes");
+                    }
+                    output = Arrays.copyOf(output, (int) Math.min(output.length * 2L, maxBytes));
+                }
+                int n = inflater.inflate(output, size, output.length - size);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        if (inflater.getAdler() != id) {
+                            throw new IOException("The blob needs dictionary " + Integer.toHexString(inflater.getAdler()) + ", not " + Integer.toHexString(id));
+                        }
+                        inflater.setDictionary(bytes);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated blob");
+                    }
+                }
+                size += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return new ByteArrayNBTDecoder(output, 0, size).limits(limits).readNamedTag();
+    }
+
+}
@@ -0,0 +1,427 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArray;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * Computes the exact size of uncompressed Java Edition NBT, and encodes it straight into a buffer of that size,
+ * with no stream in between.
+ */
+public final class NBTEncoder {
+
+    private NBTEncoder() {
+    }
+
+    /**
+     * The exact number of bytes the NamedTag encodes to.
+     * @param tag The NamedTag.
+     * @return The size.
+     * @throws IllegalArgumentException If a string is longer than 65535 bytes in modified UTF-8.
+     */
+    public static long sizeOf(NamedTag<?> tag) {
+        TagType type = typeOf(tag.getValue());
+        if (type == TagType.END) {
+            return 1;
+        }
+        return 1 + sizeOfString(tag.getName()) + sizeOfPayload(type, tag.getValue());
+    }
+
+    /**
+     * The exact number of bytes a value's payload encodes to, without its tag type and name.
+     * @param value A tag value.
+     * @return The size.
+     */
+    public static long sizeOf(Object value) {
+        return sizeOfPayload(typeOf(value), value);
+    }
+
+    private static TagType typeOf(Object value) {
+        TagType type = TagType.fromValue(value);
+        if (type == null) {
+            throw new UnsupportedTypeException(value.getClass());
+        }
+        return type;
+    }
+
+    private static long sizeOfPayload(TagType type, Object value) {
+        switch (type.getId()) {
+            case 0:
+                return 0;
+            case 1:
+                return 1;
+            case 2:
+                return 2;
+            case 3:
+            case 5:
+                return 4;
+            case 4:
+            case 6:
+                return 8;
+            case 7:
+                if (value instanceof OffHeapArray) {
+                    return 4 + (long) ((OffHeapArray) value).byteSize();
+                }
+                return 4 + (long) ((Byte[]) value).length;
+            case 8:
+                return sizeOfString((String) value);
+            case 9: {
+                TypedList<?> list = (TypedList<?>) value;
+                TagType element = list.getType();
+                if (element.getId() <= 6) {
+                    return 5 + sizeOfPayload(element, null) * list.size();
+                }
+                long size = 5;
+                for (Object e : list) {
+                    size += sizeOfPayload(element, e);
+                }
+                return size;
+            }
+            case 10: {
+                long size = 1;
+                for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                    size += 1 + sizeOfString(entry.getKey()) + sizeOfPayload(typeOf(entry.getValue()), entry.getValue());
+                }
+                return size;
+            }
+            case 11:
+                if (value instanceof OffHeapArray) {
+                    return 4 + (long) ((OffHeapArray) value).byteSize();
+                }
+                return 4 + 4L * ((Integer[]) value).length;
+            default:
+                throw new UnsupportedTypeException(value.getClass());
+        }
+    }
+
+    /**
+     * The length of the string in modified UTF-8, with its u16 length.
+     */
+    private static long sizeOfString(String s) {
+        int length = s.length();
+        int size = length;
+        for (int i = 0; i < length; i ++) {
+            char c = s.charAt(i);
+            if (c == 0 || c >= 0x80) {
+                size += c < 0x800 ? 1 : 2;
+            }
+        }
+        if (size > 0xFFFF) {
+            throw new IllegalArgumentException("encoded string too long: " + size + " bytes");
+        }
+        return 2 + size;
+    }
+
+    /**
+     * Encode the NamedTag into a new array of exactly its size.
+     * @param tag The NamedTag.
+     * @return The encoding.
+     */
+    public static byte[] encode(NamedTag<?> tag) {
+        long size = sizeOf(tag);
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too large for an array: " + size + " bytes");
+        }
+        byte[] bytes = new byte[(int) size];
+        encodeTo(tag, bytes, 0, size);
+        return bytes;
+    }
+
+    /**
+     * Encode the NamedTag into the array.
+     * @param tag The NamedTag.
+     * @param bytes The array. It MUST have room for {@link #sizeOf(NamedTag)} bytes from the offset.
+     * @param offset Where to start.
+     * @return The offset after the encoding.
+     * @throws ArrayIndexOutOfBoundsException If the array is too small.
+     */
+    public static int encodeTo(NamedTag<?> tag, byte[] bytes, int offset) {
+        return encodeTo(tag, bytes, offset, sizeOf(tag));
+    }
+
+    /**
+     * Encode the NamedTag into the array, trusting the size the caller has computed, so the tree isn't walked for it again.
+     * @param size The NamedTag's {@link #sizeOf(NamedTag)}.
+     */
+    private static int encodeTo(NamedTag<?> tag, byte[] bytes, int offset, long size) {
+        if (offset < 0 || size > bytes.length - offset) {
+            throw new ArrayIndexOutOfBoundsException("Need " + size + " bytes from " + offset + " but the array has " + bytes.length);
+        }
+        return (int) new ArraySink(bytes).namedTag(offset, tag);
+    }
+
+    /**
+     * Encode the NamedTag into the buffer at its position, and advance the position past it.
+     * The buffer's byte order doesn't matter.
+     * @param tag The NamedTag.
+     * @param buffer The buffer. It MUST have {@link #sizeOf(NamedTag)} bytes remaining.
+     * @throws BufferOverflowException If the buffer doesn't have enough room.
+     */
+    public static void encodeTo(NamedTag<?> tag, ByteBuffer buffer) {
+        if (sizeOf(tag) > buffer.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (buffer.hasArray()) {
+            int start = buffer.arrayOffset() + buffer.position();
+            int end = (int) new ArraySink(buffer.array()).namedTag(start, tag);
+            buffer.position(buffer.position() + end - start);
+        } else {
+            ByteOrder order = buffer.order();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            try {
+                buffer.position((int) new BufferSink(buffer).namedTag(buffer.position(), tag));
+            } finally {
+                buffer.order(order);
+            }
+        }
+    }
+
+    /**
+     * Where the encoding goes. Each method writes at the given position and returns the position after it.
+     */
+    private abstract static class Sink {
+
+        abstract long putByte(long p, int v);
+
+        abstract long putShort(long p, int v);
+
+        abstract long putInt(long p, int v);
+
+        abstract long putLong(long p, long v);
+
+        abstract long putBytes(long p, Byte[] v);
+
+        abstract long putArray(long p, OffHeapArray v);
+
+        long namedTag(long p, NamedTag<?> tag) {
+            TagType type = typeOf(tag.getValue());
+            p = putByte(p, type.getId());
+            if (type == TagType.END) {
+                return p;
+            }
+            p = putString(p, tag.getName());
+            return payload(p, type, tag.getValue());
+        }
+
+        long putString(long p, String s) {
+            int length = s.length();
+            long start = p;
+            p += 2;
+            for (int i = 0; i < length; i ++) {
+                char c = s.charAt(i);
+                if (c != 0 && c < 0x80) {
+                    p = putByte(p, c);
+                } else if (c < 0x800) {
+                    p = putByte(p, 0xC0 | c >> 6);
+                    p = putByte(p, 0x80 | c & 0x3F);
+                } else {
+                    p = putByte(p, 0xE0 | c >> 12);
+                    p = putByte(p, 0x80 | c >> 6 & 0x3F);
+                    p = putByte(p, 0x80 | c & 0x3F);
+                }
+            }
+            putShort(start, (int) (p - start - 2));
+            return p;
+        }
+
+        long payload(long p, TagType type, Object value) {
+            switch (type.getId()) {
+                case 0:
+                    return p;
+                case 1:
+                    return putByte(p, (Byte) value);
+                case 2:
+                    return putShort(p, (Short) value);
+                case 3:
+                    return putInt(p, (Integer) value);
+                case 4:
+                    return putLong(p, (Long) value);
+                case 5:
+                    return putInt(p, Float.floatToIntBits((Float) value));
+                case 6:
+                    return putLong(p, Double.doubleToLongBits((Double) value));
+                case 7: {
+                    if (value instanceof OffHeapArray) {
+                        OffHeapArray array = (OffHeapArray) value;
+                        return putArray(putInt(p, array.length()), array);
+                    }
+                    Byte[] bytes = (Byte[]) value;
+                    return putBytes(putInt(p, bytes.length), bytes);
+                }
+                case 8:
+                    return putString(p, (String) value);
+                case 9: {
+                    TypedList<?> list = (TypedList<?>) value;
+                    TagType element = list.getType();
+                    p = putByte(p, element.getId());
+                    p = putInt(p, list.size());
+                    for (Object e : list) {
+                        p = payload(p, element, e);
+                    }
+                    return p;
+                }
+                case 10: {
+                    for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                        TagType child = typeOf(entry.getValue());
+                        p = putByte(p, child.getId());
+                        p = putString(p, entry.getKey());
+                        p = payload(p, child, entry.getValue());
+                    }
+                    return putByte(p, 0);
+                }
+                case 11: {
+                    if (value instanceof OffHeapArray) {
+                        OffHeapArray array = (OffHeapArray) value;
+                        return putArray(putInt(p, array.length()), array);
+                    }
+                    Integer[] ints = (Integer[]) value;
+                    p = putInt(p, ints.length);
+                    for (Integer i : ints) {
+                        p = putInt(p, i);
+                    }
+                    return p;
+                }
+                default:
+                    throw new UnsupportedTypeException(value.getClass());
+            }
+        }
+
+    }
+
+    private static final class ArraySink extends Sink {
+
+        private final byte[] b;
+
+        ArraySink(byte[] b) {
+            this.b = b;
+        }
+
+        @Override
+        long putByte(long p, int v) {
+            b[(int) p] = (byte) v;
+            return p + 1;
+        }
+
+        @Override
+        long putShort(long p, int v) {
+            int i = (int) p;
+            b[i] = (byte) (v >>> 8);
+            b[i + 1] = (byte) v;
+            return p + 2;
+        }
+
+        @Override
+        long putInt(long p, int v) {
+            int i = (int) p;
+            b[i] = (byte) (v >>> 24);
+            b[i + 1] = (byte) (v >>> 16);
+            b[i + 2] = (byte) (v >>> 8);
+            b[i + 3] = (byte) v;
+            return p + 4;
+        }
+
+        @Override
+        long putLong(long p, long v) {
+            putInt(p, (int) (v >>> 32));
+            return putInt(p + 4, (int) v);
+        }
+
+        @Override
+        long putBytes(long p, Byte[] v) {
+            int i = (int) p;
+            for (Byte x : v) {
+                b[i++] = x;
+            }
+            return i;
+        }
+
+        @Override
+        long putArray(long p, OffHeapArray v) {
+            v.copyTo(b, (int) p);
+            return p + v.byteSize();
+        }
+
+    }
+
+    private static final class BufferSink extends Sink {
+
+        private final ByteBuffer b;
+
+        BufferSink(ByteBuffer b) {
+            this.b = b;
+        }
+
+        @Override
+        long putByte(long p, int v) {
+            b.put((int) p, (byte) v);
+            return p + 1;
+        }
+
+        @Override
+        long putShort(long p, int v) {
+            b.putShort((int) p, (short) v);
+            return p + 2;
+        }
+
+        @Override
+        long putInt(long p, int v) {
+            b.putInt((int) p, v);
+            return p + 4;
+        }
+
+        @Override
+        long putLong(long p, long v) {
+            b.putLong((int) p, v);
+            return p + 8;
+        }
+
+        @Override
+        long putBytes(long p, Byte[] v) {
+            int i = (int) p;
+            for (Byte x : v) {
+                b.put(i++, x);
+            }
+            return i;
+        }
+
+        @Override
+        long putArray(long p, OffHeapArray v) {
+            v.copyTo(b, (int) p);
+            return p + v.byteSize();
+        }
+
+    }
+
+}
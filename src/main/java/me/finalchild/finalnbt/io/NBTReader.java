@@ -0,0 +1,209 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.query.NBTQuery;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArena;
+import me.finalchild.finalnbt.type.TagInterner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads GZIPped Java Edition NBT, keeping its Inflater, buffers and string scratch space between reads.
+ *
+ * An NBTReader is not thread-safe. Use {@link #forThread()} to get the calling thread's reader.
+ * If a reader is used again while it is reading, such as from a deserializer, a temporary reader is used instead.
+ */
+public final class NBTReader implements Closeable {
+
+    private static final ThreadLocal<NBTReader> readers = ThreadLocal.withInitial(NBTReader::new);
+
+    private final ReusableGZIPInputStream gzip = new ReusableGZIPInputStream();
+    private final BigEndianDataInput input = new BigEndianDataInput(gzip);
+    private boolean busy;
+
+    /**
+     * Get the calling thread's reader. DO NOT close it.
+     * @return The reader.
+     */
+    public static NBTReader forThread() {
+        return readers.get();
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> read(InputStream in) throws IOException {
+        return read(in, (TagInterner) null);
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream, deduplicating identical values through the interner.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param interner The interner, or null not to deduplicate.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> read(InputStream in, TagInterner interner) throws IOException {
+        return read(in, interner, null);
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream, deduplicating identical values through the interner
+     * and within the limits.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param interner The interner, or null not to deduplicate.
+     * @param limits The limits, or null for none.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> read(InputStream in, TagInterner interner, NBTLimits limits) throws IOException {
+        if (busy) {
+            try (NBTReader reader = new NBTReader()) {
+                return reader.read(in, interner, limits);
+            }
+        }
+        busy = true;
+        try {
+            gzip.reset(in);
+            input.reset(gzip);
+            if (interner != null) {
+                FinalNBT.setInterner(input, interner);
+            }
+            if (limits != null) {
+                FinalNBT.setLimits(input, limits);
+            }
+            NamedTag<Compound> tag = input.readNamedTag();
+            gzip.finish();
+            return tag;
+        } finally {
+            if (interner != null) {
+                FinalNBT.setInterner(input, null);
+            }
+            if (limits != null) {
+                FinalNBT.setLimits(input, null);
+            }
+            busy = false;
+            gzip.close();
+        }
+    }
+
+    /**
+     * Read a named NBT compound tag from the stream, decoding large arrays into the arena.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param arena The arena to allocate large arrays from.
+     * @return A named NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> read(InputStream in, OffHeapArena arena) throws IOException {
+        if (busy) {
+            try (NBTReader reader = new NBTReader()) {
+                return reader.read(in, arena);
+            }
+        }
+        busy = true;
+        try {
+            gzip.reset(in);
+            input.reset(gzip);
+            FinalNBT.setArena(input, arena);
+            NamedTag<Compound> tag = input.readNamedTag();
+            gzip.finish();
+            return tag;
+        } finally {
+            FinalNBT.setArena(input, null);
+            busy = false;
+            gzip.close();
+        }
+    }
+
+    /**
+     * Read a named object from the stream.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param c The type of the NBT.
+     * @param <T> The type of the NBT.
+     * @return A named object.
+     * @throws IOException IOException.
+     */
+    public <T> NamedTag<T> read(InputStream in, Class<T> c) throws IOException {
+        if (busy) {
+            try (NBTReader reader = new NBTReader()) {
+                return reader.read(in, c);
+            }
+        }
+        busy = true;
+        try {
+            gzip.reset(in);
+            input.reset(gzip);
+            NamedTag<Compound> tag = input.readNamedTag();
+            gzip.finish();
+            return new NamedTag<>(tag.getName(), FinalNBT.deserialize(tag.getValue(), c));
+        } finally {
+            busy = false;
+            gzip.close();
+        }
+    }
+
+    /**
+     * Run the query on the named NBT compound tag in the stream, reading only as much as the query needs.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param query The query.
+     * @return The root's name with the projection, or null if it doesn't match.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> read(InputStream in, NBTQuery query) throws IOException {
+        if (busy) {
+            try (NBTReader reader = new NBTReader()) {
+                return reader.read(in, query);
+            }
+        }
+        busy = true;
+        try {
+            gzip.reset(in);
+            input.reset(gzip);
+            return query.execute(input);
+        } finally {
+            busy = false;
+            gzip.close();
+        }
+    }
+
+    /**
+     * Release the Inflater. The reader can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        gzip.end();
+    }
+
+}
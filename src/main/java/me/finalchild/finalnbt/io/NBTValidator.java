@@ -0,0 +1,378 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NBTLimits;
+
+import java.io.IOException;
+
+/**
+ * Checks that uncompressed Java Edition NBT in a byte array is well-formed, in one pass over the bytes
+ * and without decoding anything. Data it accepts decodes without error,
+ * with the same limits, through {@link ByteArrayNBTDecoder} or {@link me.finalchild.finalnbt.NamedTag#read}.
+ *
+ * It checks that the root is a named compound, that tag ids are known, that lists don't hold end tags,
+ * that lengths are non-negative and fit in what is left, that strings are valid modified UTF-8,
+ * the nesting depth, the limits if any, and that nothing follows the root.
+ *
+ * A validator is not thread-safe, but may validate any number of arrays one after another.
+ * Apart from its result, it allocates nothing.
+ */
+public final class NBTValidator {
+
+    /**
+     * What is wrong with the data.
+     */
+    public enum Error {
+        TRUNCATED,
+        UNKNOWN_TAG_TYPE,
+        NOT_A_COMPOUND,
+        BAD_LIST_TYPE,
+        NEGATIVE_LENGTH,
+        MALFORMED_STRING,
+        TOO_DEEP,
+        LIMIT_EXCEEDED,
+        TRAILING_DATA
+    }
+
+    private NBTLimits limits;
+    private byte[] b;
+    private int limit;
+    private long bytes;
+    private long tags;
+    private Error error;
+    private int errorOffset;
+
+    /**
+     * Check the data against the limits from now on.
+     * @param limits The limits, or null for none.
+     * @return This validator.
+     */
+    public NBTValidator limits(NBTLimits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Validate a whole array.
+     * @param data The array.
+     * @return The result.
+     */
+    public static Result check(byte[] data) {
+        return new NBTValidator().validate(data, 0, data.length);
+    }
+
+    /**
+     * Validate part of an array holding one named compound.
+     * @param data The array.
+     * @param offset Where the compound starts.
+     * @param length How many bytes there are.
+     * @return The result. Its offsets are indices into the array.
+     */
+    public Result validate(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        b = data;
+        limit = offset + length;
+        bytes = 0;
+        tags = 0;
+        error = null;
+        int p = root(offset);
+        b = null;
+        return p < 0 ? new Result(error, errorOffset) : new Result(null, p);
+    }
+
+    /**
+     * Start walking the array without validating a root, for {@link ParallelNBTDecoder}.
+     */
+    void begin(byte[] data, int limit) {
+        this.b = data;
+        this.limit = limit;
+        bytes = 0;
+        tags = 0;
+        error = null;
+    }
+
+    /**
+     * @return The error recorded by the last walk as an exception, for {@link ParallelNBTDecoder}.
+     */
+    IOException exception() {
+        return new IOException("Malformed NBT: " + new Result(error, errorOffset));
+    }
+
+    private int root(int p) {
+        if (!need(p, 1)) {
+            return fail(Error.TRUNCATED, p);
+        }
+        byte id = b[p];
+        if (id != 10) {
+            return fail(id >= 0 && id <= 11 ? Error.NOT_A_COMPOUND : Error.UNKNOWN_TAG_TYPE, p);
+        }
+        p = string(p + 1);
+        if (p < 0) {
+            return p;
+        }
+        p = value(id, p, 0);
+        if (p >= 0 && p != limit) {
+            return fail(Error.TRAILING_DATA, p);
+        }
+        return p;
+    }
+
+    /**
+     * @return The position after the payload, or -1 after recording the error.
+     */
+    int value(byte id, int p, int depth) {
+        switch (id) {
+            case 1:
+                return need(p, 1) ? p + 1 : fail(Error.TRUNCATED, p);
+            case 2:
+                return need(p, 2) ? p + 2 : fail(Error.TRUNCATED, p);
+            case 3:
+            case 5:
+                return need(p, 4) ? p + 4 : fail(Error.TRUNCATED, p);
+            case 4:
+            case 6:
+                return need(p, 8) ? p + 8 : fail(Error.TRUNCATED, p);
+            case 7:
+            case 11: {
+                int length = length(p);
+                if (length < 0) {
+                    return -1;
+                }
+                int size = id == 7 ? 1 : 4;
+                if (length > (limit - p - 4) / size) {
+                    return fail(Error.TRUNCATED, p);
+                }
+                if (limits != null && (!count(1) || !charge(16 + (id == 7 ? 4L : 20L) * length))) {
+                    return fail(Error.LIMIT_EXCEEDED, p);
+                }
+                return p + 4 + length * size;
+            }
+            case 8: {
+                int end = string(p);
+                if (end >= 0 && limits != null && !charge(40)) {
+                    return fail(Error.LIMIT_EXCEEDED, p);
+                }
+                return end;
+            }
+            case 9: {
+                int q = listHeader(p, depth);
+                if (q < 0) {
+                    return -1;
+                }
+                byte element = b[p];
+                int length = length(p + 1);
+                for (int i = 0; i < length && q >= 0; i ++) {
+                    q = value(element, q, depth + 1);
+                }
+                return q;
+            }
+            case 10: {
+                if (depth > 511) {
+                    return fail(Error.TOO_DEEP, p);
+                }
+                if (limits != null && !charge(48)) {
+                    return fail(Error.LIMIT_EXCEEDED, p);
+                }
+                while (true) {
+                    if (!need(p, 1)) {
+                        return fail(Error.TRUNCATED, p);
+                    }
+                    byte child = b[p];
+                    if (child == 0) {
+                        return p + 1;
+                    }
+                    if (child < 0 || child > 11) {
+                        return fail(Error.UNKNOWN_TAG_TYPE, p);
+                    }
+                    int start = p;
+                    p = string(p + 1);
+                    if (p < 0) {
+                        return p;
+                    }
+                    if (limits != null && (!count(1) || !charge(40 + (child <= 6 ? 48 : 32)))) {
+                        return fail(Error.LIMIT_EXCEEDED, start);
+                    }
+                    p = value(child, p, depth + 1);
+                    if (p < 0) {
+                        return p;
+                    }
+                }
+            }
+            default:
+                // An end tag has no payload.
+                return p;
+        }
+    }
+
+    /**
+     * The smallest payload of each tag type. Also used by {@link ByteArrayNBTDecoder}.
+     */
+    static final int[] MIN_SIZES = {1, 1, 2, 4, 8, 4, 8, 4, 2, 5, 1, 4};
+
+    /**
+     * Check a list's element type and length, without its elements.
+     * @return The position of the first element, or -1 after recording the error.
+     */
+    int listHeader(int p, int depth) {
+        if (depth > 511) {
+            return fail(Error.TOO_DEEP, p);
+        }
+        if (!need(p, 1)) {
+            return fail(Error.TRUNCATED, p);
+        }
+        byte element = b[p];
+        if (element < 0 || element > 11) {
+            return fail(Error.UNKNOWN_TAG_TYPE, p);
+        }
+        int length = length(p + 1);
+        if (length < 0) {
+            return -1;
+        }
+        if (length > 0 && element == 0) {
+            return fail(Error.BAD_LIST_TYPE, p);
+        }
+        // Each element takes at least this many bytes, so a huge length fails here rather than after a long walk.
+        if (length > (limit - p - 5) / MIN_SIZES[element]) {
+            return fail(Error.TRUNCATED, p);
+        }
+        if (limits != null && (!charge(40) || !count(length) || !charge((element >= 1 && element <= 6 ? 20L : 4L) * length))) {
+            return fail(Error.LIMIT_EXCEEDED, p);
+        }
+        return p + 5;
+    }
+
+    /**
+     * @return The length at p, or -1 after recording the error.
+     */
+    private int length(int p) {
+        if (!need(p, 4)) {
+            return fail(Error.TRUNCATED, p);
+        }
+        int length = b[p] << 24 | (b[p + 1] & 0xFF) << 16 | (b[p + 2] & 0xFF) << 8 | b[p + 3] & 0xFF;
+        return length < 0 ? fail(Error.NEGATIVE_LENGTH, p) : length;
+    }
+
+    /**
+     * Check a modified UTF-8 string and charge it as it would be decoded, without the 40 bytes its value adds.
+     * @return The position after the string, or -1 after recording the error.
+     */
+    int string(int p) {
+        if (!need(p, 2)) {
+            return fail(Error.TRUNCATED, p);
+        }
+        int length = (b[p] & 0xFF) << 8 | b[p + 1] & 0xFF;
+        int i = p + 2;
+        int end = i + length;
+        if (end > limit) {
+            return fail(Error.TRUNCATED, p);
+        }
+        int chars = 0;
+        while (i < end) {
+            int c = b[i] & 0xFF;
+            if (c < 0x80) {
+                i ++;
+            } else if ((c & 0xE0) == 0xC0) {
+                if (i + 1 >= end || (b[i + 1] & 0xC0) != 0x80) {
+                    return fail(Error.MALFORMED_STRING, i);
+                }
+                i += 2;
+            } else if ((c & 0xF0) == 0xE0) {
+                if (i + 2 >= end || (b[i + 1] & 0xC0) != 0x80 || (b[i + 2] & 0xC0) != 0x80) {
+                    return fail(Error.MALFORMED_STRING, i);
+                }
+                i += 3;
+            } else {
+                return fail(Error.MALFORMED_STRING, i);
+            }
+            chars ++;
+        }
+        if (limits != null && (chars > limits.getMaxStringLength() || !charge(2L * chars))) {
+            return fail(Error.LIMIT_EXCEEDED, p);
+        }
+        return end;
+    }
+
+    private boolean need(int p, int n) {
+        return limit - p >= n;
+    }
+
+    private boolean charge(long n) {
+        bytes += n;
+        return bytes >= 0 && bytes <= limits.getMaxBytes();
+    }
+
+    private boolean count(long n) {
+        tags += n;
+        return tags >= 0 && tags <= limits.getMaxTags();
+    }
+
+    private int fail(Error error, int offset) {
+        this.error = error;
+        this.errorOffset = offset;
+        return -1;
+    }
+
+    /**
+     * The outcome of a validation.
+     */
+    public static final class Result {
+
+        private final Error error;
+        private final int offset;
+
+        Result(Error error, int offset) {
+            this.error = error;
+            this.offset = offset;
+        }
+
+        public boolean isValid() {
+            return error == null;
+        }
+
+        /**
+         * @return What is wrong, or null if the data is valid.
+         */
+        public Error getError() {
+            return error;
+        }
+
+        /**
+         * @return Where the error was found, or where the compound ends if the data is valid.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        @Override
+        public String toString() {
+            return error == null ? "Valid NBT ending at " + offset : error + " at byte " + offset;
+        }
+
+    }
+
+}
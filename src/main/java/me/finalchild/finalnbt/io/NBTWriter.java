@@ -0,0 +1,107 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.type.Compound;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes GZIPped Java Edition NBT, keeping its Deflater and buffers between writes.
+ *
+ * An NBTWriter is not thread-safe. Use {@link #forThread()} to get the calling thread's writer.
+ * If a writer is used again while it is writing, such as from a serializer, a temporary writer is used instead.
+ */
+public final class NBTWriter implements Closeable {
+
+    private static final ThreadLocal<NBTWriter> writers = ThreadLocal.withInitial(NBTWriter::new);
+
+    private final ReusableGZIPOutputStream gzip = new ReusableGZIPOutputStream();
+    private final BigEndianDataOutput output = new BigEndianDataOutput(gzip);
+    private boolean busy;
+
+    /**
+     * Get the calling thread's writer. DO NOT close it.
+     * @return The writer.
+     */
+    public static NBTWriter forThread() {
+        return writers.get();
+    }
+
+    /**
+     * Write an NBT compound tag to the stream.
+     * @param out The stream to write to. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param nbt An NBT compound tag.
+     * @throws IOException IOException.
+     */
+    public void write(OutputStream out, NamedTag<Compound> nbt) throws IOException {
+        write(out, nbt, null);
+    }
+
+    /**
+     * Write an object to the stream.
+     * @param out The stream to write to. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param nbt An object.
+     * @param c The type of the object, or null if it is already a tag.
+     * @param <T> The type of the object.
+     * @throws IOException IOException.
+     */
+    public <T> void write(OutputStream out, NamedTag<T> nbt, Class<T> c) throws IOException {
+        if (busy) {
+            try (NBTWriter writer = new NBTWriter()) {
+                writer.write(out, nbt, c);
+            }
+            return;
+        }
+        busy = true;
+        try {
+            gzip.reset(out);
+            output.reset(gzip);
+            if (c == null) {
+                output.writeNamedTag(nbt);
+            } else {
+                output.writeNamedTag(new NamedTag<>(nbt.getName(), FinalNBT.serialize(nbt.getValue(), c)));
+            }
+            output.flush();
+            gzip.finish();
+        } finally {
+            busy = false;
+            gzip.close();
+        }
+    }
+
+    /**
+     * Release the Deflater. The writer can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        gzip.end();
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decodes one large uncompressed NBT document on several threads.
+ *
+ * The first phase walks the bytes on the calling thread, validating them as {@link NBTValidator} does,
+ * and cuts the root compound's entries into segments of about the chunk size.
+ * A large list entry is cut between its elements, so even a root holding one huge list is split.
+ * The second phase decodes the segments in parallel on the pool with {@link ByteArrayNBTDecoder}s,
+ * and puts them together, in order, into the same tree a sequential decode gives.
+ *
+ * A decoder may be shared by several threads.
+ */
+public final class ParallelNBTDecoder {
+
+    /**
+     * The longest inflated document {@link #read(InputStream)} accepts, the largest array most VMs allocate.
+     */
+    public static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final ForkJoinPool pool;
+    private int chunkSize = 64 << 10;
+
+    public ParallelNBTDecoder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool The pool to decode the segments on.
+     */
+    public ParallelNBTDecoder(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Set how many bytes a segment should hold. Smaller segments spread better over the threads,
+     * and larger ones cost less to schedule.
+     * @param chunkSize The size in bytes.
+     * @return This decoder.
+     */
+    public ParallelNBTDecoder chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Non-positive chunk size: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Inflate a GZIPped document into one array, then decode it.
+     * The inflated document must fit in an array, so it is limited to {@link #MAX_LENGTH} bytes, a little under 2 GiB.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @return The named root compound.
+     * @throws IOException If the inflated document is longer than {@link #MAX_LENGTH} bytes, or IOException.
+     */
+    public NamedTag<Compound> read(InputStream in) throws IOException {
+        byte[] bytes = new byte[65536];
+        int length = 0;
+        try (GZIPInputStream gzip = new GZIPInputStream(in, 65536)) {
+            int n;
+            while ((n = gzip.read(bytes, length, bytes.length - length)) >= 0) {
+                length += n;
+                if (length == bytes.length) {
+                    if (length == MAX_LENGTH) {
+                        if (gzip.read() < 0) {
+                            break;
+                        }
+                        throw new IOException("The inflated document is longer than " + MAX_LENGTH + " bytes");
+                    }
+                    // Grow in place of a ByteArrayOutputStream, whose toByteArray would copy the whole document again.
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length * 2L, MAX_LENGTH));
+                }
+            }
+        }
+        return decode(bytes, 0, length);
+    }
+
+    /**
+     * Decode a whole array.
+     * @param bytes The array.
+     * @return The named root compound.
+     * @throws IOException If the data is malformed.
+     */
+    public NamedTag<Compound> decode(byte[] bytes) throws IOException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Decode part of an array holding one named compound.
+     * @param bytes The array.
+     * @param offset Where the compound starts.
+     * @param length How many bytes there are.
+     * @return The named root compound.
+     * @throws IOException If the data is malformed.
+     */
+    public NamedTag<Compound> decode(byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        int limit = offset + length;
+        if (length < 1 || bytes[offset] != 10) {
+            throw new IOException("Expected a named compound at " + offset);
+        }
+        ByteArrayNBTDecoder header = new ByteArrayNBTDecoder(bytes, offset + 1, length - 1);
+        String name = header.readString();
+        List<Segment> segments = scan(bytes, header.position(), limit);
+
+        List<ForkJoinTask<Object[]>> tasks = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            tasks.add(pool.submit(() -> segment.decode(bytes)));
+        }
+        Compound root = new Compound();
+        TypedList<Object> list = null;
+        try {
+            for (int i = 0; i < segments.size(); i ++) {
+                Segment segment = segments.get(i);
+                Object[] values = tasks.get(i).join();
+                if (segment.element == null) {
+                    for (Object value : values) {
+                        NamedTag<?> entry = (NamedTag<?>) value;
+                        root.put(entry.getName(), entry.getValue());
+                    }
+                    continue;
+                }
+                if (segment.first) {
+                    list = new TypedList<>((TagType<Object>) segment.element, new ArrayList<>(segment.listLength));
+                    root.put(segment.listName, list);
+                }
+                for (Object value : values) {
+                    list.add(value);
+                }
+            }
+        } catch (RuntimeException e) {
+            // The pool may rethrow a copy wrapping the original.
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                }
+            }
+            throw e;
+        }
+        return new NamedTag<>(name, root);
+    }
+
+    /**
+     * Validate the root compound's payload and cut it into segments.
+     */
+    private List<Segment> scan(byte[] bytes, int p, int limit) throws IOException {
+        NBTValidator walker = new NBTValidator();
+        walker.begin(bytes, limit);
+        List<Segment> segments = new ArrayList<>();
+        int start = p;
+        int count = 0;
+        while (true) {
+            if (p >= limit) {
+                throw new IOException("Truncated NBT at " + p);
+            }
+            byte id = bytes[p];
+            if (id == 0) {
+                break;
+            }
+            int entry = p;
+            int payload = walker.string(p + 1);
+            if (payload < 0) {
+                throw walker.exception();
+            }
+            if (id == 9) {
+                // Cut the list while validating it, and keep the cuts only if it turns out large.
+                String name = new ByteArrayNBTDecoder(bytes, entry + 1, payload - entry - 1).readString();
+                List<Segment> pieces = new ArrayList<>();
+                p = splitList(bytes, walker, name, payload, pieces);
+                if (p < 0) {
+                    throw walker.exception();
+                }
+                if (p - payload >= chunkSize) {
+                    if (count > 0) {
+                        segments.add(new Segment(start, count));
+                    }
+                    segments.addAll(pieces);
+                    start = p;
+                    count = 0;
+                    continue;
+                }
+            } else {
+                p = walker.value(id, payload, 1);
+                if (p < 0) {
+                    throw walker.exception();
+                }
+            }
+            count ++;
+            if (p - start >= chunkSize) {
+                segments.add(new Segment(start, count));
+                start = p;
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            segments.add(new Segment(start, count));
+        }
+        if (p + 1 != limit) {
+            throw new IOException("Malformed NBT: " + NBTValidator.Error.TRAILING_DATA + " at byte " + (p + 1));
+        }
+        return segments;
+    }
+
+    /**
+     * Validate a root entry's list and cut it into segments of elements in the same walk.
+     * @return The position after the list, or -1 after the walker has recorded the error.
+     */
+    private int splitList(byte[] bytes, NBTValidator walker, String name, int payload, List<Segment> segments) {
+        int p = walker.listHeader(payload, 1);
+        if (p < 0) {
+            return -1;
+        }
+        TagType<?> element = TagType.fromId(bytes[payload]);
+        int length = (bytes[payload + 1] & 0xFF) << 24 | (bytes[payload + 2] & 0xFF) << 16 | (bytes[payload + 3] & 0xFF) << 8 | bytes[payload + 4] & 0xFF;
+        int start = p;
+        int count = 0;
+        boolean first = true;
+        for (int i = 0; i < length; i ++) {
+            p = walker.value(element.getId(), p, 2);
+            if (p < 0) {
+                return -1;
+            }
+            count ++;
+            if (p - start >= chunkSize || i == length - 1) {
+                segments.add(new Segment(start, count, name, element, length, first));
+                first = false;
+                start = p;
+                count = 0;
+            }
+        }
+        if (first) {
+            segments.add(new Segment(start, 0, name, element, length, true));
+        }
+        return p;
+    }
+
+    /**
+     * A run of compound entries, or of list elements, decoded as one task.
+     */
+    private static class Segment {
+
+        final int start;
+        final int count;
+        /**
+         * The list's element type, or null for compound entries.
+         */
+        final TagType<?> element;
+        final String listName;
+        final int listLength;
+        final boolean first;
+
+        Segment(int start, int count) {
+            this(start, count, null, null, 0, false);
+        }
+
+        Segment(int start, int count, String listName, TagType<?> element, int listLength, boolean first) {
+            this.start = start;
+            this.count = count;
+            this.element = element;
+            this.listName = listName;
+            this.listLength = listLength;
+            this.first = first;
+        }
+
+        Object[] decode(byte[] bytes) {
+            ByteArrayNBTDecoder decoder = new ByteArrayNBTDecoder(bytes, start, bytes.length - start);
+            Object[] values = new Object[count];
+            try {
+                for (int i = 0; i < count; i ++) {
+                    values[i] = element == null ? decoder.readNamedTag() : decoder.readValue(element);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return values;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A GZIP decompressor that can be reset onto another stream, keeping its Inflater and buffer.
+ * Only the first member of a multi-member GZIP file is read.
+ */
+final class ReusableGZIPInputStream extends InputStream {
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[8192];
+    private InputStream in;
+    private int inputPos;
+    private int inputLimit;
+    private boolean eof;
+
+    /**
+     * Start decompressing another stream.
+     * @param in The stream to read from.
+     * @throws IOException If the GZIP header is invalid.
+     */
+    void reset(InputStream in) throws IOException {
+        this.in = in;
+        inflater.reset();
+        crc.reset();
+        inputPos = 0;
+        inputLimit = 0;
+        eof = false;
+        readHeader();
+        inflater.setInput(input, inputPos, inputLimit - inputPos);
+        inputPos = inputLimit;
+    }
+
+    private void readHeader() throws IOException {
+        if (nextByte() != 0x1F || nextByte() != 0x8B) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (nextByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = nextByte();
+        for (int i = 0; i < 6; i ++) {
+            nextByte();
+        }
+        if ((flags & FEXTRA) != 0) {
+            int length = nextByte() | nextByte() << 8;
+            for (int i = 0; i < length; i ++) {
+                nextByte();
+            }
+        }
+        if ((flags & FNAME) != 0) {
+            while (nextByte() != 0) {
+                // Skip the file name.
+            }
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (nextByte() != 0) {
+                // Skip the comment.
+            }
+        }
+        if ((flags & FHCRC) != 0) {
+            nextByte();
+            nextByte();
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        inputPos = inputLimit - inflater.getRemaining();
+        long checksum = nextByte() | nextByte() << 8 | nextByte() << 16 | (long) nextByte() << 24;
+        long size = nextByte() | nextByte() << 8 | nextByte() << 16 | (long) nextByte() << 24;
+        if (checksum != crc.getValue() || size != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+
+    private int nextByte() throws IOException {
+        if (inputPos == inputLimit) {
+            inputLimit = in.read(input, 0, input.length);
+            inputPos = 0;
+            if (inputLimit < 0) {
+                inputLimit = 0;
+                throw new EOFException("Unexpected end of GZIP input stream");
+            }
+        }
+        return input[inputPos++] & 0xFF;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        try {
+            int n;
+            while ((n = inflater.inflate(b, off, len)) == 0) {
+                if (inflater.finished()) {
+                    readTrailer();
+                    eof = true;
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Unexpected preset dictionary");
+                }
+                if (inflater.needsInput()) {
+                    inputLimit = in.read(input, 0, input.length);
+                    if (inputLimit < 0) {
+                        inputLimit = 0;
+                        throw new EOFException("Unexpected end of ZLIB input stream");
+                    }
+                    inflater.setInput(input, 0, inputLimit);
+                    inputPos = inputLimit;
+                }
+            }
+            crc.update(b, off, n);
+            return n;
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid ZLIB data format");
+        }
+    }
+
+    /**
+     * Read through to the end of the member, so that its trailer is checked. Anything left is skipped.
+     * @throws IOException If the trailer doesn't match.
+     */
+    void finish() throws IOException {
+        byte[] b = new byte[64];
+        while (read(b, 0, b.length) >= 0) {
+            // Skip to the end.
+        }
+    }
+
+    /**
+     * Close the stream being read, keeping the Inflater for the next one.
+     */
+    @Override
+    public void close() throws IOException {
+        InputStream in = this.in;
+        this.in = null;
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Release the Inflater. This can't be used afterwards.
+     */
+    void end() {
+        inflater.end();
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A GZIP compressor that can be reset onto another stream, keeping its Deflater and buffer.
+ */
+final class ReusableGZIPOutputStream extends OutputStream {
+
+    private static final byte[] HEADER = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 0};
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] output = new byte[8192];
+    private OutputStream out;
+
+    /**
+     * Start compressing to another stream. The GZIP header is written right away.
+     * @param out The stream to write to.
+     * @throws IOException IOException.
+     */
+    void reset(OutputStream out) throws IOException {
+        this.out = out;
+        deflater.reset();
+        crc.reset();
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        crc.update(b, off, len);
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    private void deflate() throws IOException {
+        int n = deflater.deflate(output, 0, output.length);
+        if (n > 0) {
+            out.write(output, 0, n);
+        }
+    }
+
+    /**
+     * Finish the compressed data and write the GZIP trailer, without closing the stream.
+     * @throws IOException IOException.
+     */
+    void finish() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        int checksum = (int) crc.getValue();
+        int size = deflater.getTotalIn();
+        out.write(new byte[] {
+                (byte) checksum, (byte) (checksum >>> 8), (byte) (checksum >>> 16), (byte) (checksum >>> 24),
+                (byte) size, (byte) (size >>> 8), (byte) (size >>> 16), (byte) (size >>> 24)
+        });
+    }
+
+    /**
+     * Flush the stream being written. Compressed data still in the Deflater stays there until {@link #finish()}.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Close the stream being written, keeping the Deflater for the next one.
+     */
+    @Override
+    public void close() throws IOException {
+        OutputStream out = this.out;
+        this.out = null;
+        if (out != null) {
+            out.close();
+        }
+    }
+
+    /**
+     * Release the Deflater. This can't be used afterwards.
+     */
+    void end() {
+        deflater.end();
+    }
+
+}
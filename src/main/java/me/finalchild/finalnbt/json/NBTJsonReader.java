@@ -0,0 +1,323 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads JSON written by {@link NBTJsonWriter} through a JsonReader, without building any JsonElement.
+ *
+ * Typed mode restores the exact tag types. "type" MUST come before "value" or "list" in each object,
+ * as NBTJsonWriter writes them.
+ * Plain mode infers the types: objects become compounds, arrays become lists, booleans become bytes,
+ * and numbers become INT, LONG or DOUBLE, widened to a common type within a list.
+ */
+public class NBTJsonReader {
+
+    private final JsonReader in;
+    private final boolean typed;
+    private int depth;
+
+    /**
+     * @param in The JsonReader to read from.
+     * @param typed Whether the JSON was written in typed mode.
+     */
+    public NBTJsonReader(JsonReader in, boolean typed) {
+        this.in = in;
+        this.typed = typed;
+    }
+
+    /**
+     * Read a value from the JSON string.
+     * @param json The JSON string.
+     * @param typed Whether the JSON was written in typed mode.
+     * @return The value.
+     * @throws IOException If the JSON is malformed.
+     */
+    public static Object fromJson(String json, boolean typed) throws IOException {
+        return new NBTJsonReader(new JsonReader(new StringReader(json)), typed).read();
+    }
+
+    public boolean isTyped() {
+        return typed;
+    }
+
+    /**
+     * Read a NamedTag written in typed mode.
+     * @param <T> The type of the value.
+     * @return The NamedTag.
+     * @throws IOException IOException.
+     */
+    public <T> NamedTag<T> readNamedTag() throws IOException {
+        if (!typed) {
+            throw new UnsupportedOperationException("Plain JSON has no tag names");
+        }
+        in.beginObject();
+        String name = "";
+        Object value = null;
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (key.equals("name")) {
+                name = in.nextString();
+            } else if (key.equals("type")) {
+                value = readTypedValue(readType());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new NamedTag<>(name, (T) value);
+    }
+
+    /**
+     * Read a value.
+     * @return The value, typed as a standard tag type.
+     * @throws IOException IOException.
+     */
+    public Object read() throws IOException {
+        if (typed) {
+            in.beginObject();
+            Object value = null;
+            boolean found = false;
+            while (in.hasNext()) {
+                if (in.nextName().equals("type")) {
+                    value = readTypedValue(readType());
+                    found = true;
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            if (!found) {
+                throw new JsonParseException("Missing \"type\" at " + in.getPath());
+            }
+            return value;
+        }
+        return readPlain();
+    }
+
+    private TagType readType() throws IOException {
+        TagType type = TagType.fromId((byte) in.nextInt());
+        if (type == null || type == TagType.END) {
+            throw new JsonParseException("Invalid tag type at " + in.getPath());
+        }
+        return type;
+    }
+
+    /**
+     * Read the rest of a typed value object whose "type" was just read.
+     */
+    private Object readTypedValue(TagType type) throws IOException {
+        if (!in.nextName().equals("value")) {
+            throw new JsonParseException("Expected \"value\" after \"type\" at " + in.getPath());
+        }
+        return readPayload(type);
+    }
+
+    private Object readPayload(TagType type) throws IOException {
+        switch (type.getId()) {
+            case 1:
+                return (byte) in.nextInt();
+            case 2:
+                return (short) in.nextInt();
+            case 3:
+                return in.nextInt();
+            case 4:
+                return in.nextLong();
+            case 5:
+                return in.peek() == JsonToken.STRING ? Float.parseFloat(in.nextString()) : (float) in.nextDouble();
+            case 6:
+                return in.peek() == JsonToken.STRING ? Double.parseDouble(in.nextString()) : in.nextDouble();
+            case 7: {
+                List<Byte> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add((byte) in.nextInt());
+                }
+                in.endArray();
+                return list.toArray(new Byte[list.size()]);
+            }
+            case 8:
+                return in.nextString();
+            case 9: {
+                enter();
+                in.beginObject();
+                if (!in.nextName().equals("type")) {
+                    throw new JsonParseException("Expected \"type\" at " + in.getPath());
+                }
+                TagType elementType = TagType.fromId((byte) in.nextInt());
+                if (elementType == null) {
+                    throw new JsonParseException("Invalid tag type at " + in.getPath());
+                }
+                if (!in.nextName().equals("list")) {
+                    throw new JsonParseException("Expected \"list\" after \"type\" at " + in.getPath());
+                }
+                TypedList list = new TypedList<>(elementType);
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(readPayload(elementType));
+                }
+                in.endArray();
+                in.endObject();
+                depth--;
+                return list;
+            }
+            case 10: {
+                enter();
+                Compound compound = new Compound();
+                in.beginObject();
+                while (in.hasNext()) {
+                    compound.put(in.nextName(), read());
+                }
+                in.endObject();
+                depth--;
+                return compound;
+            }
+            case 11: {
+                List<Integer> list = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    list.add(in.nextInt());
+                }
+                in.endArray();
+                return list.toArray(new Integer[list.size()]);
+            }
+            default:
+                throw new JsonParseException("Unexpected tag type " + type.getId() + " at " + in.getPath());
+        }
+    }
+
+    private Object readPlain() throws IOException {
+        switch (in.peek()) {
+            case BEGIN_OBJECT: {
+                enter();
+                Compound compound = new Compound();
+                in.beginObject();
+                while (in.hasNext()) {
+                    compound.put(in.nextName(), readPlain());
+                }
+                in.endObject();
+                depth--;
+                return compound;
+            }
+            case BEGIN_ARRAY: {
+                enter();
+                List<Object> elements = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    elements.add(readPlain());
+                }
+                in.endArray();
+                depth--;
+                return toList(elements);
+            }
+            case STRING:
+                return in.nextString();
+            case NUMBER:
+                return parseNumber(in.nextString());
+            case BOOLEAN:
+                return in.nextBoolean() ? (byte) 1 : (byte) 0;
+            default:
+                throw new JsonParseException("Unexpected " + in.peek() + " at " + in.getPath());
+        }
+    }
+
+    private static Object parseNumber(String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long l = Long.parseLong(number);
+                if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                    return (int) l;
+                }
+                return l;
+            } catch (NumberFormatException e) {
+                // Too big for a long.
+            }
+        }
+        return Double.parseDouble(number);
+    }
+
+    private TypedList<?> toList(List<Object> elements) {
+        if (elements.isEmpty()) {
+            return new TypedList<>(TagType.END);
+        }
+        TagType type = TagType.fromValue(elements.get(0));
+        for (Object e : elements) {
+            TagType t = TagType.fromValue(e);
+            if (t != type) {
+                type = widen(type, t);
+            }
+        }
+        TypedList list = new TypedList<>(type);
+        for (Object e : elements) {
+            if (type == TagType.INT) {
+                list.add(((Number) e).intValue());
+            } else if (type == TagType.LONG) {
+                list.add(((Number) e).longValue());
+            } else if (type == TagType.DOUBLE) {
+                list.add(((Number) e).doubleValue());
+            } else {
+                list.add(e);
+            }
+        }
+        return list;
+    }
+
+    private TagType widen(TagType a, TagType b) {
+        if (isNumber(a) && isNumber(b)) {
+            if (a == TagType.DOUBLE || b == TagType.DOUBLE) {
+                return TagType.DOUBLE;
+            }
+            if (a == TagType.LONG || b == TagType.LONG) {
+                return TagType.LONG;
+            }
+            return TagType.INT;
+        }
+        throw new JsonParseException("Mixed element types in an array at " + in.getPath());
+    }
+
+    private static boolean isNumber(TagType type) {
+        return type == TagType.BYTE || type == TagType.INT || type == TagType.LONG || type == TagType.DOUBLE;
+    }
+
+    private void enter() {
+        if (++depth > 512) {
+            throw new DepthException();
+        }
+    }
+
+}
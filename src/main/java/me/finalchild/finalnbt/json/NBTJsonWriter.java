@@ -0,0 +1,318 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.json;
+
+import com.google.gson.stream.JsonWriter;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArray;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Writes NBT as JSON through a JsonWriter, without building any JsonElement.
+ * It either walks a tree of standard tag types, or transcodes straight from an NBT stream.
+ *
+ * In plain mode, compounds become objects, lists and arrays become arrays, and numbers become numbers.
+ * In typed mode, every value is written as {"type": id, "value": payload} and lists as {"type": elementId, "list": [payloads]},
+ * so that {@link NBTJsonReader} can restore the exact tag types. Compound payloads hold typed values.
+ * Non-finite floats and doubles are written as strings in both modes.
+ */
+public class NBTJsonWriter {
+
+    private final JsonWriter out;
+    private final boolean typed;
+
+    /**
+     * @param out The JsonWriter to write to.
+     * @param typed Whether to keep the tag types.
+     */
+    public NBTJsonWriter(JsonWriter out, boolean typed) {
+        this.out = out;
+        this.typed = typed;
+    }
+
+    /**
+     * Write a value as JSON.
+     * @param value The value. Its type must be a standard tag type.
+     * @param typed Whether to keep the tag types.
+     * @return A string of JSON.
+     */
+    public static String toJson(Object value, boolean typed) {
+        StringWriter writer = new StringWriter();
+        try {
+            new NBTJsonWriter(new JsonWriter(writer), typed).write(value);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return writer.toString();
+    }
+
+    public boolean isTyped() {
+        return typed;
+    }
+
+    /**
+     * Write a NamedTag. In typed mode, the name is kept as "name" next to "type" and "value".
+     * @param tag The NamedTag.
+     * @throws IOException IOException.
+     */
+    public void write(NamedTag<?> tag) throws IOException {
+        if (typed) {
+            out.beginObject();
+            out.name("name").value(tag.getName());
+            writeTyped(typeOf(tag.getValue()), tag.getValue());
+            out.endObject();
+        } else {
+            write(tag.getValue());
+        }
+    }
+
+    /**
+     * Write a value.
+     * @param value The value. Its type must be a standard tag type.
+     * @throws IOException IOException.
+     */
+    public void write(Object value) throws IOException {
+        if (typed) {
+            out.beginObject();
+            writeTyped(typeOf(value), value);
+            out.endObject();
+        } else {
+            writePayload(typeOf(value), value);
+        }
+    }
+
+    /**
+     * Read a NamedTag from the NBT stream and write it as JSON, without building the tree.
+     * @param stream The stream to read from.
+     * @throws IOException IOException.
+     */
+    public void transcode(DataInput stream) throws IOException {
+        TagType type = TagType.read(stream);
+        if (type == null || type == TagType.END) {
+            throw new IOException("Expected a named tag");
+        }
+        String name = stream.readUTF();
+        if (typed) {
+            out.beginObject();
+            out.name("name").value(name);
+            out.name("type").value(type.getId());
+            out.name("value");
+            transcodePayload(stream, type, 0);
+            out.endObject();
+        } else {
+            transcodePayload(stream, type, 0);
+        }
+    }
+
+    private static TagType typeOf(Object value) {
+        TagType type = TagType.fromValue(value);
+        if (type == null || type == TagType.END) {
+            throw new UnsupportedTypeException(value == null ? Void.class : value.getClass());
+        }
+        return type;
+    }
+
+    private void writeTyped(TagType type, Object value) throws IOException {
+        out.name("type").value(type.getId());
+        out.name("value");
+        writePayload(type, value);
+    }
+
+    private void writePayload(TagType type, Object value) throws IOException {
+        if (value instanceof OffHeapArray) {
+            value = ((OffHeapArray) value).toHeap();
+        }
+        switch (type.getId()) {
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+                out.value(((Number) value).longValue());
+                break;
+            case 5:
+            case 6:
+                writeDecimal((Number) value);
+                break;
+            case 7:
+                out.beginArray();
+                for (Byte b : (Byte[]) value) {
+                    out.value(b);
+                }
+                out.endArray();
+                break;
+            case 8:
+                out.value((String) value);
+                break;
+            case 9:
+                TypedList<?> list = (TypedList<?>) value;
+                TagType elementType = list.getType();
+                if (typed) {
+                    out.beginObject();
+                    out.name("type").value(elementType.getId());
+                    out.name("list");
+                }
+                out.beginArray();
+                for (Object e : list) {
+                    writePayload(elementType, e);
+                }
+                out.endArray();
+                if (typed) {
+                    out.endObject();
+                }
+                break;
+            case 10:
+                out.beginObject();
+                for (Map.Entry<String, Object> entry : ((Compound) value).entrySet()) {
+                    out.name(entry.getKey());
+                    write(entry.getValue());
+                }
+                out.endObject();
+                break;
+            case 11:
+                out.beginArray();
+                for (Integer i : (Integer[]) value) {
+                    out.value(i);
+                }
+                out.endArray();
+                break;
+            default:
+                throw new UnsupportedTypeException(value.getClass());
+        }
+    }
+
+    private void transcodePayload(DataInput stream, TagType type, int depth) throws IOException {
+        switch (type.getId()) {
+            case 1:
+                out.value(stream.readByte());
+                break;
+            case 2:
+                out.value(stream.readShort());
+                break;
+            case 3:
+                out.value(stream.readInt());
+                break;
+            case 4:
+                out.value(stream.readLong());
+                break;
+            case 5:
+                writeDecimal(stream.readFloat());
+                break;
+            case 6:
+                writeDecimal(stream.readDouble());
+                break;
+            case 7: {
+                int length = stream.readInt();
+                out.beginArray();
+                for (int i = 0; i < length; i ++) {
+                    out.value(stream.readByte());
+                }
+                out.endArray();
+                break;
+            }
+            case 8:
+                out.value(stream.readUTF());
+                break;
+            case 9: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                TagType elementType = TagType.read(stream);
+                if (elementType == null) {
+                    throw new IOException("Unknown tag type in a list");
+                }
+                int length = stream.readInt();
+                if (typed) {
+                    out.beginObject();
+                    out.name("type").value(elementType.getId());
+                    out.name("list");
+                }
+                out.beginArray();
+                for (int i = 0; i < length; i ++) {
+                    transcodePayload(stream, elementType, depth + 1);
+                }
+                out.endArray();
+                if (typed) {
+                    out.endObject();
+                }
+                break;
+            }
+            case 10: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                out.beginObject();
+                TagType entryType;
+                while ((entryType = TagType.read(stream)) != TagType.END) {
+                    if (entryType == null) {
+                        throw new IOException("Unknown tag type in a compound");
+                    }
+                    out.name(stream.readUTF());
+                    if (typed) {
+                        out.beginObject();
+                        out.name("type").value(entryType.getId());
+                        out.name("value");
+                        transcodePayload(stream, entryType, depth + 1);
+                        out.endObject();
+                    } else {
+                        transcodePayload(stream, entryType, depth + 1);
+                    }
+                }
+                out.endObject();
+                break;
+            }
+            case 11: {
+                int length = stream.readInt();
+                out.beginArray();
+                for (int i = 0; i < length; i ++) {
+                    out.value(stream.readInt());
+                }
+                out.endArray();
+                break;
+            }
+            default:
+                throw new IOException("Unexpected tag type " + type.getId());
+        }
+    }
+
+    private void writeDecimal(Number value) throws IOException {
+        double d = value.doubleValue();
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            out.value(value.toString());
+        } else {
+            // Number.toString keeps floats short, like 0.5 instead of 0.5000000001.
+            out.value(value);
+        }
+    }
+
+}
@@ -0,0 +1,379 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.io.BigEndianDataInput;
+import me.finalchild.finalnbt.io.ByteArrayNBTDecoder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The offsets of the values in an uncompressed Java Edition NBT file, for reading single values without
+ * parsing from the root.
+ *
+ * Every value in a compound and every element of a list of strings, arrays, lists or compounds is indexed.
+ * Elements of lists of numbers are found from their list's offset.
+ * The index remembers the size and modification time of the file, and is stale once either changes.
+ */
+public final class NBTIndex {
+
+    private static final int MAGIC = 0x4E425449;
+    private static final int VERSION = 2;
+
+    private final long fileSize;
+    private final long modified;
+    private final Map<NBTPath, Entry> entries;
+
+    private NBTIndex(long fileSize, long modified, Map<NBTPath, Entry> entries) {
+        this.fileSize = fileSize;
+        this.modified = modified;
+        this.entries = entries;
+    }
+
+    /**
+     * Index the file in one pass, skipping over the values rather than decoding them.
+     * @param file An uncompressed NBT file.
+     * @return The index.
+     * @throws IOException IOException.
+     */
+    public static NBTIndex build(Path file) throws IOException {
+        long fileSize = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Map<NBTPath, Entry> entries = new HashMap<>();
+        try (InputStream in = Files.newInputStream(file)) {
+            BigEndianDataInput input = new BigEndianDataInput(in);
+            TagType type = TagType.read(input);
+            if (type == null) {
+                throw new IOException("Unknown tag type");
+            }
+            if (type != TagType.END) {
+                input.readUTF();
+                scan(input, type, new ArrayList<>(), entries);
+            }
+        }
+        return new NBTIndex(fileSize, modified, entries);
+    }
+
+    private static void scan(BigEndianDataInput input, TagType type, List<Object> path, Map<NBTPath, Entry> entries) throws IOException {
+        if (path.size() > 512) {
+            throw new DepthException();
+        }
+        long start = input.position();
+        byte elementType = 0;
+        if (type == TagType.COMPOUND) {
+            byte id;
+            while ((id = input.readByte()) != 0) {
+                TagType child = TagType.fromId(id);
+                if (child == null) {
+                    throw new IOException("Unknown tag type " + id);
+                }
+                path.add(input.readUTF());
+                scan(input, child, path, entries);
+                path.remove(path.size() - 1);
+            }
+        } else if (type == TagType.LIST) {
+            TagType element = TagType.read(input);
+            if (element == null) {
+                throw new IOException("Unknown tag type");
+            }
+            elementType = element.getId();
+            int length = input.readInt();
+            if (length < 0) {
+                throw new IOException("Negative length " + length);
+            }
+            if (element == TagType.END && length > 0) {
+                throw new IOException("A list of " + length + " end tags");
+            }
+            if (width(element) > 0) {
+                for (int i = 0; i < length; i ++) {
+                    element.skipValue(input);
+                }
+            } else {
+                for (int i = 0; i < length; i ++) {
+                    path.add(i);
+                    scan(input, element, path, entries);
+                    path.remove(path.size() - 1);
+                }
+            }
+        } else {
+            type.skipValue(input);
+        }
+        entries.put(NBTPath.of(path), new Entry(type.getId(), start, input.position() - start, elementType));
+    }
+
+    /**
+     * The width of a number, or 0 for the other types.
+     */
+    private static int width(TagType type) {
+        switch (type.getId()) {
+            case 1:
+                return 1;
+            case 2:
+                return 2;
+            case 3:
+            case 5:
+                return 4;
+            case 4:
+            case 6:
+                return 8;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Load an index saved by {@link #save(Path)}.
+     * @param indexFile The saved index.
+     * @param file The NBT file it indexes.
+     * @return The index, or null if there is none or it is stale.
+     * @throws IOException IOException.
+     */
+    public static NBTIndex load(Path indexFile, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long fileSize = in.readLong();
+            long modified = in.readLong();
+            int count = in.readInt();
+            Map<NBTPath, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i ++) {
+                NBTPath path = readPath(in);
+                entries.put(path, new Entry(in.readByte(), in.readLong(), in.readLong(), in.readByte()));
+            }
+            NBTIndex index = new NBTIndex(fileSize, modified, entries);
+            return index.isValid(file) ? index : null;
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the index saved next to the file, or build and save it if there is none or it is stale.
+     * @param file An uncompressed NBT file. Its index is saved as the file's name plus ".idx".
+     * @return The index.
+     * @throws IOException IOException.
+     */
+    public static NBTIndex of(Path file) throws IOException {
+        Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+        NBTIndex index = load(indexFile, file);
+        if (index == null) {
+            index = build(file);
+            index.save(indexFile);
+        }
+        return index;
+    }
+
+    /**
+     * Save the index.
+     * @param indexFile Where to save it.
+     * @throws IOException IOException.
+     */
+    public void save(Path indexFile) throws IOException {
+        try (OutputStream out = Files.newOutputStream(indexFile)) {
+            DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(out));
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeLong(fileSize);
+            stream.writeLong(modified);
+            stream.writeInt(entries.size());
+            for (Map.Entry<NBTPath, Entry> entry : entries.entrySet()) {
+                writePath(stream, entry.getKey());
+                stream.writeByte(entry.getValue().type);
+                stream.writeLong(entry.getValue().offset);
+                stream.writeLong(entry.getValue().length);
+                stream.writeByte(entry.getValue().elementType);
+            }
+            stream.flush();
+        }
+    }
+
+    private static void writePath(DataOutputStream stream, NBTPath path) throws IOException {
+        List<Object> segments = path.getSegments();
+        stream.writeShort(segments.size());
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                stream.writeByte(0);
+                stream.writeUTF((String) segment);
+            } else {
+                stream.writeByte(1);
+                stream.writeInt((Integer) segment);
+            }
+        }
+    }
+
+    private static NBTPath readPath(DataInputStream stream) throws IOException {
+        int size = stream.readUnsignedShort();
+        List<Object> segments = new ArrayList<>(size);
+        for (int i = 0; i < size; i ++) {
+            segments.add(stream.readByte() == 0 ? stream.readUTF() : (Object) stream.readInt());
+        }
+        return NBTPath.of(segments);
+    }
+
+    /**
+     * @param file The NBT file this indexes.
+     * @return Whether the file still has the size and modification time it had when indexed.
+     * @throws IOException IOException.
+     */
+    public boolean isValid(Path file) throws IOException {
+        return Files.exists(file) && Files.size(file) == fileSize && Files.getLastModifiedTime(file).toMillis() == modified;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Find where a value is. The path MUST NOT contain {@code []}.
+     * @param path The path.
+     * @return Where the value is, or null if it doesn't exist.
+     */
+    public Entry find(NBTPath path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        List<Object> segments = path.getSegments();
+        if (segments.isEmpty() || !(segments.get(segments.size() - 1) instanceof Integer)) {
+            return null;
+        }
+        // An element of a list of numbers.
+        int index = (Integer) segments.get(segments.size() - 1);
+        Entry list = entries.get(NBTPath.of(segments.subList(0, segments.size() - 1)));
+        if (list == null || list.type != TagType.LIST.getId() || list.elementType == 0 || index < 0) {
+            return null;
+        }
+        int width = width(TagType.fromId(list.elementType));
+        // Elements of other types are indexed by their own paths, so a miss above means there is no such element.
+        if (width <= 0 || index >= (list.length - 5) / width) {
+            return null;
+        }
+        return new Entry(list.elementType, list.offset + 5 + (long) index * width, width, (byte) 0);
+    }
+
+    /**
+     * Find where a value is.
+     * @param path The path, like {@code Level.Sections[3].Y}.
+     * @return Where the value is, or null if it doesn't exist.
+     */
+    public Entry find(String path) {
+        return find(NBTPath.parse(path));
+    }
+
+    /**
+     * Read a single value with one positioned read.
+     * A value of more than 2 GiB can't be read into an array; use {@link #find(NBTPath)} and read it from the file instead.
+     * @param channel The NBT file this indexes.
+     * @param path The path.
+     * @return The value, or null if it doesn't exist.
+     * @throws IOException IOException.
+     */
+    public Object read(FileChannel channel, NBTPath path) throws IOException {
+        Entry entry = find(path);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.length > Integer.MAX_VALUE - 8) {
+            throw new IOException("The value at " + path + " takes " + entry.length + " bytes, too many to read into an array");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry.length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, entry.offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return new ByteArrayNBTDecoder(buffer.array()).readValue(TagType.fromId(entry.type));
+    }
+
+    /**
+     * Read a single value.
+     * @param file The NBT file this indexes.
+     * @param path The path, like {@code Level.Sections[3].Y}.
+     * @return The value, or null if it doesn't exist.
+     * @throws IOException IOException.
+     */
+    public Object read(Path file, String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel, NBTPath.parse(path));
+        }
+    }
+
+    /**
+     * Where a value is in the file.
+     */
+    public static final class Entry {
+
+        private final byte type;
+        private final long offset;
+        private final long length;
+        private final byte elementType;
+
+        Entry(byte type, long offset, long length, byte elementType) {
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.elementType = elementType;
+        }
+
+        public TagType getType() {
+            return TagType.fromId(type);
+        }
+
+        /**
+         * @return The offset of the value's payload, after its tag type and name.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The length of the payload in bytes.
+         */
+        public long getLength() {
+            return length;
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path into a tag, like {@code Level.Entities[].id} or {@code Level.Sections[0]."block states"}.
+ * Keys are separated by dots and may be quoted. {@code [n]} is the nth element of a list,
+ * and {@code []} is any element.
+ */
+public final class NBTPath {
+
+    /**
+     * The segment of {@code []}.
+     */
+    public static final int ANY = -1;
+
+    private final List<Object> segments;
+
+    private NBTPath(List<Object> segments) {
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Parse a path.
+     * @param path The path. An empty string is the root.
+     * @return The path.
+     * @throws IllegalArgumentException If the path is malformed.
+     */
+    public static NBTPath parse(String path) {
+        if (path.isEmpty()) {
+            return of(Collections.emptyList());
+        }
+        QueryParser parser = new QueryParser(path);
+        NBTPath result = parser.path();
+        parser.expectEnd();
+        return result;
+    }
+
+    static NBTPath of(List<Object> segments) {
+        return new NBTPath(new ArrayList<>(segments));
+    }
+
+    /**
+     * @return The segments: a String for a key, an Integer for a list index, or {@link #ANY}.
+     */
+    public List<Object> getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return Whether every segment is a key.
+     */
+    public boolean isKeysOnly() {
+        for (Object segment : segments) {
+            if (!(segment instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof NBTPath && segments.equals(((NBTPath) o).segments);
+    }
+
+    @Override
+    public int hashCode() {
+        return segments.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof String) {
+                if (builder.length() > 0) {
+                    builder.append('.');
+                }
+                String key = (String) segment;
+                if (QueryParser.isPlainKey(key)) {
+                    builder.append(key);
+                } else {
+                    QueryParser.quote(builder, key);
+                }
+            } else if ((Integer) segment == ANY) {
+                builder.append("[]");
+            } else {
+                builder.append('[').append(segment).append(']');
+            }
+        }
+        return builder.toString();
+    }
+
+}
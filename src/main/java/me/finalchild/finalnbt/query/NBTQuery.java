@@ -0,0 +1,366 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A query over compounds: a predicate on paths, and the paths to project out of the matching ones.
+ *
+ * <pre>
+ * NBTQuery query = NBTQuery.where("Level.Entities[].id == \"minecraft:villager\" &amp;&amp; Level.InhabitedTime &gt; 1000")
+ *         .select("Level.xPos", "Level.zPos");
+ * </pre>
+ *
+ * On a stream, the query only decodes what its paths lead to and skips the other subtrees.
+ * It stops reading as soon as the predicate is decided and, if it holds, every projection has been found.
+ * A path through {@code []} matches if any element matches. A path alone matches if it exists.
+ *
+ * An NBTQuery is immutable and may be shared by several threads.
+ */
+public final class NBTQuery {
+
+    private final Predicate where;
+    private final List<Predicate.Atom> atoms;
+    private final List<NBTPath> projections;
+    private final PathNode root;
+
+    private NBTQuery(Predicate where, List<Predicate.Atom> atoms, List<NBTPath> projections) {
+        this.where = where;
+        this.atoms = atoms;
+        this.projections = projections;
+        this.root = new PathNode();
+        for (Predicate.Atom atom : atoms) {
+            PathNode node = root.child(atom.path);
+            if (atom.isComparison()) {
+                node.comparisons.add(atom);
+            } else {
+                node.exists.add(atom);
+            }
+        }
+        for (NBTPath projection : projections) {
+            root.child(projection).projection = projection;
+        }
+    }
+
+    /**
+     * A query that matches every compound.
+     * @return The query.
+     */
+    public static NBTQuery all() {
+        return new NBTQuery(null, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Compile a query that matches the compounds satisfying the predicate.
+     * @param predicate The predicate, like {@code a.b[].c == "x" && !(d > 1 || e)}.
+     * @return The query.
+     * @throws IllegalArgumentException If the predicate is malformed.
+     */
+    public static NBTQuery where(String predicate) {
+        QueryParser parser = new QueryParser(predicate);
+        List<Predicate.Atom> atoms = new ArrayList<>();
+        Predicate where = parser.expression(atoms);
+        parser.expectEnd();
+        return new NBTQuery(where, Collections.unmodifiableList(atoms), Collections.emptyList());
+    }
+
+    /**
+     * Project these paths out of the matching compounds, in addition to those already selected.
+     * Without any, a match results in an empty compound.
+     * @param paths The paths. They MUST consist of keys only.
+     * @return A new query.
+     */
+    public NBTQuery select(String... paths) {
+        List<NBTPath> projections = new ArrayList<>(this.projections);
+        for (String path : paths) {
+            NBTPath parsed = NBTPath.parse(path);
+            if (!parsed.isKeysOnly()) {
+                throw new IllegalArgumentException("Projections must consist of keys only: " + path);
+            }
+            projections.add(parsed);
+        }
+        return new NBTQuery(where, atoms, Collections.unmodifiableList(projections));
+    }
+
+    /**
+     * Project the whole of the matching compounds. Such a query has to read them to the end.
+     * @return A new query.
+     */
+    public NBTQuery selectAll() {
+        List<NBTPath> projections = new ArrayList<>(this.projections);
+        projections.add(NBTPath.of(Collections.emptyList()));
+        return new NBTQuery(where, atoms, Collections.unmodifiableList(projections));
+    }
+
+    /**
+     * Whether the compound satisfies the predicate.
+     * @param compound The compound.
+     * @return Whether it matches.
+     */
+    public boolean matches(Compound compound) {
+        return apply(compound) != null;
+    }
+
+    /**
+     * Run the query on a compound in memory.
+     * @param compound The compound.
+     * @return The projection, or null if it doesn't match.
+     */
+    public Compound apply(Compound compound) {
+        Run run = new Run();
+        run.visit(compound, root);
+        return run.finish();
+    }
+
+    /**
+     * Run the query on a NamedTag read from the stream.
+     * If the query stops early, the rest of the tag is left unread.
+     * @param stream The stream to read from.
+     * @return The root's name with the projection, or null if it doesn't match or the root isn't a compound.
+     * @throws IOException IOException.
+     */
+    public NamedTag<Compound> execute(DataInput stream) throws IOException {
+        TagType type = TagType.read(stream);
+        if (type == null) {
+            throw new IOException("Unknown tag type");
+        }
+        if (type == TagType.END) {
+            return null;
+        }
+        String name = stream.readUTF();
+        if (type != TagType.COMPOUND) {
+            type.skipValue(stream);
+            return null;
+        }
+        Run run = new Run();
+        run.visit(stream, type, root);
+        Compound result = run.finish();
+        return result != null ? new NamedTag<>(name, result) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "NBTQuery{atoms=" + atoms.size() + ", projections=" + projections + "}";
+    }
+
+    /**
+     * A node of the trie the paths of a query make up.
+     */
+    private static final class PathNode {
+
+        final Map<String, PathNode> keys = new HashMap<>();
+        final Map<Integer, PathNode> indices = new HashMap<>();
+        PathNode any;
+        final List<Predicate.Atom> exists = new ArrayList<>();
+        final List<Predicate.Atom> comparisons = new ArrayList<>();
+        NBTPath projection;
+
+        PathNode child(NBTPath path) {
+            PathNode node = this;
+            for (Object segment : path.getSegments()) {
+                if (segment instanceof String) {
+                    node = node.keys.computeIfAbsent((String) segment, k -> new PathNode());
+                } else if ((Integer) segment == NBTPath.ANY) {
+                    if (node.any == null) {
+                        node.any = new PathNode();
+                    }
+                    node = node.any;
+                } else {
+                    node = node.indices.computeIfAbsent((Integer) segment, k -> new PathNode());
+                }
+            }
+            return node;
+        }
+
+        boolean hasElements() {
+            return any != null || !indices.isEmpty();
+        }
+
+    }
+
+    /**
+     * The state of one evaluation.
+     */
+    private final class Run {
+
+        private final boolean[] matched = new boolean[atoms.size()];
+        private int decision = where == null ? Predicate.TRUE : Predicate.UNKNOWN;
+        private Compound result = new Compound();
+        private int projected;
+
+        private void hit(Predicate.Atom atom) {
+            if (!matched[atom.index]) {
+                matched[atom.index] = true;
+                decision = where.evaluate(matched, false);
+            }
+        }
+
+        private boolean done() {
+            return decision == Predicate.FALSE || decision == Predicate.TRUE && projected == projections.size();
+        }
+
+        Compound finish() {
+            if (where != null && where.evaluate(matched, true) != Predicate.TRUE) {
+                return null;
+            }
+            return result;
+        }
+
+        private void project(NBTPath path, Object value) {
+            List<Object> segments = path.getSegments();
+            projected++;
+            if (segments.isEmpty()) {
+                result = (Compound) value;
+                return;
+            }
+            Compound target = result;
+            for (int i = 0; i < segments.size() - 1; i ++) {
+                Object next = target.get(segments.get(i));
+                if (!(next instanceof Compound)) {
+                    next = new Compound();
+                    target.put((String) segments.get(i), next);
+                }
+                target = (Compound) next;
+            }
+            target.put((String) segments.get(segments.size() - 1), value);
+        }
+
+        /**
+         * Visit a value in memory.
+         * @return Whether to go on.
+         */
+        boolean visit(Object value, PathNode node) {
+            if (node.projection != null) {
+                project(node.projection, value);
+            }
+            for (Predicate.Atom atom : node.exists) {
+                hit(atom);
+            }
+            for (Predicate.Atom atom : node.comparisons) {
+                if (atom.test(value)) {
+                    hit(atom);
+                }
+            }
+            if (done()) {
+                return false;
+            }
+            if (value instanceof Compound) {
+                Compound compound = (Compound) value;
+                for (Map.Entry<String, PathNode> entry : node.keys.entrySet()) {
+                    Object child = compound.get(entry.getKey());
+                    if (child != null && !visit(child, entry.getValue())) {
+                        return false;
+                    }
+                }
+            } else if (value instanceof TypedList && node.hasElements()) {
+                TypedList<?> list = (TypedList<?>) value;
+                for (Map.Entry<Integer, PathNode> entry : node.indices.entrySet()) {
+                    if (entry.getKey() < list.size() && !visit(list.get(entry.getKey()), entry.getValue())) {
+                        return false;
+                    }
+                }
+                if (node.any != null) {
+                    for (Object element : list) {
+                        if (!visit(element, node.any)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Visit a value on the stream, skipping what the query doesn't need.
+         * @return Whether to go on. If not, the stream is left where it is.
+         */
+        boolean visit(DataInput stream, TagType type, PathNode node) throws IOException {
+            boolean container = type == TagType.COMPOUND || type == TagType.LIST;
+            if (node.projection != null || !container && (!node.comparisons.isEmpty() || !node.keys.isEmpty() || node.hasElements())) {
+                return visit(type.readValue(stream), node);
+            }
+            for (Predicate.Atom atom : node.exists) {
+                hit(atom);
+            }
+            if (done()) {
+                return false;
+            }
+            if (type == TagType.COMPOUND && !node.keys.isEmpty()) {
+                byte id;
+                while ((id = stream.readByte()) != 0) {
+                    TagType child = TagType.fromId(id);
+                    if (child == null) {
+                        throw new IOException("Unknown tag type " + id);
+                    }
+                    PathNode next = node.keys.get(stream.readUTF());
+                    if (next == null) {
+                        child.skipValue(stream);
+                    } else if (!visit(stream, child, next)) {
+                        return false;
+                    }
+                }
+            } else if (type == TagType.LIST && node.hasElements()) {
+                TagType element = TagType.read(stream);
+                if (element == null) {
+                    throw new IOException("Unknown tag type");
+                }
+                int length = stream.readInt();
+                for (int i = 0; i < length; i ++) {
+                    PathNode byIndex = node.indices.isEmpty() ? null : node.indices.get(i);
+                    boolean go;
+                    if (byIndex != null && node.any != null) {
+                        Object value = element.readValue(stream);
+                        go = visit(value, byIndex) && visit(value, node.any);
+                    } else if (byIndex != null || node.any != null) {
+                        go = visit(stream, element, byIndex != null ? byIndex : node.any);
+                    } else {
+                        element.skipValue(stream);
+                        go = true;
+                    }
+                    if (!go) {
+                        return false;
+                    }
+                }
+            } else {
+                type.skipValue(stream);
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,470 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.io.BigEndianDataInput;
+import me.finalchild.finalnbt.io.BigEndianDataOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rewrites NBT on its way from one stream to another, without decoding the whole tree:
+ * renames keys, drops subtrees, maps values and inserts missing keys.
+ *
+ * <pre>
+ * NBTTransform migration = new NBTTransform()
+ *         .rename("Level.Entities[].Motion", "Velocity")
+ *         .drop("Level.Obsolete")
+ *         .map("Level.Entities[].Health", health -&gt; ((Number) health).floatValue())
+ *         .insertDefault("Level.DataVersion", 1343);
+ * </pre>
+ *
+ * Only the values to map are decoded. Subtrees no rule reaches into are copied through as bytes,
+ * so memory use doesn't grow with the data.
+ * Rules apply below the root compound, with paths as in {@link NBTQuery}. A list's elements can be mapped and reached into,
+ * but not renamed, dropped or inserted, as that would change the list's length, which precedes them.
+ *
+ * An NBTTransform is not thread-safe while rules are being added. Afterwards, it may apply on several threads at once.
+ */
+public class NBTTransform {
+
+    private final Node root = new Node();
+
+    /**
+     * Rename the key at the path.
+     * If the compound already has the new key, whichever of the two entries comes first is kept and the other is dropped.
+     * @param path The path. Its last segment MUST be a key.
+     * @param name The new key.
+     * @return This transform.
+     */
+    public NBTTransform rename(String path, String name) {
+        node(path, true).rename = name;
+        return this;
+    }
+
+    /**
+     * Drop the subtree at the path.
+     * @param path The path. Its last segment MUST be a key.
+     * @return This transform.
+     */
+    public NBTTransform drop(String path) {
+        node(path, true).drop = true;
+        return this;
+    }
+
+    /**
+     * Replace the value at the path with what the function returns for it.
+     * @param path The path.
+     * @param function The function, which gets the decoded value and returns a value of a standard tag type,
+     *                 or null to drop the key. A list element MUST be mapped to the list's element type.
+     *                 What it returns is written as is; other rules below the path don't apply to it.
+     * @return This transform.
+     */
+    public NBTTransform map(String path, UnaryOperator<Object> function) {
+        Node node = node(path, false);
+        node.map = node.map == null ? function : compose(node.map, function);
+        return this;
+    }
+
+    private static UnaryOperator<Object> compose(UnaryOperator<Object> first, UnaryOperator<Object> then) {
+        return value -> {
+            Object mapped = first.apply(value);
+            return mapped == null ? null : then.apply(mapped);
+        };
+    }
+
+    /**
+     * Insert the key with the value into every compound at the parent path that lacks it.
+     * The key is checked as it is named after renaming.
+     * @param path The path. Its last segment MUST be a key.
+     * @param value The value. Custom objects are serialized.
+     * @return This transform.
+     */
+    public NBTTransform insertDefault(String path, Object value) {
+        NBTPath parsed = NBTPath.parse(path);
+        List<Object> segments = parsed.getSegments();
+        if (segments.isEmpty() || !(segments.get(segments.size() - 1) instanceof String)) {
+            throw new IllegalArgumentException("The path MUST end with a key: " + path);
+        }
+        Object tag = FinalNBT.toTag(Objects.requireNonNull(value, "value"));
+        if (TagType.fromValue(tag) == null) {
+            throw new UnsupportedTypeException(value.getClass());
+        }
+        Node parent = root.child(segments.subList(0, segments.size() - 1));
+        parent.defaults.put((String) segments.get(segments.size() - 1), tag);
+        return this;
+    }
+
+    private Node node(String path, boolean key) {
+        List<Object> segments = NBTPath.parse(path).getSegments();
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("The root can't be transformed");
+        }
+        if (key && !(segments.get(segments.size() - 1) instanceof String)) {
+            throw new IllegalArgumentException("The path MUST end with a key: " + path);
+        }
+        return root.child(segments);
+    }
+
+    /**
+     * Transform a GZIPped named compound from one stream to another.
+     * @param in The stream to read from. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @param out The stream to write to. DO NOT put a GZIPped stream. It is closed afterwards.
+     * @throws IOException IOException.
+     */
+    public void apply(InputStream in, OutputStream out) throws IOException {
+        try (GZIPInputStream gzipIn = new GZIPInputStream(in, 65536);
+             GZIPOutputStream gzipOut = new GZIPOutputStream(new BufferedOutputStream(out, 65536), 65536)) {
+            BigEndianDataOutput output = new BigEndianDataOutput(gzipOut);
+            apply(new BigEndianDataInput(gzipIn), output);
+            output.flush();
+        }
+    }
+
+    /**
+     * Transform an uncompressed named compound from one stream to another.
+     * @param in The stream to read from.
+     * @param out The stream to write to.
+     * @throws IOException IOException.
+     */
+    public void apply(DataInput in, DataOutput out) throws IOException {
+        TagType type = TagType.read(in);
+        if (type != TagType.COMPOUND) {
+            throw new IOException("Expected a compound but found " + (type == null ? "an unknown tag type" : "tag type " + type.getId()));
+        }
+        type.write(out);
+        copyString(in, out);
+        compound(in, out, Collections.singletonList(root), 0, new byte[8192]);
+    }
+
+    /**
+     * Transform a compound's payload, reached by the nodes.
+     */
+    private void compound(DataInput in, DataOutput out, List<Node> nodes, int depth, byte[] buffer) throws IOException {
+        if (depth > 511) {
+            throw new DepthException();
+        }
+        // The names written so far, if a rename could write one twice or defaults need them.
+        Set<String> written = null;
+        for (Node node : nodes) {
+            if (!node.defaults.isEmpty() || node.renames()) {
+                written = new HashSet<>();
+                break;
+            }
+        }
+        byte id;
+        while ((id = in.readByte()) != 0) {
+            TagType type = type(id);
+            String name = in.readUTF();
+            List<Node> next = new ArrayList<>(1);
+            for (Node node : nodes) {
+                Node child = node.keys.get(name);
+                if (child != null) {
+                    next.add(child);
+                }
+            }
+            if (next.isEmpty()) {
+                if (written != null && !written.add(name)) {
+                    type.skipValue(in);
+                    continue;
+                }
+                out.writeByte(id);
+                out.writeUTF(name);
+                copy(type, in, out, depth + 1, buffer);
+                continue;
+            }
+            boolean drop = false;
+            String rename = null;
+            UnaryOperator<Object> map = null;
+            for (Node node : next) {
+                drop |= node.drop;
+                rename = rename != null ? rename : node.rename;
+                map = map != null ? map : node.map;
+            }
+            if (drop) {
+                type.skipValue(in);
+                continue;
+            }
+            String outName = rename != null ? rename : name;
+            if (written != null && written.contains(outName)) {
+                type.skipValue(in);
+                continue;
+            }
+            if (map != null) {
+                Object value = map.apply(type.readTag(in));
+                if (value == null) {
+                    continue;
+                }
+                TagType mapped = TagType.fromValue(value);
+                if (mapped == null) {
+                    throw new UnsupportedTypeException(value.getClass());
+                }
+                mapped.write(out);
+                out.writeUTF(outName);
+                mapped.writeTag(out, value);
+            } else {
+                out.writeByte(id);
+                out.writeUTF(outName);
+                value(type, in, out, next, depth + 1, buffer);
+            }
+            if (written != null) {
+                written.add(outName);
+            }
+        }
+        if (written != null) {
+            for (Node node : nodes) {
+                for (Map.Entry<String, Object> entry : node.defaults.entrySet()) {
+                    if (written.add(entry.getKey())) {
+                        TagType type = TagType.fromValue(entry.getValue());
+                        type.write(out);
+                        out.writeUTF(entry.getKey());
+                        type.writeTag(out, entry.getValue());
+                    }
+                }
+            }
+        }
+        out.writeByte(0);
+    }
+
+    /**
+     * Transform a value that rules reach into.
+     */
+    private void value(TagType type, DataInput in, DataOutput out, List<Node> nodes, int depth, byte[] buffer) throws IOException {
+        if (type == TagType.COMPOUND) {
+            compound(in, out, nodes, depth, buffer);
+        } else if (type == TagType.LIST) {
+            list(in, out, nodes, depth, buffer);
+        } else {
+            copy(type, in, out, depth, buffer);
+        }
+    }
+
+    private void list(DataInput in, DataOutput out, List<Node> nodes, int depth, byte[] buffer) throws IOException {
+        if (depth > 511) {
+            throw new DepthException();
+        }
+        byte elementId = in.readByte();
+        TagType element = type(elementId);
+        int length = in.readInt();
+        out.writeByte(elementId);
+        out.writeInt(length);
+        for (int i = 0; i < length; i ++) {
+            List<Node> next = new ArrayList<>(1);
+            for (Node node : nodes) {
+                Node child = node.indices.get(i);
+                if (child != null) {
+                    next.add(child);
+                }
+                if (node.any != null) {
+                    next.add(node.any);
+                }
+            }
+            UnaryOperator<Object> map = null;
+            for (Node node : next) {
+                map = map != null ? map : node.map;
+            }
+            if (map != null) {
+                Object value = map.apply(element.readTag(in));
+                if (value == null || TagType.fromValue(value) != element) {
+                    throw new IllegalStateException("Element " + i + " of a list of tag type " + elementId + " was mapped to " + value);
+                }
+                element.writeTag(out, value);
+            } else if (!next.isEmpty()) {
+                value(element, in, out, next, depth + 1, buffer);
+            } else {
+                copy(element, in, out, depth + 1, buffer);
+            }
+        }
+    }
+
+    /**
+     * Copy a value's payload through as bytes.
+     */
+    private static void copy(TagType type, DataInput in, DataOutput out, int depth, byte[] buffer) throws IOException {
+        switch (type.getId()) {
+            case 0:
+                return;
+            case 1:
+                copy(in, out, 1, buffer);
+                return;
+            case 2:
+                copy(in, out, 2, buffer);
+                return;
+            case 3:
+            case 5:
+                copy(in, out, 4, buffer);
+                return;
+            case 4:
+            case 6:
+                copy(in, out, 8, buffer);
+                return;
+            case 7: {
+                int length = in.readInt();
+                out.writeInt(length);
+                copy(in, out, length, buffer);
+                return;
+            }
+            case 8:
+                copyString(in, out, buffer);
+                return;
+            case 9: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                byte elementId = in.readByte();
+                TagType element = type(elementId);
+                int length = in.readInt();
+                out.writeByte(elementId);
+                out.writeInt(length);
+                for (int i = 0; i < length; i ++) {
+                    copy(element, in, out, depth + 1, buffer);
+                }
+                return;
+            }
+            case 10: {
+                if (depth > 511) {
+                    throw new DepthException();
+                }
+                byte id;
+                while ((id = in.readByte()) != 0) {
+                    TagType child = type(id);
+                    out.writeByte(id);
+                    copyString(in, out, buffer);
+                    copy(child, in, out, depth + 1, buffer);
+                }
+                out.writeByte(0);
+                return;
+            }
+            case 11: {
+                int length = in.readInt();
+                out.writeInt(length);
+                copy(in, out, length * 4L, buffer);
+                return;
+            }
+            default:
+                throw new IOException("Unknown tag type " + type.getId());
+        }
+    }
+
+    private static void copyString(DataInput in, DataOutput out) throws IOException {
+        copyString(in, out, new byte[256]);
+    }
+
+    /**
+     * Copy a string with its length, without decoding it.
+     */
+    private static void copyString(DataInput in, DataOutput out, byte[] buffer) throws IOException {
+        int length = in.readUnsignedShort();
+        out.writeShort(length);
+        copy(in, out, length, buffer);
+    }
+
+    private static void copy(DataInput in, DataOutput out, long n, byte[] buffer) throws IOException {
+        if (n < 0) {
+            throw new IOException("Negative length " + n);
+        }
+        while (n > 0) {
+            int chunk = (int) Math.min(n, buffer.length);
+            in.readFully(buffer, 0, chunk);
+            out.write(buffer, 0, chunk);
+            n -= chunk;
+        }
+    }
+
+    private static TagType type(byte id) throws IOException {
+        TagType type = TagType.fromId(id);
+        if (type == null) {
+            throw new IOException("Unknown tag type " + id);
+        }
+        return type;
+    }
+
+    /**
+     * The rules at a path, and the paths below it.
+     */
+    private static class Node {
+
+        final Map<String, Node> keys = new HashMap<>();
+        final Map<Integer, Node> indices = new HashMap<>();
+        Node any;
+
+        boolean drop;
+        String rename;
+        UnaryOperator<Object> map;
+        final Map<String, Object> defaults = new LinkedHashMap<>();
+
+        /**
+         * @return Whether a key in the compound at this path is renamed.
+         */
+        boolean renames() {
+            for (Node child : keys.values()) {
+                if (child.rename != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Node child(List<Object> segments) {
+            Node node = this;
+            for (Object segment : segments) {
+                if (segment instanceof String) {
+                    node = node.keys.computeIfAbsent((String) segment, k -> new Node());
+                } else if ((Integer) segment == NBTPath.ANY) {
+                    if (node.any == null) {
+                        node.any = new Node();
+                    }
+                    node = node.any;
+                } else {
+                    node = node.indices.computeIfAbsent((Integer) segment, k -> new Node());
+                }
+            }
+            return node;
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+/**
+ * A compiled predicate, evaluated in three values while a tag is being read:
+ * an atom that hasn't matched yet is unknown until the tag ends, and then false.
+ */
+abstract class Predicate {
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int UNKNOWN = 2;
+
+    /**
+     * @param matched Which atoms have matched so far.
+     * @param finished Whether the tag has been read to the end, so that unmatched atoms are false.
+     * @return {@link #TRUE}, {@link #FALSE} or {@link #UNKNOWN}.
+     */
+    abstract int evaluate(boolean[] matched, boolean finished);
+
+    enum Operator {
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        LESS_OR_EQUAL("<="),
+        GREATER_OR_EQUAL(">="),
+        LESS("<"),
+        GREATER(">");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        String getSymbol() {
+            return symbol;
+        }
+
+        boolean test(int comparison) {
+            switch (this) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                case LESS:
+                    return comparison < 0;
+                default:
+                    return comparison > 0;
+            }
+        }
+    }
+
+    /**
+     * A path that exists, or whose value compares to a literal. Through {@code []}, any element may match.
+     */
+    static final class Atom extends Predicate {
+
+        final int index;
+        final NBTPath path;
+        final Operator operator;
+        final Object literal;
+
+        Atom(int index, NBTPath path, Operator operator, Object literal) {
+            this.index = index;
+            this.path = path;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        boolean isComparison() {
+            return operator != null;
+        }
+
+        /**
+         * Compare a value to the literal. Strings compare to strings and numbers to numbers; anything else doesn't match.
+         */
+        boolean test(Object value) {
+            if (literal instanceof String) {
+                return value instanceof String && operator.test(((String) value).compareTo((String) literal));
+            }
+            if (!(value instanceof Number)) {
+                return false;
+            }
+            Number number = (Number) value;
+            if (literal instanceof Long && !(value instanceof Float || value instanceof Double)) {
+                return operator.test(Long.compare(number.longValue(), (Long) literal));
+            }
+            double a = number.doubleValue();
+            double b = ((Number) literal).doubleValue();
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                return operator == Operator.NOT_EQUAL;
+            }
+            return operator.test(Double.compare(a, b));
+        }
+
+        @Override
+        int evaluate(boolean[] matched, boolean finished) {
+            return matched[index] ? TRUE : finished ? FALSE : UNKNOWN;
+        }
+
+    }
+
+    static final class And extends Predicate {
+
+        private final Predicate left;
+        private final Predicate right;
+
+        And(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluate(boolean[] matched, boolean finished) {
+            int a = left.evaluate(matched, finished);
+            if (a == FALSE) {
+                return FALSE;
+            }
+            int b = right.evaluate(matched, finished);
+            return b == FALSE ? FALSE : a == TRUE && b == TRUE ? TRUE : UNKNOWN;
+        }
+
+    }
+
+    static final class Or extends Predicate {
+
+        private final Predicate left;
+        private final Predicate right;
+
+        Or(Predicate left, Predicate right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluate(boolean[] matched, boolean finished) {
+            int a = left.evaluate(matched, finished);
+            if (a == TRUE) {
+                return TRUE;
+            }
+            int b = right.evaluate(matched, finished);
+            return b == TRUE ? TRUE : a == FALSE && b == FALSE ? FALSE : UNKNOWN;
+        }
+
+    }
+
+    static final class Not extends Predicate {
+
+        private final Predicate inner;
+
+        Not(Predicate inner) {
+            this.inner = inner;
+        }
+
+        @Override
+        int evaluate(boolean[] matched, boolean finished) {
+            int a = inner.evaluate(matched, finished);
+            return a == UNKNOWN ? UNKNOWN : a == TRUE ? FALSE : TRUE;
+        }
+
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses paths and predicates.
+ *
+ * <pre>
+ * expression := and ('||' and)*
+ * and        := unary ('&amp;&amp;' unary)*
+ * unary      := '!' unary | '(' expression ')' | path (operator literal)?
+ * operator   := '==' | '!=' | '&lt;' | '&lt;=' | '&gt;' | '&gt;='
+ * literal    := quoted string | number | true | false
+ * </pre>
+ */
+final class QueryParser {
+
+    private final String source;
+    private int pos;
+
+    QueryParser(String source) {
+        this.source = source;
+    }
+
+    static boolean isPlainKey(String key) {
+        if (key.isEmpty() || key.equals("true") || key.equals("false")) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i ++) {
+            if (!isKeyChar(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isKeyChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-' || c == '+' || c == ':';
+    }
+
+    static void quote(StringBuilder builder, String s) {
+        builder.append('"');
+        for (int i = 0; i < s.length(); i ++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    Predicate expression(List<Predicate.Atom> atoms) {
+        Predicate left = and(atoms);
+        while (skip("||")) {
+            left = new Predicate.Or(left, and(atoms));
+        }
+        return left;
+    }
+
+    private Predicate and(List<Predicate.Atom> atoms) {
+        Predicate left = unary(atoms);
+        while (skip("&&")) {
+            left = new Predicate.And(left, unary(atoms));
+        }
+        return left;
+    }
+
+    private Predicate unary(List<Predicate.Atom> atoms) {
+        if (skip("!") ) {
+            return new Predicate.Not(unary(atoms));
+        }
+        if (skip("(")) {
+            Predicate inner = expression(atoms);
+            expect(")");
+            return inner;
+        }
+        NBTPath path = path();
+        Predicate.Operator operator = null;
+        for (Predicate.Operator candidate : Predicate.Operator.values()) {
+            if (skip(candidate.getSymbol())) {
+                operator = candidate;
+                break;
+            }
+        }
+        Object literal = operator != null ? literal() : null;
+        Predicate.Atom atom = new Predicate.Atom(atoms.size(), path, operator, literal);
+        atoms.add(atom);
+        return atom;
+    }
+
+    NBTPath path() {
+        whitespace();
+        List<Object> segments = new ArrayList<>();
+        segments.add(key());
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+            if (c == '.') {
+                pos++;
+                segments.add(key());
+            } else if (c == '[') {
+                pos++;
+                int start = pos;
+                while (pos < source.length() && source.charAt(pos) >= '0' && source.charAt(pos) <= '9') {
+                    pos++;
+                }
+                if (start == pos) {
+                    segments.add(NBTPath.ANY);
+                } else {
+                    try {
+                        segments.add(Integer.parseInt(source.substring(start, pos)));
+                    } catch (NumberFormatException e) {
+                        throw error("Index too large");
+                    }
+                }
+                if (pos >= source.length() || source.charAt(pos) != ']') {
+                    throw error("Expected ']'");
+                }
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return NBTPath.of(segments);
+    }
+
+    private String key() {
+        if (pos < source.length() && (source.charAt(pos) == '"' || source.charAt(pos) == '\'')) {
+            return string();
+        }
+        int start = pos;
+        while (pos < source.length() && isKeyChar(source.charAt(pos))) {
+            pos++;
+        }
+        if (start == pos) {
+            throw error("Expected a key");
+        }
+        return source.substring(start, pos);
+    }
+
+    private String string() {
+        char quote = source.charAt(pos++);
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            if (pos >= source.length()) {
+                throw error("Unterminated string");
+            }
+            char c = source.charAt(pos++);
+            if (c == quote) {
+                return builder.toString();
+            } else if (c == '\\') {
+                if (pos >= source.length()) {
+                    throw error("Unterminated string");
+                }
+                builder.append(source.charAt(pos++));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private Object literal() {
+        whitespace();
+        if (pos < source.length() && (source.charAt(pos) == '"' || source.charAt(pos) == '\'')) {
+            return string();
+        }
+        int start = pos;
+        while (pos < source.length() && (isKeyChar(source.charAt(pos)) || source.charAt(pos) == '.')) {
+            pos++;
+        }
+        String token = source.substring(start, pos);
+        if (token.equals("true")) {
+            return 1L;
+        } else if (token.equals("false")) {
+            return 0L;
+        }
+        String number = token;
+        if (!number.isEmpty() && "bBsSlLfFdD".indexOf(number.charAt(number.length() - 1)) >= 0) {
+            number = number.substring(0, number.length() - 1);
+        }
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Expected a literal");
+        }
+    }
+
+    private void whitespace() {
+        while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private boolean skip(String token) {
+        whitespace();
+        if (source.startsWith(token, pos)) {
+            // Don't take '<' out of "<=", or '!' out of "!=".
+            int end = pos + token.length();
+            if (token.length() == 1 && end < source.length() && source.charAt(end) == '=' && "<>!".indexOf(token.charAt(0)) >= 0) {
+                return false;
+            }
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!skip(token)) {
+            throw error("Expected '" + token + "'");
+        }
+    }
+
+    void expectEnd() {
+        whitespace();
+        if (pos < source.length()) {
+            throw error("Unexpected '" + source.charAt(pos) + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos + " in " + source);
+    }
+
+}
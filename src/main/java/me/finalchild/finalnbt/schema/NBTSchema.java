@@ -0,0 +1,168 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.schema;
+
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The expected layout of a compound: its keys in the order they usually appear, their tag types,
+ * and the fields of the target class they go to.
+ */
+public class NBTSchema {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Expect a key, decoded into the field of the same name.
+     * @param key The key.
+     * @param type The tag type of the value.
+     * @return This schema.
+     */
+    public NBTSchema field(String key, TagType<?> type) {
+        return field(key, type, key);
+    }
+
+    /**
+     * Expect a key, decoded into the given field.
+     * @param key The key.
+     * @param type The tag type of the value.
+     * @param fieldName The name of the field in the target class.
+     * @return This schema.
+     */
+    public NBTSchema field(String key, TagType<?> type, String fieldName) {
+        entries.add(new Entry(key, type, fieldName));
+        return this;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Infer a schema from the non-static, non-transient fields of the class, in declaration order.
+     * Each field's name is its key.
+     * @param c The class.
+     * @return The schema.
+     */
+    public static NBTSchema of(Class<?> c) {
+        NBTSchema schema = new NBTSchema();
+        for (Field field : c.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            schema.field(field.getName(), tagTypeOf(field.getType()));
+        }
+        return schema;
+    }
+
+    /**
+     * Infer a schema from a sample compound. A compound doesn't keep the order of its keys,
+     * so the decoder learns it from the first record it decodes.
+     * @param sample The sample compound.
+     * @return The schema.
+     */
+    public static NBTSchema infer(Compound sample) {
+        NBTSchema schema = new NBTSchema();
+        for (Map.Entry<String, Object> entry : sample.entrySet()) {
+            schema.field(entry.getKey(), TagType.fromValue(entry.getValue()));
+        }
+        return schema;
+    }
+
+    /**
+     * The tag type that a field of the given type is stored as.
+     * @param type The field's type.
+     * @return The tag type.
+     * @throws UnsupportedTypeException If the type can't be stored.
+     */
+    public static TagType<?> tagTypeOf(Class<?> type) {
+        if (type == byte.class || type == Byte.class || type == boolean.class || type == Boolean.class) {
+            return TagType.BYTE;
+        } else if (type == short.class || type == Short.class) {
+            return TagType.SHORT;
+        } else if (type == int.class || type == Integer.class) {
+            return TagType.INT;
+        } else if (type == long.class || type == Long.class) {
+            return TagType.LONG;
+        } else if (type == float.class || type == Float.class) {
+            return TagType.FLOAT;
+        } else if (type == double.class || type == Double.class) {
+            return TagType.DOUBLE;
+        } else if (type == String.class) {
+            return TagType.STRING;
+        } else if (type == byte[].class || type == Byte[].class) {
+            return TagType.BYTE_ARRAY;
+        } else if (type == int[].class || type == Integer[].class) {
+            return TagType.INT_ARRAY;
+        } else if (TypedList.class.isAssignableFrom(type)) {
+            return TagType.LIST;
+        } else if (type.isPrimitive() || type.isArray() || type.isInterface()) {
+            throw new UnsupportedTypeException(type);
+        } else {
+            return TagType.COMPOUND;
+        }
+    }
+
+    /**
+     * An expected key.
+     */
+    public static class Entry {
+
+        private final String key;
+        private final TagType<?> type;
+        private final String fieldName;
+
+        Entry(String key, TagType<?> type, String fieldName) {
+            this.key = key;
+            this.type = type;
+            this.fieldName = fieldName;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public TagType<?> getType() {
+            return type;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+    }
+
+}
@@ -0,0 +1,494 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.schema;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compound decoder specialised to a schema, which decodes straight into the fields of a target class.
+ *
+ * The setters are resolved once into MethodHandles typed to each field's primitive type,
+ * so values are neither boxed nor set through reflection.
+ * Keys are checked in the expected order first, and looked up by name when the order differs.
+ * If a key's order differs, the decoder adopts the order it saw for the next records.
+ * Values of unexpected types are decoded the generic way and converted if they are numbers,
+ * and unknown keys are decoded the generic way and dropped. Missing keys leave their fields untouched.
+ *
+ * The target class needs a no-arg constructor. Fields of other classes are decoded by nested decoders
+ * with schemas inferred by {@link NBTSchema#of(Class)}.
+ * A SchemaDecoder may be shared by several threads.
+ * @param <T> The target class.
+ */
+public class SchemaDecoder<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<T> target;
+    private final MethodHandle constructor;
+    private final Map<String, Slot> byKey = new HashMap<>();
+    private volatile Slot[] slots;
+
+    private SchemaDecoder(Class<T> target, NBTSchema schema, boolean inferred, Map<Class<?>, SchemaDecoder<?>> compiled) {
+        this.target = target;
+        try {
+            Constructor<T> ctor = target.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            this.constructor = LOOKUP.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new UnsupportedTypeException(target);
+        }
+        if (inferred) {
+            compiled.put(target, this);
+        }
+        Slot[] slots = new Slot[schema.getEntries().size()];
+        for (int i = 0; i < slots.length; i ++) {
+            NBTSchema.Entry entry = schema.getEntries().get(i);
+            slots[i] = new Slot(entry.getKey(), entry.getType(), field(target, entry.getFieldName()), compiled);
+            byKey.put(entry.getKey(), slots[i]);
+        }
+        this.slots = slots;
+    }
+
+    /**
+     * Compile a decoder for the class with the given schema.
+     * @param target The target class.
+     * @param schema The schema. Every entry's field MUST exist with a compatible type.
+     * @param <T> The target class.
+     * @return The decoder.
+     */
+    public static <T> SchemaDecoder<T> compile(Class<T> target, NBTSchema schema) {
+        return new SchemaDecoder<>(target, schema, false, new HashMap<>());
+    }
+
+    /**
+     * Compile a decoder for the class with the schema inferred from its fields.
+     * @param target The target class.
+     * @param <T> The target class.
+     * @return The decoder.
+     */
+    public static <T> SchemaDecoder<T> compile(Class<T> target) {
+        return compile(target, new HashMap<>());
+    }
+
+    /**
+     * Compile a decoder with the inferred schema, reusing the ones compiled so far.
+     * A decoder is put in compiled before its fields are walked, so self-referential classes don't recurse forever.
+     */
+    private static <T> SchemaDecoder<T> compile(Class<T> target, Map<Class<?>, SchemaDecoder<?>> compiled) {
+        SchemaDecoder<?> decoder = compiled.get(target);
+        return decoder != null ? (SchemaDecoder<T>) decoder : new SchemaDecoder<>(target, NBTSchema.of(target), true, compiled);
+    }
+
+    public Class<T> getTarget() {
+        return target;
+    }
+
+    private static Field field(Class<?> c, String name) {
+        for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+            try {
+                Field field = k.getDeclaredField(name);
+                field.setAccessible(true);
+                return field;
+            } catch (NoSuchFieldException e) {
+                // Look in the superclass.
+            }
+        }
+        throw new IllegalArgumentException("No field " + name + " in " + c.getName());
+    }
+
+    /**
+     * Read a NamedTag holding a compound, decoded into a new object.
+     * @param stream The stream to read from.
+     * @return The NamedTag.
+     * @throws IOException IOException.
+     */
+    public NamedTag<T> read(DataInput stream) throws IOException {
+        TagType type = TagType.read(stream);
+        if (type != TagType.COMPOUND) {
+            throw new IOException("Expected a compound but found " + (type == null ? "an unknown tag type" : "tag type " + type.getId()));
+        }
+        String name = stream.readUTF();
+        return new NamedTag<>(name, decode(stream));
+    }
+
+    /**
+     * Decode a compound's payload, the entries up to the end tag, into a new object.
+     * @param stream The stream to read from.
+     * @return The object.
+     * @throws IOException IOException.
+     */
+    public T decode(DataInput stream) throws IOException {
+        return decode(stream, 0);
+    }
+
+    private T decode(DataInput stream, int depth) throws IOException {
+        if (depth > 511) {
+            throw new DepthException();
+        }
+        Object object;
+        try {
+            object = (Object) constructor.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        Slot[] slots = this.slots;
+        Slot[] seen = null;
+        int next = 0;
+        int count = 0;
+        byte id;
+        while ((id = stream.readByte()) != 0) {
+            String key = stream.readUTF();
+            Slot slot;
+            if (next < slots.length && slots[next].key.equals(key)) {
+                slot = slots[next++];
+            } else {
+                slot = byKey.get(key);
+                if (slot != null) {
+                    // Out of order. Remember the order we see, to adopt it afterwards.
+                    if (seen == null) {
+                        seen = Arrays.copyOf(slots, slots.length);
+                    }
+                    next = indexOf(slots, slot) + 1;
+                }
+            }
+            if (slot != null && seen != null && count < seen.length) {
+                seen[count] = slot;
+            }
+            count++;
+            if (slot != null && slot.type.getId() == id) {
+                slot.decode(stream, object, depth);
+            } else {
+                TagType type = TagType.fromId(id);
+                if (type == null) {
+                    throw new IOException("Unknown tag type " + id);
+                }
+                Object value = type.readValue(stream);
+                if (slot != null) {
+                    slot.assign(object, value);
+                }
+            }
+        }
+        if (seen != null) {
+            adopt(slots, seen, count);
+        }
+        return target.cast(object);
+    }
+
+    private static int indexOf(Slot[] slots, Slot slot) {
+        for (int i = 0; i < slots.length; i ++) {
+            if (slots[i] == slot) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adopt the order the keys were seen in, keeping the unseen ones at the end.
+     */
+    private void adopt(Slot[] current, Slot[] seen, int count) {
+        Slot[] order = new Slot[current.length];
+        int n = 0;
+        for (int i = 0; i < Math.min(count, seen.length); i ++) {
+            if (seen[i] != null && indexOf(order, seen[i]) < 0) {
+                order[n++] = seen[i];
+            }
+        }
+        for (Slot slot : current) {
+            if (indexOf(order, slot) < 0) {
+                order[n++] = slot;
+            }
+        }
+        slots = order;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    private static final int BYTE = 0;
+    private static final int BOOLEAN = 1;
+    private static final int SHORT = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+    private static final int BYTES = 7;
+    private static final int INTS = 8;
+    private static final int OBJECT = 9;
+    private static final int GENERIC = 10;
+
+    /**
+     * An expected key, bound to its field.
+     */
+    private static final class Slot {
+
+        final String key;
+        final TagType type;
+        final Class<?> fieldType;
+        final int kind;
+        /**
+         * Typed to the field's primitive type for the primitive kinds, and to (Object, Object) otherwise.
+         */
+        final MethodHandle setter;
+        final MethodHandle genericSetter;
+        final SchemaDecoder<?> nested;
+
+        Slot(String key, TagType<?> type, Field field, Map<Class<?>, SchemaDecoder<?>> compiled) {
+            this.key = key;
+            this.type = type;
+            this.fieldType = field.getType();
+            Class<?> boxed = box(fieldType);
+            if (type == TagType.BYTE && boxed == Byte.class) {
+                kind = BYTE;
+            } else if (type == TagType.BYTE && boxed == Boolean.class) {
+                kind = BOOLEAN;
+            } else if (type == TagType.SHORT && boxed == Short.class) {
+                kind = SHORT;
+            } else if (type == TagType.INT && boxed == Integer.class) {
+                kind = INT;
+            } else if (type == TagType.LONG && boxed == Long.class) {
+                kind = LONG;
+            } else if (type == TagType.FLOAT && boxed == Float.class) {
+                kind = FLOAT;
+            } else if (type == TagType.DOUBLE && boxed == Double.class) {
+                kind = DOUBLE;
+            } else if (type == TagType.BYTE_ARRAY && fieldType == byte[].class) {
+                kind = BYTES;
+            } else if (type == TagType.INT_ARRAY && fieldType == int[].class) {
+                kind = INTS;
+            } else if (type.getTargetClass() != null && fieldType.isAssignableFrom(type.getTargetClass())) {
+                kind = GENERIC;
+            } else if (type == TagType.COMPOUND && NBTSchema.tagTypeOf(fieldType) == TagType.COMPOUND) {
+                kind = OBJECT;
+            } else {
+                throw new IllegalArgumentException("Field " + field.getName() + " of " + fieldType.getName() + " can't hold tag type " + type.getId());
+            }
+            this.nested = kind == OBJECT ? compile(fieldType, compiled) : null;
+            try {
+                MethodHandle raw = LOOKUP.unreflectSetter(field);
+                Class<?> valueType = kind <= DOUBLE ? primitive(kind) : Object.class;
+                this.setter = raw.asType(MethodType.methodType(void.class, Object.class, valueType));
+                this.genericSetter = raw.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        void decode(DataInput stream, Object object, int depth) throws IOException {
+            try {
+                switch (kind) {
+                    case BYTE:
+                        setter.invokeExact(object, stream.readByte());
+                        break;
+                    case BOOLEAN:
+                        setter.invokeExact(object, stream.readByte() != 0);
+                        break;
+                    case SHORT:
+                        setter.invokeExact(object, stream.readShort());
+                        break;
+                    case INT:
+                        setter.invokeExact(object, stream.readInt());
+                        break;
+                    case LONG:
+                        setter.invokeExact(object, stream.readLong());
+                        break;
+                    case FLOAT:
+                        setter.invokeExact(object, stream.readFloat());
+                        break;
+                    case DOUBLE:
+                        setter.invokeExact(object, stream.readDouble());
+                        break;
+                    case BYTES:
+                        setter.invokeExact(object, (Object) readBytes(stream));
+                        break;
+                    case INTS:
+                        setter.invokeExact(object, (Object) readInts(stream));
+                        break;
+                    case OBJECT:
+                        setter.invokeExact(object, (Object) nested.decode(stream, depth + 1));
+                        break;
+                    default:
+                        setter.invokeExact(object, type.readValue(stream));
+                        break;
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        /**
+         * Read an array's length, charging the stream's limits if it has any.
+         */
+        private static int length(DataInput stream, long elementBytes) throws IOException {
+            int length = stream.readInt();
+            if (length < 0) {
+                throw new IOException("Negative length " + length);
+            }
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.array(length, elementBytes);
+            }
+            return length;
+        }
+
+        /**
+         * The arrays grow as they are filled, so a bogus length fails at the end of the stream
+         * rather than by allocating all of it up front.
+         */
+        private static byte[] readBytes(DataInput stream) throws IOException {
+            int length = length(stream, 1);
+            byte[] bytes = new byte[Math.min(length, 65536)];
+            int n = 0;
+            while (n < length) {
+                if (n == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, bytes.length * 2L));
+                }
+                stream.readFully(bytes, n, bytes.length - n);
+                n = bytes.length;
+            }
+            return bytes;
+        }
+
+        private static int[] readInts(DataInput stream) throws IOException {
+            int length = length(stream, 4);
+            int[] ints = new int[Math.min(length, 16384)];
+            for (int i = 0; i < length; i ++) {
+                if (i == ints.length) {
+                    ints = Arrays.copyOf(ints, (int) Math.min(length, ints.length * 2L));
+                }
+                ints[i] = stream.readInt();
+            }
+            return ints;
+        }
+
+        /**
+         * Assign a value decoded the generic way, converting numbers to the field's type.
+         */
+        void assign(Object object, Object value) {
+            Object converted = convert(value);
+            if (converted == null) {
+                return;
+            }
+            try {
+                genericSetter.invokeExact(object, converted);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private Object convert(Object value) {
+            Class<?> boxed = box(fieldType);
+            if (boxed.isInstance(value)) {
+                return value;
+            }
+            if (value instanceof Number) {
+                Number n = (Number) value;
+                if (boxed == Byte.class) {
+                    return n.byteValue();
+                } else if (boxed == Boolean.class) {
+                    return n.intValue() != 0;
+                } else if (boxed == Short.class) {
+                    return n.shortValue();
+                } else if (boxed == Integer.class) {
+                    return n.intValue();
+                } else if (boxed == Long.class) {
+                    return n.longValue();
+                } else if (boxed == Float.class) {
+                    return n.floatValue();
+                } else if (boxed == Double.class) {
+                    return n.doubleValue();
+                }
+            }
+            return null;
+        }
+
+        private static Class<?> primitive(int kind) {
+            switch (kind) {
+                case BYTE:
+                    return byte.class;
+                case BOOLEAN:
+                    return boolean.class;
+                case SHORT:
+                    return short.class;
+                case INT:
+                    return int.class;
+                case LONG:
+                    return long.class;
+                case FLOAT:
+                    return float.class;
+                default:
+                    return double.class;
+            }
+        }
+
+        private static Class<?> box(Class<?> c) {
+            if (!c.isPrimitive()) {
+                return c;
+            } else if (c == byte.class) {
+                return Byte.class;
+            } else if (c == boolean.class) {
+                return Boolean.class;
+            } else if (c == short.class) {
+                return Short.class;
+            } else if (c == int.class) {
+                return Integer.class;
+            } else if (c == long.class) {
+                return Long.class;
+            } else if (c == float.class) {
+                return Float.class;
+            } else if (c == double.class) {
+                return Double.class;
+            } else {
+                return c;
+            }
+        }
+
+    }
+
+}
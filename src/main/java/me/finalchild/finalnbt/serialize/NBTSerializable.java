@@ -33,7 +33,8 @@ import java.util.Map;
  *
  * These objects MUST implement a static method "deserialize" that accepts a single Compound and returns the class.
  *
- * To serialize a custom object to the NBT format, you MUST either make the object implement NBTSerializble, or register a NBTSerializer of the object on FinalNBT
+ * To serialize a custom object to the NBT format, you MUST either make the object implement NBTSerializble, or register a NBTSerializer of the object on FinalNBT.
+ * Otherwise, it is serialized field by field by {@link ReflectiveSerializer}.
  */
 public interface NBTSerializable {
 
@@ -0,0 +1,526 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.serialize;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.schema.NBTSchema;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArray;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A serializer for records and plain classes that neither implement {@link NBTSerializable} nor have a registered serializer.
+ * Each non-static, non-transient field is stored under its name, and null fields are left out.
+ *
+ * The plan of a class is built once, on its first use, and its fields are then accessed through MethodHandles.
+ * Primitives are stored as their tag types, booleans as bytes, byte[] and int[] as array tags,
+ * Lists as TypedLists of their element type, and fields of other classes as nested compounds through {@link FinalNBT}.
+ *
+ * Records, and classes without a no-arg constructor, are created through the constructor taking every field in declaration order.
+ * Other classes are created through their no-arg constructor, and their fields are set.
+ * @param <T> The type to serialize/deserialize.
+ */
+public final class ReflectiveSerializer<T> implements NBTSerializer<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassValue<ReflectiveSerializer<?>> plans = new ClassValue<ReflectiveSerializer<?>>() {
+        @Override
+        protected ReflectiveSerializer<?> computeValue(Class<?> type) {
+            return new ReflectiveSerializer<>(type);
+        }
+    };
+
+    private final Class<T> type;
+    private final Property[] properties;
+    /**
+     * (Object[]) Object, taking every property in order, or null if the fields are set instead.
+     */
+    private final MethodHandle constructor;
+    /**
+     * () Object, or null if the constructor taking every field is used instead.
+     */
+    private final MethodHandle factory;
+
+    private ReflectiveSerializer(Class<T> type) {
+        this.type = type;
+        if (type.isInterface() || type.isArray() || type.isPrimitive() || type.isEnum() || Modifier.isAbstract(type.getModifiers())
+                || type.getName().startsWith("java.") || TagType.fromClass(type) != null) {
+            throw new UnsupportedTypeException(type);
+        }
+        List<Field> fields = fields(type);
+        Class<?>[] fieldTypes = new Class<?>[fields.size()];
+        properties = new Property[fields.size()];
+        boolean record = type.getSuperclass() != null && type.getSuperclass().getName().equals("java.lang.Record");
+        Constructor<T> noArg = record ? null : constructor(type);
+        try {
+            for (int i = 0; i < properties.length; i ++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                fieldTypes[i] = field.getType();
+                properties[i] = new Property(field, noArg != null);
+            }
+            if (noArg != null) {
+                noArg.setAccessible(true);
+                factory = LOOKUP.unreflectConstructor(noArg).asType(MethodType.methodType(Object.class));
+                constructor = null;
+            } else {
+                Constructor<T> canonical = constructor(type, fieldTypes);
+                if (canonical == null) {
+                    throw new UnsupportedTypeException(type);
+                }
+                canonical.setAccessible(true);
+                constructor = LOOKUP.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, fieldTypes.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+                factory = null;
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            if (e instanceof UnsupportedTypeException) {
+                throw (UnsupportedTypeException) e;
+            }
+            // Such as a field of the JDK that isn't open to us.
+            throw new UnsupportedTypeException(type);
+        }
+    }
+
+    /**
+     * Get the serializer of the class, planning it on first use.
+     * @param type The class.
+     * @param <T> The class.
+     * @return The serializer.
+     * @throws UnsupportedTypeException If the class or one of its fields can't be serialized this way.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ReflectiveSerializer<T> of(Class<T> type) {
+        return (ReflectiveSerializer<T>) plans.get(type);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public Compound serialize(T object) {
+        Compound nbt = new Compound();
+        try {
+            for (Property property : properties) {
+                Object value = property.getter.invokeExact((Object) object);
+                if (value != null) {
+                    nbt.put(property.key, property.codec.toTag(value));
+                }
+            }
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        return nbt;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(Compound nbt) {
+        try {
+            if (constructor != null) {
+                Object[] args = new Object[properties.length];
+                for (int i = 0; i < args.length; i ++) {
+                    Object value = properties[i].read(nbt);
+                    args[i] = value != null ? value : properties[i].missing;
+                }
+                return (T) constructor.invokeExact(args);
+            }
+            Object object = factory.invokeExact();
+            for (Property property : properties) {
+                Object value = property.read(nbt);
+                if (value != null) {
+                    property.setter.invokeExact(object, value);
+                }
+            }
+            return (T) object;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static List<Field> fields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        Class<?> superclass = type.getSuperclass();
+        if (superclass != null && superclass != Object.class && !superclass.getName().equals("java.lang.Record")) {
+            fields.addAll(fields(superclass));
+        }
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static <T> Constructor<T> constructor(Class<T> type, Class<?>... parameterTypes) {
+        try {
+            return type.getDeclaredConstructor(parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * A field with its accessors and its conversion to and from a tag.
+     */
+    private static final class Property {
+
+        final String key;
+        final Codec codec;
+        /**
+         * (Object) Object.
+         */
+        final MethodHandle getter;
+        /**
+         * (Object, Object) void, or null if the field is set through the constructor.
+         */
+        final MethodHandle setter;
+        /**
+         * The value a missing key passes to the constructor.
+         */
+        final Object missing;
+
+        Property(Field field, boolean settable) throws IllegalAccessException {
+            this.key = field.getName();
+            this.codec = codecOf(field.getGenericType());
+            this.getter = LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = settable ? LOOKUP.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class)) : null;
+            this.missing = zero(field.getType());
+        }
+
+        Object read(Compound nbt) {
+            Object tag = nbt.get(key);
+            return tag == null ? null : codec.fromTag(tag);
+        }
+
+        private static Object zero(Class<?> type) {
+            if (type == boolean.class) {
+                return false;
+            } else if (type == byte.class) {
+                return (byte) 0;
+            } else if (type == short.class) {
+                return (short) 0;
+            } else if (type == int.class) {
+                return 0;
+            } else if (type == long.class) {
+                return 0L;
+            } else if (type == float.class) {
+                return 0F;
+            } else if (type == double.class) {
+                return 0D;
+            } else {
+                return null;
+            }
+        }
+
+    }
+
+    private static Codec codecOf(Type generic) {
+        Class<?> raw = raw(generic);
+        if (raw == boolean.class || raw == Boolean.class) {
+            return new BooleanCodec();
+        } else if (raw == byte[].class) {
+            return new BytesCodec();
+        } else if (raw == int[].class) {
+            return new IntsCodec();
+        } else if (List.class.isAssignableFrom(raw) && !TypedList.class.isAssignableFrom(raw)) {
+            if (!raw.isAssignableFrom(ArrayList.class) || !(generic instanceof ParameterizedType)) {
+                throw new UnsupportedTypeException(raw);
+            }
+            return new ListCodec(codecOf(((ParameterizedType) generic).getActualTypeArguments()[0]));
+        }
+        TagType<?> type = NBTSchema.tagTypeOf(raw);
+        if (type == TagType.COMPOUND && !Compound.class.isAssignableFrom(raw)) {
+            return new ObjectCodec(raw);
+        }
+        return new ValueCodec(type, box(raw));
+    }
+
+    private static Class<?> raw(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        } else if (type instanceof ParameterizedType) {
+            return raw(((ParameterizedType) type).getRawType());
+        } else if (type instanceof WildcardType) {
+            return raw(((WildcardType) type).getUpperBounds()[0]);
+        }
+        throw new UnsupportedTypeException(Object.class);
+    }
+
+    private static Class<?> box(Class<?> c) {
+        if (!c.isPrimitive()) {
+            return c;
+        } else if (c == byte.class) {
+            return Byte.class;
+        } else if (c == short.class) {
+            return Short.class;
+        } else if (c == int.class) {
+            return Integer.class;
+        } else if (c == long.class) {
+            return Long.class;
+        } else if (c == float.class) {
+            return Float.class;
+        } else if (c == double.class) {
+            return Double.class;
+        }
+        throw new UnsupportedTypeException(c);
+    }
+
+    /**
+     * Converts a field's value to a tag of one type and back.
+     */
+    private abstract static class Codec {
+
+        final TagType<?> type;
+
+        Codec(TagType<?> type) {
+            this.type = type;
+        }
+
+        abstract Object toTag(Object value);
+
+        /**
+         * @return The value, or null if the tag doesn't fit.
+         */
+        abstract Object fromTag(Object tag);
+
+    }
+
+    private static final class ValueCodec extends Codec {
+
+        private final Class<?> boxed;
+
+        ValueCodec(TagType<?> type, Class<?> boxed) {
+            super(type);
+            this.boxed = boxed;
+        }
+
+        @Override
+        Object toTag(Object value) {
+            return value;
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            if (boxed.isInstance(tag)) {
+                return tag;
+            }
+            if (tag instanceof OffHeapArray) {
+                return fromTag(((OffHeapArray) tag).toHeap());
+            }
+            if (tag instanceof Number) {
+                Number n = (Number) tag;
+                if (boxed == Byte.class) {
+                    return n.byteValue();
+                } else if (boxed == Short.class) {
+                    return n.shortValue();
+                } else if (boxed == Integer.class) {
+                    return n.intValue();
+                } else if (boxed == Long.class) {
+                    return n.longValue();
+                } else if (boxed == Float.class) {
+                    return n.floatValue();
+                } else if (boxed == Double.class) {
+                    return n.doubleValue();
+                }
+            }
+            return null;
+        }
+
+    }
+
+    private static final class BooleanCodec extends Codec {
+
+        BooleanCodec() {
+            super(TagType.BYTE);
+        }
+
+        @Override
+        Object toTag(Object value) {
+            return (Boolean) value ? (byte) 1 : (byte) 0;
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            return tag instanceof Number ? ((Number) tag).intValue() != 0 : null;
+        }
+
+    }
+
+    private static final class BytesCodec extends Codec {
+
+        BytesCodec() {
+            super(TagType.BYTE_ARRAY);
+        }
+
+        @Override
+        Object toTag(Object value) {
+            byte[] bytes = (byte[]) value;
+            Byte[] tag = new Byte[bytes.length];
+            for (int i = 0; i < bytes.length; i ++) {
+                tag[i] = bytes[i];
+            }
+            return tag;
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            if (tag instanceof OffHeapArray) {
+                tag = ((OffHeapArray) tag).toHeap();
+            }
+            if (!(tag instanceof Byte[])) {
+                return null;
+            }
+            Byte[] array = (Byte[]) tag;
+            byte[] bytes = new byte[array.length];
+            for (int i = 0; i < bytes.length; i ++) {
+                bytes[i] = array[i];
+            }
+            return bytes;
+        }
+
+    }
+
+    private static final class IntsCodec extends Codec {
+
+        IntsCodec() {
+            super(TagType.INT_ARRAY);
+        }
+
+        @Override
+        Object toTag(Object value) {
+            int[] ints = (int[]) value;
+            Integer[] tag = new Integer[ints.length];
+            for (int i = 0; i < ints.length; i ++) {
+                tag[i] = ints[i];
+            }
+            return tag;
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            if (tag instanceof OffHeapArray) {
+                tag = ((OffHeapArray) tag).toHeap();
+            }
+            if (!(tag instanceof Integer[])) {
+                return null;
+            }
+            Integer[] array = (Integer[]) tag;
+            int[] ints = new int[array.length];
+            for (int i = 0; i < ints.length; i ++) {
+                ints[i] = array[i];
+            }
+            return ints;
+        }
+
+    }
+
+    private static final class ListCodec extends Codec {
+
+        private final Codec element;
+
+        ListCodec(Codec element) {
+            super(TagType.LIST);
+            this.element = element;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Object toTag(Object value) {
+            TypedList<Object> list = new TypedList<>((TagType<Object>) element.type);
+            for (Object e : (List<?>) value) {
+                if (e == null) {
+                    throw new NullPointerException("A list tag can't hold null");
+                }
+                list.add(element.toTag(e));
+            }
+            return list;
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            if (!(tag instanceof TypedList)) {
+                return null;
+            }
+            TypedList<?> list = (TypedList<?>) tag;
+            List<Object> value = new ArrayList<>(list.size());
+            for (Object e : list) {
+                value.add(element.fromTag(e));
+            }
+            return value;
+        }
+
+    }
+
+    private static final class ObjectCodec extends Codec {
+
+        private final Class<Object> c;
+
+        @SuppressWarnings("unchecked")
+        ObjectCodec(Class<?> c) {
+            super(TagType.COMPOUND);
+            this.c = (Class<Object>) c;
+        }
+
+        @Override
+        Object toTag(Object value) {
+            return FinalNBT.serialize(value, c);
+        }
+
+        @Override
+        Object fromTag(Object tag) {
+            return tag instanceof Compound ? FinalNBT.deserialize((Compound) tag, c) : null;
+        }
+
+    }
+
+}
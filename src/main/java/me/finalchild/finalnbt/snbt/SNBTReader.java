@@ -0,0 +1,576 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.snbt;
+
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.exception.SNBTParseException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Reads stringified NBT straight into compounds, lists and boxed values, pulling chars from a Reader as it goes.
+ *
+ * Numbers without a suffix are read as INT, or as DOUBLE if they have a fraction or an exponent.
+ * true and false are read as the bytes 1 and 0, and any other unquoted word is read as a string.
+ */
+public class SNBTReader {
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int pos;
+    private int limit;
+    /**
+     * The number of chars consumed before buffer[0].
+     */
+    private long offset;
+    private int depth;
+
+    private final StringBuilder token = new StringBuilder();
+    private long number;
+    private long[] scratch = new long[16];
+
+    public SNBTReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read a value from the SNBT string. Only whitespace may follow it.
+     * @param snbt The SNBT string.
+     * @return The value.
+     * @throws SNBTParseException If the string isn't a single valid SNBT value.
+     */
+    public static Object parse(String snbt) throws SNBTParseException {
+        SNBTReader reader = new SNBTReader(new StringReader(snbt));
+        try {
+            Object value = reader.readValue();
+            reader.endOfInput();
+            return value;
+        } catch (SNBTParseException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Read a compound from the SNBT string. Only whitespace may follow it.
+     * @param snbt The SNBT string.
+     * @return The compound.
+     * @throws SNBTParseException If the string isn't a single valid SNBT compound.
+     */
+    public static Compound parseCompound(String snbt) throws SNBTParseException {
+        Object value = parse(snbt);
+        if (!(value instanceof Compound)) {
+            throw new SNBTParseException("Expected a compound", 0);
+        }
+        return (Compound) value;
+    }
+
+    /**
+     * Read the next value.
+     * @return The value, typed as a standard tag type.
+     * @throws IOException IOException, or SNBTParseException if the input is malformed.
+     */
+    public Object readValue() throws IOException {
+        skipWhitespace();
+        int c = peek(0);
+        switch (c) {
+            case '{':
+                return readCompound();
+            case '[':
+                return readListOrArray();
+            case '"':
+            case '\'':
+                return readQuoted();
+            case -1:
+                throw error("Expected a value but reached the end");
+            default:
+                readToken();
+                if (token.length() == 0) {
+                    throw error("Unexpected character '" + (char) c + "'");
+                }
+                return classify();
+        }
+    }
+
+    /**
+     * Check that only whitespace is left.
+     * @throws IOException IOException, or SNBTParseException if there is anything else.
+     */
+    public void endOfInput() throws IOException {
+        skipWhitespace();
+        if (peek(0) != -1) {
+            throw error("Expected the end");
+        }
+    }
+
+    private Compound readCompound() throws IOException {
+        enter();
+        pos++;
+        Compound compound = new Compound();
+        skipWhitespace();
+        if (peek(0) == '}') {
+            pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                String key;
+                int c = peek(0);
+                if (c == '"' || c == '\'') {
+                    key = readQuoted();
+                } else {
+                    readToken();
+                    if (token.length() == 0) {
+                        throw error("Expected a key");
+                    }
+                    key = token.toString();
+                }
+                skipWhitespace();
+                expect(':');
+                compound.put(key, readValue());
+                skipWhitespace();
+                c = read();
+                if (c == '}') {
+                    break;
+                } else if (c != ',') {
+                    throw error(c, "',' or '}'");
+                }
+            }
+        }
+        depth--;
+        return compound;
+    }
+
+    private Object readListOrArray() throws IOException {
+        enter();
+        pos++;
+        Object value;
+        int kind = peek(0);
+        if ((kind == 'B' || kind == 'I' || kind == 'L') && peek(1) == ';') {
+            pos += 2;
+            value = readArray(kind);
+        } else {
+            value = readList();
+        }
+        depth--;
+        return value;
+    }
+
+    private TypedList<?> readList() throws IOException {
+        skipWhitespace();
+        if (peek(0) == ']') {
+            pos++;
+            return new TypedList<>(TagType.END);
+        }
+        Object first = readValue();
+        TagType type = TagType.fromValue(first);
+        TypedList list = new TypedList<>(type);
+        list.add(first);
+        while (true) {
+            skipWhitespace();
+            int c = read();
+            if (c == ']') {
+                return list;
+            } else if (c != ',') {
+                throw error(c, "',' or ']'");
+            }
+            long start = offset + pos;
+            Object e = readValue();
+            if (TagType.fromValue(e) != type) {
+                throw new SNBTParseException("Mixed element types in a list", start);
+            }
+            list.add(e);
+        }
+    }
+
+    private Object readArray(int kind) throws IOException {
+        if (kind == 'L') {
+            throw error("Long arrays are not supported");
+        }
+        int length = 0;
+        skipWhitespace();
+        if (peek(0) == ']') {
+            pos++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                long start = offset + pos;
+                readToken();
+                Object e = token.length() == 0 ? null : classify();
+                long value;
+                if (e instanceof Byte || e instanceof Integer || kind == 'I' && e instanceof Short) {
+                    value = ((Number) e).longValue();
+                } else {
+                    throw new SNBTParseException("Expected an element of " + (kind == 'B' ? "a byte array" : "an int array"), start);
+                }
+                if (kind == 'B' && (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE)) {
+                    throw new SNBTParseException("Byte out of range", start);
+                }
+                if (length == scratch.length) {
+                    long[] grown = new long[length * 2];
+                    System.arraycopy(scratch, 0, grown, 0, length);
+                    scratch = grown;
+                }
+                scratch[length++] = value;
+                skipWhitespace();
+                int c = read();
+                if (c == ']') {
+                    break;
+                } else if (c != ',') {
+                    throw error(c, "',' or ']'");
+                }
+            }
+        }
+        if (kind == 'B') {
+            Byte[] array = new Byte[length];
+            for (int i = 0; i < length; i ++) {
+                array[i] = (byte) scratch[i];
+            }
+            return array;
+        } else {
+            Integer[] array = new Integer[length];
+            for (int i = 0; i < length; i ++) {
+                array[i] = (int) scratch[i];
+            }
+            return array;
+        }
+    }
+
+    private String readQuoted() throws IOException {
+        int quote = read();
+        token.setLength(0);
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                throw error("Unterminated string");
+            }
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == quote || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            token.append(buffer, start, pos - start);
+            if (pos == limit) {
+                continue;
+            }
+            char c = buffer[pos++];
+            if (c == quote) {
+                return token.toString();
+            }
+            int escaped = read();
+            switch (escaped) {
+                case '\\':
+                case '"':
+                case '\'':
+                    token.append((char) escaped);
+                    break;
+                case 'n':
+                    token.append('\n');
+                    break;
+                case 't':
+                    token.append('\t');
+                    break;
+                case 'r':
+                    token.append('\r');
+                    break;
+                case 'b':
+                    token.append('\b');
+                    break;
+                case 'f':
+                    token.append('\f');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i ++) {
+                        int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw error("Invalid unicode escape");
+                        }
+                        code = code << 4 | digit;
+                    }
+                    token.append((char) code);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+    }
+
+    /**
+     * Read a run of unquoted chars into the token.
+     */
+    private void readToken() throws IOException {
+        token.setLength(0);
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                return;
+            }
+            int start = pos;
+            while (pos < limit && SNBTWriter.isUnquotedChar(buffer[pos])) {
+                pos++;
+            }
+            token.append(buffer, start, pos - start);
+            if (pos < limit) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Turn the unquoted token into a number, a boolean byte or a string.
+     */
+    private Object classify() {
+        int length = token.length();
+        switch (token.charAt(length - 1)) {
+            case 'b':
+            case 'B':
+                if (parseInteger(length - 1, Byte.MIN_VALUE, Byte.MAX_VALUE)) {
+                    return (byte) number;
+                }
+                break;
+            case 's':
+            case 'S':
+                if (parseInteger(length - 1, Short.MIN_VALUE, Short.MAX_VALUE)) {
+                    return (short) number;
+                }
+                break;
+            case 'l':
+            case 'L':
+                if (parseInteger(length - 1, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    return number;
+                }
+                break;
+            case 'f':
+            case 'F':
+                if (isDecimal(length - 1, true)) {
+                    return Float.parseFloat(token.substring(0, length - 1));
+                }
+                break;
+            case 'd':
+            case 'D':
+                if (isDecimal(length - 1, true)) {
+                    return Double.parseDouble(token.substring(0, length - 1));
+                }
+                break;
+            default:
+                break;
+        }
+        if (parseInteger(length, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+            return (int) number;
+        }
+        if (isDecimal(length, false)) {
+            return Double.parseDouble(token.toString());
+        }
+        String value = token.toString();
+        if (value.equals("true")) {
+            return (byte) 1;
+        } else if (value.equals("false")) {
+            return (byte) 0;
+        }
+        return value;
+    }
+
+    /**
+     * Parse token[0, end) as a decimal integer within [min, max] into number.
+     * @return false if it isn't an integer or is out of range.
+     */
+    private boolean parseInteger(int end, long min, long max) {
+        int i = 0;
+        boolean negative = false;
+        if (end > 0 && (token.charAt(0) == '-' || token.charAt(0) == '+')) {
+            negative = token.charAt(0) == '-';
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        // Accumulate negatively so Long.MIN_VALUE fits.
+        long result = 0;
+        for (; i < end; i ++) {
+            int digit = token.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                return false;
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return false;
+            }
+            result = -result;
+        }
+        if (result < min || result > max) {
+            return false;
+        }
+        number = result;
+        return true;
+    }
+
+    /**
+     * Check whether token[0, end) is a decimal number, optionally with a fraction and an exponent.
+     * @param suffixed Whether the number had a type suffix. If so, NaN, Infinity and integers are accepted.
+     * Otherwise a '.' is required, like Minecraft does.
+     */
+    private boolean isDecimal(int end, boolean suffixed) {
+        int i = 0;
+        if (end > 0 && (token.charAt(0) == '-' || token.charAt(0) == '+')) {
+            i++;
+        }
+        if (suffixed && (regionEquals(i, end, "NaN") || regionEquals(i, end, "Infinity"))) {
+            return true;
+        }
+        int digits = 0;
+        while (i < end && isDigit(token.charAt(i))) {
+            i++;
+            digits++;
+        }
+        boolean dot = false;
+        if (i < end && token.charAt(i) == '.') {
+            dot = true;
+            i++;
+            while (i < end && isDigit(token.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0 || !suffixed && !dot) {
+            return false;
+        }
+        if (i < end && (token.charAt(i) == 'e' || token.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (token.charAt(i) == '-' || token.charAt(i) == '+')) {
+                i++;
+            }
+            int exponent = 0;
+            while (i < end && isDigit(token.charAt(i))) {
+                i++;
+                exponent++;
+            }
+            if (exponent == 0) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private boolean regionEquals(int start, int end, String s) {
+        if (end - start != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i ++) {
+            if (token.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void enter() {
+        if (++depth > 512) {
+            throw new DepthException();
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill(1)) {
+                return;
+            }
+            char c = buffer[pos];
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = read();
+        if (c != expected) {
+            throw error(c, "'" + expected + "'");
+        }
+    }
+
+    private int peek(int ahead) throws IOException {
+        if (limit - pos <= ahead && !fill(ahead + 1)) {
+            return -1;
+        }
+        return buffer[pos + ahead];
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill(1)) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Make sure at least the given number of chars are buffered.
+     * @return false if the input ended first.
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (pos != 0) {
+            offset += pos;
+            limit -= pos;
+            System.arraycopy(buffer, pos, buffer, 0, limit);
+            pos = 0;
+        }
+        while (limit < minimum) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+    private SNBTParseException error(String message) {
+        return new SNBTParseException(message, offset + pos);
+    }
+
+    private SNBTParseException error(int found, String expected) {
+        if (found == -1) {
+            return new SNBTParseException("Expected " + expected + " but reached the end", offset + pos);
+        }
+        return new SNBTParseException("Expected " + expected + " but found '" + (char) found + "'", offset + pos - 1);
+    }
+
+}
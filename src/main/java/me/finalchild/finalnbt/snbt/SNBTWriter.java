@@ -0,0 +1,194 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.snbt;
+
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.OffHeapArray;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes values of standard tag types as stringified NBT, straight to an Appendable.
+ * Every number carries its type suffix, so reading the output back gives the same tag types.
+ */
+public class SNBTWriter {
+
+    private final Appendable out;
+
+    /**
+     * @param out The Appendable to write to. Wrap a Writer in a BufferedWriter for speed.
+     */
+    public SNBTWriter(Appendable out) {
+        this.out = out;
+    }
+
+    /**
+     * Write a value as SNBT.
+     * @param value The value. Its type must be a standard tag type.
+     * @return A string of SNBT.
+     */
+    public static String toString(Object value) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            new SNBTWriter(builder).write(value);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Write the value of the NamedTag. SNBT has no place for the root name.
+     * @param tag The NamedTag.
+     * @throws IOException IOException.
+     */
+    public void write(NamedTag<?> tag) throws IOException {
+        write(tag.getValue());
+    }
+
+    /**
+     * Write a value.
+     * @param value The value. Its type must be a standard tag type.
+     * @throws IOException IOException.
+     */
+    public void write(Object value) throws IOException {
+        if (value instanceof Compound) {
+            writeCompound((Compound) value);
+        } else if (value instanceof TypedList) {
+            writeList((TypedList<?>) value);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.append(value.toString());
+        } else if (value instanceof Byte) {
+            out.append(value.toString()).append('b');
+        } else if (value instanceof Short) {
+            out.append(value.toString()).append('s');
+        } else if (value instanceof Long) {
+            out.append(value.toString()).append('L');
+        } else if (value instanceof Float) {
+            out.append(value.toString()).append('f');
+        } else if (value instanceof Double) {
+            out.append(value.toString()).append('d');
+        } else if (value instanceof Byte[]) {
+            out.append("[B;");
+            Byte[] array = (Byte[]) value;
+            for (int i = 0; i < array.length; i ++) {
+                if (i != 0) {
+                    out.append(',');
+                }
+                out.append(array[i].toString()).append('b');
+            }
+            out.append(']');
+        } else if (value instanceof Integer[]) {
+            out.append("[I;");
+            Integer[] array = (Integer[]) value;
+            for (int i = 0; i < array.length; i ++) {
+                if (i != 0) {
+                    out.append(',');
+                }
+                out.append(array[i].toString());
+            }
+            out.append(']');
+        } else if (value instanceof OffHeapArray) {
+            write(((OffHeapArray) value).toHeap());
+        } else {
+            throw new UnsupportedTypeException(value == null ? Void.class : value.getClass());
+        }
+    }
+
+    private void writeCompound(Compound compound) throws IOException {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : compound.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            writeKey(entry.getKey());
+            out.append(':');
+            write(entry.getValue());
+        }
+        out.append('}');
+    }
+
+    private void writeList(TypedList<?> list) throws IOException {
+        out.append('[');
+        boolean first = true;
+        for (Object e : list) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            write(e);
+        }
+        out.append(']');
+    }
+
+    private void writeKey(String key) throws IOException {
+        if (key.isEmpty()) {
+            out.append("\"\"");
+            return;
+        }
+        for (int i = 0; i < key.length(); i ++) {
+            if (!isUnquotedChar(key.charAt(i))) {
+                writeString(key);
+                return;
+            }
+        }
+        out.append(key);
+    }
+
+    /**
+     * Quote the string with double quotes, or with single quotes if that needs fewer escapes.
+     */
+    private void writeString(String value) throws IOException {
+        char quote = '"';
+        if (value.indexOf('"') >= 0 && value.indexOf('\'') < 0) {
+            quote = '\'';
+        }
+        out.append(quote);
+        int start = 0;
+        for (int i = 0; i < value.length(); i ++) {
+            char c = value.charAt(i);
+            if (c == quote || c == '\\') {
+                out.append(value, start, i).append('\\').append(c);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, value.length()).append(quote);
+    }
+
+    static boolean isUnquotedChar(char c) {
+        return c >= '0' && c <= '9' || c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z'
+                || c == '_' || c == '-' || c == '.' || c == '+';
+    }
+
+}
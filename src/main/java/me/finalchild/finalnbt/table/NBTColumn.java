@@ -0,0 +1,464 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.table;
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.TagType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one key across the rows of an {@link NBTTable}, in a primitive array.
+ *
+ * Bytes, shorts, ints, longs, floats and doubles are stored in arrays of their primitive type.
+ * Strings are stored as indices into a dictionary of the distinct strings.
+ * Other values, and the values of a key whose tag type varies between rows, are stored in an Object[].
+ * Rows without the key are marked absent in the presence bitmap, and hold 0 or null.
+ */
+public final class NBTColumn {
+
+    private final String key;
+    private int rows;
+    private final BitSet presence;
+    /**
+     * Null once the values are of several tag types.
+     */
+    private TagType<?> type;
+    private Object data;
+    private List<String> dictionary;
+    private Map<String, Integer> dictionaryIndex;
+
+    /**
+     * @param rows The number of rows, which is also the initial capacity. The column grows past it as rows are set.
+     */
+    NBTColumn(String key, TagType<?> type, int rows) {
+        this.key = key;
+        this.rows = rows;
+        this.presence = new BitSet(rows);
+        this.type = type;
+        switch (type.getId()) {
+            case 1:
+                data = new byte[rows];
+                break;
+            case 2:
+                data = new short[rows];
+                break;
+            case 3:
+                data = new int[rows];
+                break;
+            case 4:
+                data = new long[rows];
+                break;
+            case 5:
+                data = new float[rows];
+                break;
+            case 6:
+                data = new double[rows];
+                break;
+            case 8:
+                data = new int[rows];
+                dictionary = new ArrayList<>();
+                dictionaryIndex = new HashMap<>();
+                break;
+            default:
+                data = new Object[rows];
+                break;
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The tag type of the values, or null if it varies between rows.
+     */
+    public TagType<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * @return The number of rows with the key.
+     */
+    public int count() {
+        return presence.cardinality();
+    }
+
+    /**
+     * @param row The row.
+     * @return Whether the row has the key.
+     */
+    public boolean isPresent(int row) {
+        return presence.get(row);
+    }
+
+    /**
+     * @return The presence bitmap. DO NOT change it.
+     */
+    public BitSet getPresence() {
+        return presence;
+    }
+
+    /**
+     * Get a row's value, boxed.
+     * @param row The row.
+     * @return The value, or null if the row doesn't have the key.
+     */
+    public Object get(int row) {
+        if (!presence.get(row)) {
+            return null;
+        }
+        switch (type == null ? 0 : type.getId()) {
+            case 1:
+                return ((byte[]) data)[row];
+            case 2:
+                return ((short[]) data)[row];
+            case 3:
+                return ((int[]) data)[row];
+            case 4:
+                return ((long[]) data)[row];
+            case 5:
+                return ((float[]) data)[row];
+            case 6:
+                return ((double[]) data)[row];
+            case 8:
+                return dictionary.get(((int[]) data)[row]);
+            default:
+                return ((Object[]) data)[row];
+        }
+    }
+
+    public byte[] bytes() {
+        return (byte[]) data(TagType.BYTE);
+    }
+
+    public short[] shorts() {
+        return (short[]) data(TagType.SHORT);
+    }
+
+    public int[] ints() {
+        return (int[]) data(TagType.INT);
+    }
+
+    public long[] longs() {
+        return (long[]) data(TagType.LONG);
+    }
+
+    public float[] floats() {
+        return (float[]) data(TagType.FLOAT);
+    }
+
+    public double[] doubles() {
+        return (double[]) data(TagType.DOUBLE);
+    }
+
+    /**
+     * @return The index of each row's string in the {@link #dictionary()}.
+     */
+    public int[] indices() {
+        return (int[]) data(TagType.STRING);
+    }
+
+    /**
+     * @return The distinct strings, in the order they were first seen.
+     */
+    public List<String> dictionary() {
+        data(TagType.STRING);
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * @return The values, for a column of neither primitives nor strings.
+     */
+    public Object[] values() {
+        if (!(data instanceof Object[])) {
+            throw new IllegalStateException("The column " + key + " holds tag type " + type.getId());
+        }
+        return (Object[]) data;
+    }
+
+    /**
+     * Sum the present values of a numeric column.
+     * @return The sum.
+     */
+    public double sum() {
+        double sum = 0;
+        switch (type == null ? 0 : type.getId()) {
+            case 1: {
+                byte[] values = (byte[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            case 2: {
+                short[] values = (short[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            case 3: {
+                int[] values = (int[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            case 4: {
+                long[] values = (long[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            case 5: {
+                float[] values = (float[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            case 6: {
+                double[] values = (double[]) data;
+                for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                    sum += values[i];
+                }
+                return sum;
+            }
+            default:
+                throw new IllegalStateException("The column " + key + " isn't numeric");
+        }
+    }
+
+    private Object data(TagType<?> expected) {
+        if (type != expected) {
+            throw new IllegalStateException("The column " + key + " holds " + (type == null ? "several tag types" : "tag type " + type.getId()));
+        }
+        return data;
+    }
+
+    /**
+     * Set a row's value, which MUST be of a standard tag type.
+     */
+    void set(int row, TagType<?> valueType, Object value) {
+        if (valueType != type) {
+            mix();
+        }
+        ensureCapacity(row);
+        presence.set(row);
+        switch (type == null ? 0 : type.getId()) {
+            case 1:
+                ((byte[]) data)[row] = (Byte) value;
+                break;
+            case 2:
+                ((short[]) data)[row] = (Short) value;
+                break;
+            case 3:
+                ((int[]) data)[row] = (Integer) value;
+                break;
+            case 4:
+                ((long[]) data)[row] = (Long) value;
+                break;
+            case 5:
+                ((float[]) data)[row] = (Float) value;
+                break;
+            case 6:
+                ((double[]) data)[row] = (Double) value;
+                break;
+            case 8:
+                ((int[]) data)[row] = index((String) value);
+                break;
+            default:
+                ((Object[]) data)[row] = value;
+                break;
+        }
+    }
+
+    /**
+     * Decode a row's value straight into the column, charging the strings to the tracker if any.
+     */
+    void read(int row, TagType<?> valueType, DataInput stream, NBTLimits.Tracker tracker) throws IOException {
+        if (valueType != type) {
+            mix();
+        }
+        ensureCapacity(row);
+        presence.set(row);
+        switch (type == null ? 0 : type.getId()) {
+            case 1:
+                ((byte[]) data)[row] = stream.readByte();
+                break;
+            case 2:
+                ((short[]) data)[row] = stream.readShort();
+                break;
+            case 3:
+                ((int[]) data)[row] = stream.readInt();
+                break;
+            case 4:
+                ((long[]) data)[row] = stream.readLong();
+                break;
+            case 5:
+                ((float[]) data)[row] = stream.readFloat();
+                break;
+            case 6:
+                ((double[]) data)[row] = stream.readDouble();
+                break;
+            case 8: {
+                String value = stream.readUTF();
+                if (tracker != null) {
+                    tracker.string(value);
+                }
+                ((int[]) data)[row] = index(value);
+                break;
+            }
+            default: {
+                Object value = valueType.readTag(stream);
+                if (tracker != null && value instanceof String) {
+                    tracker.string((String) value);
+                }
+                ((Object[]) data)[row] = value;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Set the number of rows once a table is decoded, trimming the arrays to it.
+     */
+    void resize(int rows) {
+        this.rows = rows;
+        data = copyOf(data, rows);
+    }
+
+    /**
+     * Grow the arrays, by doubling, to hold the row.
+     */
+    private void ensureCapacity(int row) {
+        int capacity = Array.getLength(data);
+        if (row >= capacity) {
+            data = copyOf(data, (int) Math.min(Math.max(row + 1L, capacity * 2L), Integer.MAX_VALUE - 8));
+        }
+    }
+
+    private static Object copyOf(Object data, int length) {
+        if (data instanceof byte[]) {
+            return ((byte[]) data).length == length ? data : Arrays.copyOf((byte[]) data, length);
+        } else if (data instanceof short[]) {
+            return ((short[]) data).length == length ? data : Arrays.copyOf((short[]) data, length);
+        } else if (data instanceof int[]) {
+            return ((int[]) data).length == length ? data : Arrays.copyOf((int[]) data, length);
+        } else if (data instanceof long[]) {
+            return ((long[]) data).length == length ? data : Arrays.copyOf((long[]) data, length);
+        } else if (data instanceof float[]) {
+            return ((float[]) data).length == length ? data : Arrays.copyOf((float[]) data, length);
+        } else if (data instanceof double[]) {
+            return ((double[]) data).length == length ? data : Arrays.copyOf((double[]) data, length);
+        } else {
+            return ((Object[]) data).length == length ? data : Arrays.copyOf((Object[]) data, length);
+        }
+    }
+
+    /**
+     * Write a present row's value as a named tag.
+     */
+    void write(int row, DataOutput stream) throws IOException {
+        TagType valueType = type != null ? type : TagType.fromValue(((Object[]) data)[row]);
+        valueType.write(stream);
+        stream.writeUTF(key);
+        switch (type == null ? 0 : type.getId()) {
+            case 1:
+                stream.writeByte(((byte[]) data)[row]);
+                break;
+            case 2:
+                stream.writeShort(((short[]) data)[row]);
+                break;
+            case 3:
+                stream.writeInt(((int[]) data)[row]);
+                break;
+            case 4:
+                stream.writeLong(((long[]) data)[row]);
+                break;
+            case 5:
+                stream.writeFloat(((float[]) data)[row]);
+                break;
+            case 6:
+                stream.writeDouble(((double[]) data)[row]);
+                break;
+            case 8:
+                stream.writeUTF(dictionary.get(((int[]) data)[row]));
+                break;
+            default:
+                valueType.writeTag(stream, ((Object[]) data)[row]);
+                break;
+        }
+    }
+
+    private int index(String value) {
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * Box the values into an Object[], once a value of another tag type shows up.
+     */
+    private void mix() {
+        if (type == null) {
+            return;
+        }
+        Object[] values = data instanceof Object[] ? (Object[]) data : new Object[Array.getLength(data)];
+        if (values != data) {
+            for (int i = presence.nextSetBit(0); i >= 0; i = presence.nextSetBit(i + 1)) {
+                values[i] = get(i);
+            }
+        }
+        type = null;
+        data = values;
+        dictionary = null;
+        dictionaryIndex = null;
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.table;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of compounds stored by column, for scans and aggregates over a few keys of many compounds,
+ * such as the entities of a chunk. Each key becomes an {@link NBTColumn}.
+ *
+ * A table is built from a TypedList of compounds, or decoded straight from a list tag without building the compounds,
+ * and is written back as a standard list tag.
+ * A table is not thread-safe while it is being built.
+ */
+public class NBTTable {
+
+    /**
+     * The initial capacity of the columns of a decoded table, which grow as rows arrive.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int rows;
+    private final Map<String, NBTColumn> columns = new LinkedHashMap<>();
+
+    private NBTTable(int rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Build a table from a list of compounds.
+     * @param list The list.
+     * @return The table.
+     */
+    public static NBTTable of(TypedList<Compound> list) {
+        NBTTable table = new NBTTable(list.size());
+        int row = 0;
+        for (Compound compound : list) {
+            for (Map.Entry<String, Object> entry : compound.entrySet()) {
+                TagType<?> type = TagType.fromValue(entry.getValue());
+                table.column(entry.getKey(), type).set(row, type, entry.getValue());
+            }
+            row ++;
+        }
+        return table;
+    }
+
+    /**
+     * Decode the payload of a list tag of compounds into a table. Primitives and strings are decoded
+     * straight into their columns; other values are decoded the usual way.
+     * The columns grow as rows arrive, and the stream's {@link NBTLimits} are charged as for a list.
+     * @param stream The stream to read from.
+     * @return The table.
+     * @throws IOException IOException.
+     */
+    public static NBTTable read(DataInput stream) throws IOException {
+        TagType elementType = TagType.read(stream);
+        int length = stream.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length);
+        }
+        if (length == 0) {
+            return new NBTTable(0);
+        }
+        if (elementType != TagType.COMPOUND) {
+            throw new IOException("Expected a list of compounds but found tag type " + (elementType == null ? "unknown" : elementType.getId()));
+        }
+        int depth = FinalNBT.getDepth(stream);
+        if (depth > 510) {
+            throw new DepthException();
+        }
+        // The list and its compounds.
+        FinalNBT.setDepth(stream, depth + 2);
+        try {
+            NBTLimits.Tracker tracker = FinalNBT.getTracker(stream);
+            if (tracker != null) {
+                tracker.charge(40);
+                tracker.list(TagType.COMPOUND, length);
+            }
+            // Don't trust the length with the size of the columns.
+            NBTTable table = new NBTTable(Math.min(length, INITIAL_CAPACITY));
+            for (int row = 0; row < length; row ++) {
+                if (tracker != null) {
+                    tracker.charge(48);
+                }
+                TagType type;
+                while ((type = TagType.read(stream)) != TagType.END) {
+                    if (type == null) {
+                        throw new IOException("Unknown tag type in a compound");
+                    }
+                    String key = stream.readUTF();
+                    if (tracker != null) {
+                        tracker.count(1);
+                        tracker.string(key);
+                    }
+                    table.column(key, type).read(row, type, stream, tracker);
+                }
+            }
+            table.rows = length;
+            for (NBTColumn column : table.columns.values()) {
+                column.resize(length);
+            }
+            return table;
+        } finally {
+            FinalNBT.setDepth(stream, depth);
+        }
+    }
+
+    private NBTColumn column(String key, TagType<?> type) {
+        NBTColumn column = columns.get(key);
+        if (column == null) {
+            column = new NBTColumn(key, type, rows);
+            columns.put(key, column);
+        }
+        return column;
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int size() {
+        return rows;
+    }
+
+    /**
+     * @param key The key.
+     * @return The column of the key, or null if no row has it.
+     */
+    public NBTColumn getColumn(String key) {
+        return columns.get(key);
+    }
+
+    /**
+     * @return The columns, in the order their keys were first seen.
+     */
+    public Collection<NBTColumn> getColumns() {
+        return Collections.unmodifiableCollection(columns.values());
+    }
+
+    /**
+     * Rebuild a row's compound.
+     * @param row The row.
+     * @return A new compound.
+     */
+    public Compound getRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        Compound compound = new Compound();
+        for (NBTColumn column : columns.values()) {
+            if (column.isPresent(row)) {
+                compound.put(column.getKey(), column.get(row));
+            }
+        }
+        return compound;
+    }
+
+    /**
+     * Rebuild the list of compounds.
+     * @return A new list.
+     */
+    public TypedList<Compound> toList() {
+        List<Compound> list = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row ++) {
+            list.add(getRow(row));
+        }
+        return new TypedList<>(TagType.COMPOUND, list);
+    }
+
+    /**
+     * Write the table as the payload of a list tag of compounds, row by row, without building the compounds.
+     * @param stream The stream to write to.
+     * @throws IOException IOException.
+     */
+    public void write(DataOutput stream) throws IOException {
+        TagType.COMPOUND.write(stream);
+        stream.writeInt(rows);
+        NBTColumn[] columns = this.columns.values().toArray(new NBTColumn[0]);
+        for (int row = 0; row < rows; row ++) {
+            for (NBTColumn column : columns) {
+                if (column.isPresent(row)) {
+                    column.write(row, stream);
+                }
+            }
+            TagType.END.write(stream);
+        }
+    }
+
+}
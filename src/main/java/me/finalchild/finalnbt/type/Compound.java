@@ -26,10 +26,15 @@ package me.finalchild.finalnbt.type;
 
 import me.finalchild.finalnbt.FinalNBT;
 import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.snbt.SNBTWriter;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 /**
@@ -40,7 +45,23 @@ import java.util.Set;
  */
 public class Compound implements Map<String, Object> {
 
-    private HashMap<String, Object> map;
+    private Map<String, Object> map;
+
+    /**
+     * Sum of the entry hashes of the non-container values. Only valid while hashed is true.
+     * Container values, arrays included, can change without us knowing, so they are hashed on every hashCode() call.
+     */
+    private int leafHash;
+    private int containers;
+    /**
+     * Volatile, so a thread that sees it set also sees the leafHash and containers written before it.
+     */
+    private volatile boolean hashed;
+
+    /**
+     * Whether the backing map may be shared with other compounds. If so, it is copied before the first change.
+     */
+    private boolean shared;
 
     public Compound() {
         this(new HashMap<>());
@@ -51,13 +72,85 @@ public class Compound implements Map<String, Object> {
      * @param map The map to wrap.
      */
     public Compound(HashMap<String, Object> map) {
+        this((Map<String, Object>) map);
+    }
+
+    /**
+     * Wrap a map of any kind. For variants that aren't backed by a HashMap.
+     * @param map The map to wrap.
+     */
+    protected Compound(Map<String, Object> map) {
         this.map = map;
     }
 
-    public HashMap getHashMap() {
+    /**
+     * Returns a copy-on-write compound sharing this compound's backing map.
+     * Both compounds copy the map before their next change.
+     */
+    Compound share() {
+        shared = true;
+        Compound compound = new Compound(map);
+        compound.shared = true;
+        compound.leafHash = leafHash;
+        compound.containers = containers;
+        compound.hashed = hashed;
+        return compound;
+    }
+
+    /**
+     * For internal use only. The backing map, which must not be changed.
+     */
+    Map<String, Object> map() {
         return map;
     }
 
+    private Map<String, Object> mutableMap() {
+        if (shared) {
+            map = new HashMap<>(map);
+            shared = false;
+        }
+        return map;
+    }
+
+    /**
+     * Get the backing map.
+     * If this compound isn't backed by a HashMap, a HashMap copy is returned instead.
+     * Changes made later through a kept reference aren't seen by the cached hash code.
+     * @return The backing map, or a copy of it.
+     */
+    public HashMap getHashMap() {
+        hashed = false;
+        Map<String, Object> map = mutableMap();
+        return map instanceof HashMap ? (HashMap) map : new HashMap<>(map);
+    }
+
+    /**
+     * Get the backing map.
+     * Changes made later through a kept reference aren't seen by the cached hash code.
+     * @return The backing map.
+     */
+    public Map<String, Object> getMap() {
+        hashed = false;
+        return mutableMap();
+    }
+
+    /**
+     * Deeply copy this compound. Primitives and strings are shared, arrays are copied,
+     * and nested compounds and lists are deeply copied into mutable ones.
+     * @return A mutable deep copy.
+     */
+    public Compound deepCopy() {
+        HashMap<String, Object> copy = new HashMap<>(Math.max((int) (map.size() / .75f) + 1, 16));
+        for (Entry<String, Object> entry : map.entrySet()) {
+            copy.put(entry.getKey(), TagType.deepCopy(entry.getValue()));
+        }
+        Compound compound = new Compound(copy);
+        compound.leafHash = leafHash;
+        compound.containers = containers;
+        compound.hashed = hashed;
+        return compound;
+    }
+
     public <T> T get(String key) {
         return (T) map.get(key);
     }
@@ -100,41 +193,329 @@ public class Compound implements Map<String, Object> {
 
     @Override
     public Object put(String key, Object value) {
-        if (TagType.fromValue(value) != null) {
-            return map.put(key, value);
-        } else {
-            return map.put(key, FinalNBT.serialize(value));
+        if (TagType.fromValue(value) == null) {
+            value = FinalNBT.serialize(value);
+        }
+        Map<String, Object> map = mutableMap();
+        boolean present = hashed && map.containsKey(key);
+        Object old = map.put(key, value);
+        if (hashed) {
+            if (present) {
+                account(key, old, -1);
+            }
+            account(key, value, 1);
         }
+        return old;
     }
 
     @Override
     public Object remove(Object key) {
-        return map.remove(key);
+        if (!map.containsKey(key)) {
+            return null;
+        }
+        Object old = mutableMap().remove(key);
+        if (hashed) {
+            account(key, old, -1);
+        }
+        return old;
     }
 
     @Override
     public void putAll(Map<? extends String, ?> m) {
-        map.putAll(m);
+        hashed = false;
+        mutableMap().putAll(m);
     }
 
     @Override
     public void clear() {
-        map.clear();
+        if (shared) {
+            map = new HashMap<>();
+            shared = false;
+        } else {
+            map.clear();
+        }
+        leafHash = 0;
+        containers = 0;
     }
 
     @Override
     public Set<String> keySet() {
-        return map.keySet();
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new ViewIterator<>(ViewIterator.KEYS);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return map.containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                if (!map.containsKey(o)) {
+                    return false;
+                }
+                Compound.this.remove(o);
+                return true;
+            }
+
+            @Override
+            public void clear() {
+                Compound.this.clear();
+            }
+        };
     }
 
     @Override
     public Collection<Object> values() {
-        return map.values();
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                return new ViewIterator<>(ViewIterator.VALUES);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return map.containsValue(o);
+            }
+
+            @Override
+            public void clear() {
+                Compound.this.clear();
+            }
+        };
     }
 
     @Override
     public Set<Entry<String, Object>> entrySet() {
-        return map.entrySet();
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new ViewIterator<>(ViewIterator.ENTRIES);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public void clear() {
+                Compound.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Compares the entries deeply. Array values are compared by their elements.
+     * @param o The object to compare with.
+     * @return Whether o is a map with deeply equal entries.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map)) {
+            return false;
+        }
+        Map<?, ?> m = (Map<?, ?>) o;
+        if (m.size() != map.size()) {
+            return false;
+        }
+        if (o instanceof Compound) {
+            Compound c = (Compound) o;
+            if (hashed && c.hashed && containers == 0 && c.containers == 0 && leafHash != c.leafHash) {
+                return false;
+            }
+        }
+        for (Entry<String, Object> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                if (m.get(entry.getKey()) != null || !m.containsKey(entry.getKey())) {
+                    return false;
+                }
+            } else if (!TagType.deepEquals(value, m.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the entries deeply, following the Map contract. Array values are hashed by their elements.
+     * Only the hashes of non-container values are cached, and kept up to date on put and remove.
+     * Compounds, lists and arrays are hashed again on every call, as they can change without us knowing.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        if (!hashed) {
+            // Sum into locals, so a thread hashing at the same time never sees a partial sum.
+            int leaf = 0;
+            int nested = 0;
+            for (Entry<String, Object> entry : map.entrySet()) {
+                Object value = entry.getValue();
+                if (isContainer(value)) {
+                    nested ++;
+                } else {
+                    leaf += Objects.hashCode(entry.getKey()) ^ TagType.deepHashCode(value);
+                }
+            }
+            leafHash = leaf;
+            containers = nested;
+            hashed = true;
+        }
+        if (containers == 0) {
+            return leafHash;
+        }
+        int h = leafHash;
+        for (Entry<String, Object> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (isContainer(value)) {
+                h += entry.getKey().hashCode() ^ TagType.deepHashCode(value);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return This compound as SNBT.
+     */
+    @Override
+    public String toString() {
+        return SNBTWriter.toString(this);
+    }
+
+    private void account(Object key, Object value, int sign) {
+        if (isContainer(value)) {
+            containers += sign;
+        } else {
+            leafHash += sign * (Objects.hashCode(key) ^ TagType.deepHashCode(value));
+        }
+    }
+
+    /**
+     * Whether the value can change in place without us knowing. Arrays can, so they count as containers too.
+     */
+    private static boolean isContainer(Object value) {
+        return value instanceof Compound || value instanceof TypedList
+                || value instanceof Byte[] || value instanceof Integer[] || value instanceof OffHeapArray;
+    }
+
+    /**
+     * Iterates the backing map for the views. Removals and setValue drop the cached hash.
+     * If the map has been shared or replaced since the iteration started, they are applied by key instead.
+     */
+    private final class ViewIterator<E> implements Iterator<E> {
+
+        static final int KEYS = 0;
+        static final int VALUES = 1;
+        static final int ENTRIES = 2;
+
+        private final Map<String, Object> source = map;
+        private final Iterator<Entry<String, Object>> iterator = source.entrySet().iterator();
+        private final int kind;
+        private Entry<String, Object> last;
+
+        ViewIterator(int kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            Entry<String, Object> entry = iterator.next();
+            last = entry;
+            switch (kind) {
+                case KEYS:
+                    return (E) entry.getKey();
+                case VALUES:
+                    return (E) entry.getValue();
+                default:
+                    return (E) new ViewEntry(source, entry);
+            }
+        }
+
+        @Override
+        public void remove() {
+            hashed = false;
+            if (shared || map != source) {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                mutableMap().remove(last.getKey());
+                last = null;
+            } else {
+                iterator.remove();
+            }
+        }
+
+    }
+
+    private final class ViewEntry implements Entry<String, Object> {
+
+        private final Map<String, Object> source;
+        private final Entry<String, Object> entry;
+
+        ViewEntry(Map<String, Object> source, Entry<String, Object> entry) {
+            this.source = source;
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            hashed = false;
+            if (shared || map != source) {
+                return mutableMap().put(entry.getKey(), value);
+            }
+            return entry.setValue(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return Objects.equals(getKey(), e.getKey()) && TagType.deepEquals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ TagType.deepHashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+
     }
 
 }
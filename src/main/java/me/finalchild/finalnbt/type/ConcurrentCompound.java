@@ -0,0 +1,493 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.TagType;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe NBT compound tag for trees shared by several threads.
+ * It holds a {@link PersistentCompound}'s trie and swaps in a new one on each change with compare-and-set,
+ * so reads never lock and every change, compute and merge included, is atomic.
+ * Iteration, equals and hashCode see the entries as they were at one moment.
+ *
+ * {@link #snapshot()} reads the current trie in O(1), so it is consistent and never blocks writers.
+ * Values put in are stored the way a PersistentCompound stores them: compounds, lists and arrays are copied
+ * into their persistent variants, and array values are handed out as copies.
+ * The exceptions are nested ConcurrentCompounds and ConcurrentTypedLists, which stay live so they can be changed in place.
+ * A snapshot takes snapshots of those too, each consistent on its own. To snapshot a whole tree in one step,
+ * nest persistent values instead and change them with {@link #compute(String, BiFunction)}.
+ * Changes spanning several keys can be made atomic with {@link #update(UnaryOperator)}.
+ *
+ * The functions given to compute, merge and the like may be called more than once when threads race,
+ * so they MUST NOT have side effects. Null keys and values aren't supported.
+ */
+public class ConcurrentCompound extends Compound implements ConcurrentMap<String, Object> {
+
+    private final Live live;
+
+    public ConcurrentCompound() {
+        this(new Live());
+    }
+
+    private ConcurrentCompound(Live live) {
+        super(live);
+        this.live = live;
+    }
+
+    /**
+     * Deeply copy the map into a ConcurrentCompound.
+     * Nested compounds and lists are converted to their concurrent variants, and arrays are cloned.
+     * @param map The map to copy. The map's values MUST be NBT standard typed.
+     * @return A ConcurrentCompound with the same contents.
+     */
+    public static ConcurrentCompound copyOf(Map<String, ?> map) {
+        HashTrieMap.Transient<String, Object> trie = HashTrieMap.<String, Object>empty().asTransient();
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            trie.put(entry.getKey(), toConcurrent(entry.getValue()));
+        }
+        Live live = new Live();
+        live.root.set(trie.freeze());
+        return new ConcurrentCompound(live);
+    }
+
+    static Object toConcurrent(Object value) {
+        if (value instanceof Compound) {
+            return copyOf((Compound) value);
+        } else if (value instanceof TypedList) {
+            return ConcurrentTypedList.copyOf((TypedList<?>) value);
+        } else if (value instanceof Byte[]) {
+            return ((Byte[]) value).clone();
+        } else if (value instanceof Integer[]) {
+            return ((Integer[]) value).clone();
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Convert a value to what this may hold: a live concurrent container, or a persistent value.
+     */
+    private static Object toStored(Object value) {
+        Objects.requireNonNull(value, "value");
+        if (value instanceof ConcurrentCompound || value instanceof ConcurrentTypedList) {
+            return value;
+        }
+        return PersistentCompound.toPersistent(value);
+    }
+
+    private static boolean isLive(Object value) {
+        return value instanceof ConcurrentCompound || value instanceof ConcurrentTypedList;
+    }
+
+    /**
+     * Take an immutable snapshot without locking. The entries are read as they were at one moment, in O(1)
+     * unless nested concurrent containers need snapshots of their own.
+     * @return A PersistentCompound with the current contents.
+     */
+    public PersistentCompound snapshot() {
+        HashTrieMap<String, Object> trie = live.root.get();
+        HashTrieMap.Transient<String, Object> copy = null;
+        for (Map.Entry<String, Object> entry : trie.entrySet()) {
+            Object value = entry.getValue();
+            if (isLive(value)) {
+                if (copy == null) {
+                    copy = trie.asTransient();
+                }
+                copy.put(entry.getKey(), value instanceof ConcurrentCompound
+                        ? ((ConcurrentCompound) value).snapshot() : ((ConcurrentTypedList<?>) value).snapshot());
+            }
+        }
+        return PersistentCompound.of(copy == null ? trie : copy.freeze());
+    }
+
+    /**
+     * Atomically replace the whole compound with what the function returns for it,
+     * for changes spanning several keys, such as moving a value from one key to another.
+     * The function gets the current entries, with nested concurrent containers as they are.
+     * @param function The function.
+     * @return What the function returned in the attempt that took effect.
+     */
+    public PersistentCompound update(UnaryOperator<PersistentCompound> function) {
+        Objects.requireNonNull(function);
+        while (true) {
+            HashTrieMap<String, Object> current = live.root.get();
+            PersistentCompound result = function.apply(PersistentCompound.of(current));
+            if (result.trie() == current || live.root.compareAndSet(current, result.trie())) {
+                return result;
+            }
+        }
+    }
+
+    @Override
+    Compound share() {
+        return new Compound(new HashMap<>(live)).share();
+    }
+
+    /**
+     * Get a live view of this compound, whose changes are atomic too.
+     * @return The view.
+     */
+    @Override
+    public Map<String, Object> getMap() {
+        return live;
+    }
+
+    @Override
+    public HashMap getHashMap() {
+        return new HashMap<>(live);
+    }
+
+    @Override
+    public <T> T get(String key) {
+        return (T) live.get(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return live.get(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return live.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> m) {
+        for (Map.Entry<? extends String, ?> entry : m.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return live.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        live.root.set(HashTrieMap.empty());
+    }
+
+    @Override
+    public Object putIfAbsent(String key, Object value) {
+        return live.update(key, (k, v) -> v != null ? v : value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof String) || value == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        live.update((String) key, (k, v) -> {
+            removed[0] = v != null && TagType.deepEquals(v, value);
+            return removed[0] ? null : v;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean replace(String key, Object oldValue, Object newValue) {
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        boolean[] replaced = new boolean[1];
+        live.update(key, (k, v) -> {
+            replaced[0] = v != null && TagType.deepEquals(v, oldValue);
+            return replaced[0] ? newValue : v;
+        });
+        return replaced[0];
+    }
+
+    @Override
+    public Object replace(String key, Object value) {
+        Objects.requireNonNull(value);
+        return live.update(key, (k, v) -> v != null ? value : null);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        Object value = live.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Atomically compute the value of an absent key. Custom objects returned are serialized.
+     */
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        return live.update(key, (k, v) -> v != null ? v : mappingFunction.apply(k), true);
+    }
+
+    /**
+     * Atomically recompute the value of a present key. Custom objects returned are serialized.
+     */
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return live.update(key, (k, v) -> v != null ? remappingFunction.apply(k, v) : null, true);
+    }
+
+    /**
+     * Atomically recompute the value of a key. Custom objects returned are serialized.
+     */
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ?> remappingFunction) {
+        Objects.requireNonNull(remappingFunction);
+        return live.update(key, remappingFunction, true);
+    }
+
+    /**
+     * Atomically merge the value into the key's. Custom objects are serialized.
+     */
+    @Override
+    public Object merge(String key, Object value, BiFunction<? super Object, ? super Object, ?> remappingFunction) {
+        Objects.requireNonNull(value);
+        Objects.requireNonNull(remappingFunction);
+        return live.update(key, (k, v) -> v != null ? remappingFunction.apply(v, value) : value, true);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ?> function) {
+        Objects.requireNonNull(function);
+        while (true) {
+            HashTrieMap<String, Object> current = live.root.get();
+            HashTrieMap.Transient<String, Object> next = current.asTransient();
+            for (Map.Entry<String, Object> entry : current.entrySet()) {
+                next.put(entry.getKey(), toStored(function.apply(entry.getKey(), PersistentCompound.copyArray(entry.getValue()))));
+            }
+            if (live.root.compareAndSet(current, next.freeze())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Compares the entries deeply, as they were at one moment.
+     * @param o The object to compare with.
+     * @return Whether o is a map with deeply equal entries.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Map)) {
+            return false;
+        }
+        HashTrieMap<String, Object> trie = live.root.get();
+        Map<?, ?> m = (Map<?, ?>) o;
+        if (m.size() != trie.size()) {
+            return false;
+        }
+        for (Map.Entry<String, Object> entry : trie.entrySet()) {
+            if (!TagType.deepEquals(entry.getValue(), m.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the entries deeply. Not cached, as other threads may change the entries at any time.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (Map.Entry<String, Object> entry : live.root.get().entrySet()) {
+            h += entry.getKey().hashCode() ^ TagType.deepHashCode(entry.getValue());
+        }
+        return h;
+    }
+
+    /**
+     * The backing map: a view of the current trie, changed with compare-and-set.
+     */
+    private static final class Live extends AbstractMap<String, Object> {
+
+        final AtomicReference<HashTrieMap<String, Object>> root = new AtomicReference<>(HashTrieMap.empty());
+
+        /**
+         * Atomically replace the key's value with what the function returns for it, retrying when another change wins.
+         * @return The previous value.
+         */
+        Object update(String key, BiFunction<? super String, ? super Object, ?> function) {
+            return update(key, function, false);
+        }
+
+        /**
+         * @param returnNew Whether to return the new value instead of the previous one.
+         */
+        Object update(String key, BiFunction<? super String, ? super Object, ?> function, boolean returnNew) {
+            Objects.requireNonNull(key, "key");
+            while (true) {
+                HashTrieMap<String, Object> current = root.get();
+                Object old = current.get(key);
+                Object value = function.apply(key, PersistentCompound.copyArray(old));
+                Object stored = value == null ? null : toStored(value);
+                HashTrieMap<String, Object> next = stored == null ? current.minus(key) : current.plus(key, stored);
+                if (next == current || root.compareAndSet(current, next)) {
+                    return PersistentCompound.copyArray(returnNew ? stored : old);
+                }
+            }
+        }
+
+        @Override
+        public Object get(Object key) {
+            return PersistentCompound.copyArray(root.get().get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return root.get().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return root.get().size();
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            Object stored = toStored(FinalNBT.toTag(value));
+            return update(key, (k, v) -> stored);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return key instanceof String ? update((String) key, (k, v) -> null) : null;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            HashTrieMap<String, Object> trie = root.get();
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> iterator = trie.entrySet().iterator();
+                    return new Iterator<Entry<String, Object>>() {
+                        private String last;
+
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            Entry<String, Object> entry = iterator.next();
+                            last = entry.getKey();
+                            return new LiveEntry(entry.getKey(), entry.getValue());
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last == null) {
+                                throw new IllegalStateException();
+                            }
+                            Live.this.remove(last);
+                            last = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return trie.size();
+                }
+            };
+        }
+
+        /**
+         * An entry as it was when iterated. setValue puts the value in the compound.
+         */
+        private final class LiveEntry implements Entry<String, Object> {
+
+            private final String key;
+            private Object value;
+
+            LiveEntry(String key, Object value) {
+                this.key = key;
+                this.value = value;
+            }
+
+            @Override
+            public String getKey() {
+                return key;
+            }
+
+            @Override
+            public Object getValue() {
+                return PersistentCompound.copyArray(value);
+            }
+
+            @Override
+            public Object setValue(Object value) {
+                Object old = getValue();
+                Live.this.put(key, value);
+                this.value = Live.this.root.get().get(key);
+                return old;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                Entry<?, ?> e = (Entry<?, ?>) o;
+                return key.equals(e.getKey()) && TagType.deepEquals(value, e.getValue());
+            }
+
+            @Override
+            public int hashCode() {
+                return key.hashCode() ^ TagType.deepHashCode(value);
+            }
+
+            @Override
+            public String toString() {
+                return key + "=" + value;
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,241 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe NBT list tag backed by a CopyOnWriteArrayList, for trees shared by several threads.
+ * Reads and iteration don't lock and see the list as it was when they started; every change copies the list,
+ * so it suits lists that are read much more often than they are changed.
+ * replaceAll, removeIf, sort and addIfAbsent are atomic.
+ *
+ * Iterators don't support changes. To read or write a consistent copy of the tree while other threads change it,
+ * take a {@link #snapshot()}.
+ * @param <T> The type of the elements.
+ */
+public class ConcurrentTypedList<T> extends TypedList<T> {
+
+    private final CopyOnWriteArrayList<T> list;
+
+    public ConcurrentTypedList(TagType<T> type) {
+        this(type, new CopyOnWriteArrayList<>());
+    }
+
+    private ConcurrentTypedList(TagType<T> type, CopyOnWriteArrayList<T> list) {
+        super(type, list);
+        this.list = list;
+    }
+
+    /**
+     * Deeply copy the list into a ConcurrentTypedList.
+     * Nested compounds and lists are converted to their concurrent variants, and arrays are cloned.
+     * @param list The list to copy.
+     * @param <T> The type of the elements.
+     * @return A ConcurrentTypedList with the same contents.
+     */
+    public static <T> ConcurrentTypedList<T> copyOf(TypedList<T> list) {
+        ArrayList<T> copy = new ArrayList<>(list.size());
+        for (T e : list) {
+            copy.add((T) ConcurrentCompound.toConcurrent(e));
+        }
+        return new ConcurrentTypedList<>(list.getType(), new CopyOnWriteArrayList<>(copy));
+    }
+
+    /**
+     * Take an immutable snapshot of the tree without locking.
+     * The elements are read as they were at one moment, but changes made to nested compounds and lists
+     * while the snapshot is taken may or may not be seen.
+     * @return A PersistentTypedList with the current contents.
+     */
+    public PersistentTypedList<T> snapshot() {
+        return PersistentTypedList.copyOf(this);
+    }
+
+    @Override
+    TypedList<T> share() {
+        return new TypedList<>(getType(), new ArrayList<>(list)).share();
+    }
+
+    /**
+     * Get the backing list.
+     * @return The backing CopyOnWriteArrayList.
+     */
+    @Override
+    public List<T> getList() {
+        return list;
+    }
+
+    /**
+     * Add the element unless it is already in this list.
+     * @param element The element.
+     * @return Whether it was added.
+     */
+    public boolean addIfAbsent(T element) {
+        return list.addIfAbsent(element);
+    }
+
+    @Override
+    public boolean add(T t) {
+        return list.add(t);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return list.remove(o);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        return list.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        return list.addAll(index, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return list.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return list.retainAll(c);
+    }
+
+    @Override
+    public void clear() {
+        list.clear();
+    }
+
+    @Override
+    public T set(int index, T element) {
+        return list.set(index, element);
+    }
+
+    @Override
+    public void add(int index, T element) {
+        list.add(index, element);
+    }
+
+    @Override
+    public T remove(int index) {
+        return list.remove(index);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<T> operator) {
+        list.replaceAll(operator);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return list.removeIf(filter);
+    }
+
+    @Override
+    public void sort(Comparator<? super T> c) {
+        list.sort(c);
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        list.forEach(action);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return list.iterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator() {
+        return list.listIterator();
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        return list.listIterator(index);
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return list.subList(fromIndex, toIndex);
+    }
+
+    /**
+     * Compares the elements deeply, as they were at one moment.
+     * @param o The object to compare with.
+     * @return Whether o is a list with deeply equal elements.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof List)) {
+            return false;
+        }
+        Object[] elements = list.toArray();
+        List<?> other = (List<?>) o;
+        if (other.size() != elements.length) {
+            return false;
+        }
+        Iterator<?> it = other.iterator();
+        for (Object e : elements) {
+            if (!it.hasNext() || !TagType.deepEquals(e, it.next())) {
+                return false;
+            }
+        }
+        return !it.hasNext();
+    }
+
+    /**
+     * Hashes the elements deeply. Not cached, as other threads may change the elements at any time.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for (T e : list) {
+            h = 31 * h + TagType.deepHashCode(e);
+        }
+        return h;
+    }
+
+}
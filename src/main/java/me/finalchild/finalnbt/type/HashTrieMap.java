@@ -0,0 +1,518 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A persistent hash array mapped trie.
+ * Updates return a new map sharing every untouched node with this one.
+ * Null keys are not allowed.
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+final class HashTrieMap<K, V> extends AbstractMap<K, V> {
+
+    private static final HashTrieMap<?, ?> EMPTY = new HashTrieMap<>(BitmapNode.EMPTY, 0);
+    private static final Object NOT_FOUND = new Object();
+
+    private final Node root;
+    private final int size;
+
+    private HashTrieMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> HashTrieMap<K, V> empty() {
+        return (HashTrieMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Returns a map with the key associated with the value.
+     * @param key The key.
+     * @param value The value.
+     * @return A map with the mapping. This map if nothing changed.
+     */
+    HashTrieMap<K, V> plus(K key, V value) {
+        Box added = new Box();
+        Node newRoot = root.assoc(null, 0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new HashTrieMap<>(newRoot, added.value ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the key.
+     * @param key The key.
+     * @return A map without the key. This map if the key wasn't present.
+     */
+    HashTrieMap<K, V> minus(Object key) {
+        Box removed = new Box();
+        Node newRoot = root.without(null, 0, hash(key), key, removed);
+        if (!removed.value) {
+            return this;
+        }
+        return new HashTrieMap<>(newRoot == null ? BitmapNode.EMPTY : newRoot, size - 1);
+    }
+
+    /**
+     * Returns a transient copy of this map which may be edited in place until it is frozen.
+     * @return A transient map.
+     */
+    Transient<K, V> asTransient() {
+        return new Transient<>(root, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    /**
+     * A map whose nodes are edited in place while they are owned by it.
+     * freeze() hands out the current trie in O(1); later edits copy the nodes they touch.
+     */
+    static final class Transient<K, V> {
+
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Transient(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(Object key) {
+            Object value = root.find(0, hash(key), key);
+            return value == NOT_FOUND ? null : (V) value;
+        }
+
+        boolean containsKey(Object key) {
+            return root.find(0, hash(key), key) != NOT_FOUND;
+        }
+
+        int size() {
+            return size;
+        }
+
+        V put(K key, V value) {
+            V old = get(key);
+            Box added = new Box();
+            root = root.assoc(edit, 0, hash(key), key, value, added);
+            if (added.value) {
+                size++;
+            }
+            return old;
+        }
+
+        V remove(Object key) {
+            V old = get(key);
+            Box removed = new Box();
+            Node newRoot = root.without(edit, 0, hash(key), key, removed);
+            root = newRoot == null ? BitmapNode.EMPTY : newRoot;
+            if (removed.value) {
+                size--;
+            }
+            return old;
+        }
+
+        HashTrieMap<K, V> freeze() {
+            edit = new Object();
+            return new HashTrieMap<>(root, size);
+        }
+
+    }
+
+    private static final class Box {
+        boolean value;
+    }
+
+    private abstract static class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added);
+
+        abstract Node without(Object edit, int shift, int hash, Object key, Box removed);
+
+        /**
+         * @return The only key if this node holds exactly one entry and no sub-nodes, or null.
+         */
+        abstract Object singleKey();
+
+        abstract Object singleValue();
+
+    }
+
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        private final Object edit;
+        private int bitmap;
+        /**
+         * Pairs of (key, value), or (null, sub-node).
+         */
+        private Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return NOT_FOUND;
+            }
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                return ((Node) v).find(shift + 5, hash, key);
+            }
+            return key.equals(k) ? v : NOT_FOUND;
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            int bit = bitpos(hash, shift);
+            int idx = index(bit);
+            if ((bitmap & bit) != 0) {
+                Object k = array[2 * idx];
+                Object v = array[2 * idx + 1];
+                if (k == null) {
+                    Node n = ((Node) v).assoc(edit, shift + 5, hash, key, value, added);
+                    return n == v ? this : set(edit, 2 * idx + 1, n);
+                }
+                if (key.equals(k)) {
+                    return v == value ? this : set(edit, 2 * idx + 1, value);
+                }
+                added.value = true;
+                Node sub = createNode(edit, shift + 5, k, v, hash, key, value);
+                BitmapNode node = set(edit, 2 * idx, null);
+                node.array[2 * idx + 1] = sub;
+                return node;
+            }
+            added.value = true;
+            int n = Integer.bitCount(bitmap);
+            Object[] newArray = new Object[2 * (n + 1)];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            newArray[2 * idx] = key;
+            newArray[2 * idx + 1] = value;
+            System.arraycopy(array, 2 * idx, newArray, 2 * (idx + 1), 2 * (n - idx));
+            if (isEditable(edit)) {
+                this.array = newArray;
+                this.bitmap |= bit;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap | bit, newArray);
+        }
+
+        @Override
+        Node without(Object edit, int shift, int hash, Object key, Box removed) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object k = array[2 * idx];
+            Object v = array[2 * idx + 1];
+            if (k == null) {
+                Node n = ((Node) v).without(edit, shift + 5, hash, key, removed);
+                if (n == v) {
+                    return this;
+                }
+                if (n == null) {
+                    return removePair(edit, bit, idx);
+                }
+                Object single = n.singleKey();
+                if (single != null) {
+                    BitmapNode node = set(edit, 2 * idx, single);
+                    node.array[2 * idx + 1] = n.singleValue();
+                    return node;
+                }
+                return set(edit, 2 * idx + 1, n);
+            }
+            if (!key.equals(k)) {
+                return this;
+            }
+            removed.value = true;
+            return removePair(edit, bit, idx);
+        }
+
+        @Override
+        Object singleKey() {
+            return array.length == 2 ? array[0] : null;
+        }
+
+        @Override
+        Object singleValue() {
+            return array[1];
+        }
+
+        private boolean isEditable(Object edit) {
+            return edit != null && this.edit == edit;
+        }
+
+        private BitmapNode set(Object edit, int i, Object o) {
+            if (isEditable(edit)) {
+                array[i] = o;
+                return this;
+            }
+            Object[] newArray = array.clone();
+            newArray[i] = o;
+            return new BitmapNode(edit, bitmap, newArray);
+        }
+
+        private Node removePair(Object edit, int bit, int idx) {
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, 2 * idx);
+            System.arraycopy(array, 2 * (idx + 1), newArray, 2 * idx, newArray.length - 2 * idx);
+            if (isEditable(edit)) {
+                this.array = newArray;
+                this.bitmap ^= bit;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap ^ bit, newArray);
+        }
+
+        private static Node createNode(Object edit, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(edit, hash1, new Object[] {key1, value1, key2, value2});
+            }
+            Box box = new Box();
+            return new BitmapNode(edit, 0, new Object[0])
+                    .assoc(edit, shift, hash1, key1, value1, box)
+                    .assoc(edit, shift, hash2, key2, value2, box);
+        }
+
+    }
+
+    private static final class CollisionNode extends Node {
+
+        private final Object edit;
+        private final int hash;
+        private Object[] array;
+
+        CollisionNode(Object edit, int hash, Object[] array) {
+            this.edit = edit;
+            this.hash = hash;
+            this.array = array;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : array[i + 1];
+        }
+
+        @Override
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            if (hash != this.hash) {
+                return new BitmapNode(edit, bitpos(this.hash, shift), new Object[] {null, this})
+                        .assoc(edit, shift, hash, key, value, added);
+            }
+            int i = indexOf(key);
+            Object[] newArray;
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                newArray = array.clone();
+                newArray[i + 1] = value;
+            } else {
+                added.value = true;
+                newArray = Arrays.copyOf(array, array.length + 2);
+                newArray[array.length] = key;
+                newArray[array.length + 1] = value;
+            }
+            if (edit != null && this.edit == edit) {
+                this.array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, hash, newArray);
+        }
+
+        @Override
+        Node without(Object edit, int shift, int hash, Object key, Box removed) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            removed.value = true;
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, i);
+            System.arraycopy(array, i + 2, newArray, i, newArray.length - i);
+            if (edit != null && this.edit == edit) {
+                this.array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, this.hash, newArray);
+        }
+
+        @Override
+        Object singleKey() {
+            return array.length == 2 ? array[0] : null;
+        }
+
+        @Override
+        Object singleValue() {
+            return array[1];
+        }
+
+    }
+
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // A trie is at most 7 bitmap levels deep, plus a collision level.
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private int depth;
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            arrays[0] = arrayOf(root);
+            advance();
+        }
+
+        private static Object[] arrayOf(Node node) {
+            return node instanceof BitmapNode ? ((BitmapNode) node).array : ((CollisionNode) node).array;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            while (depth >= 0) {
+                Object[] array = arrays[depth];
+                int pos = positions[depth];
+                if (pos >= array.length) {
+                    arrays[depth--] = null;
+                    continue;
+                }
+                positions[depth] = pos + 2;
+                Object k = array[pos];
+                Object v = array[pos + 1];
+                if (k == null) {
+                    depth++;
+                    arrays[depth] = arrayOf((Node) v);
+                    positions[depth] = 0;
+                } else {
+                    next = new SimpleImmutableEntry<>((K) k, (V) v);
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            Entry<K, V> entry = next;
+            if (entry == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return entry;
+        }
+
+    }
+
+}
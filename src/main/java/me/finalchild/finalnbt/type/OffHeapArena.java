@@ -0,0 +1,229 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the native memory of the {@link OffHeapArray}s decoded while it is set on a read,
+ * and frees all of it when closed.
+ *
+ * Arrays of at least the threshold's size in bytes are decoded into native memory; smaller ones stay on the heap.
+ */
+public final class OffHeapArena implements Closeable {
+
+    private static final MethodHandle FREE = freer();
+
+    private final int threshold;
+    private final boolean readOnly;
+    private final List<OffHeapArray> arrays = new ArrayList<>();
+    private long allocated;
+    private boolean closed;
+
+    /**
+     * An arena of mutable arrays.
+     * @param threshold The size in bytes from which arrays go to native memory.
+     */
+    public OffHeapArena(int threshold) {
+        this(threshold, false);
+    }
+
+    /**
+     * @param threshold The size in bytes from which arrays go to native memory.
+     * @param readOnly Whether the arrays are read-only.
+     */
+    public OffHeapArena(int threshold, boolean readOnly) {
+        this.threshold = threshold;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @param bytes The size of an array in bytes.
+     * @return Whether an array of that size goes to native memory.
+     */
+    public boolean accepts(long bytes) {
+        return bytes >= threshold;
+    }
+
+    private synchronized ByteBuffer allocate(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("The arena has been closed");
+        }
+        allocated += bytes;
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private synchronized <T extends OffHeapArray> T own(T array) {
+        arrays.add(array);
+        return array;
+    }
+
+    /**
+     * Allocate a zeroed byte array.
+     * @param length The number of elements.
+     * @return The array.
+     */
+    public OffHeapByteArray allocateBytes(int length) {
+        return own(new OffHeapByteArray(allocate(length), readOnly));
+    }
+
+    /**
+     * Allocate a zeroed int array.
+     * @param length The number of elements.
+     * @return The array.
+     */
+    public OffHeapIntArray allocateInts(int length) {
+        if (length > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Too long: " + length);
+        }
+        return own(new OffHeapIntArray(allocate(length * 4), readOnly));
+    }
+
+    /**
+     * Decode the elements of a byte array, after its length.
+     * @param stream The stream to read from.
+     * @param length The number of elements.
+     * @return The array.
+     * @throws IOException IOException.
+     */
+    public OffHeapByteArray readBytes(DataInput stream, int length) throws IOException {
+        ByteBuffer buffer = allocate(length);
+        byte[] chunk = new byte[Math.min(length, 8192)];
+        try {
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                stream.readFully(chunk, 0, n);
+                buffer.put(chunk, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            free(buffer);
+            throw e;
+        }
+        buffer.clear();
+        return own(new OffHeapByteArray(buffer, readOnly));
+    }
+
+    /**
+     * Decode the elements of an int array, after its length.
+     * @param stream The stream to read from.
+     * @param length The number of elements.
+     * @return The array.
+     * @throws IOException IOException.
+     */
+    public OffHeapIntArray readInts(DataInput stream, int length) throws IOException {
+        if (length > Integer.MAX_VALUE / 4) {
+            throw new IOException("Too long: " + length);
+        }
+        ByteBuffer buffer = allocate(length * 4);
+        try {
+            for (int i = 0; i < length; i ++) {
+                buffer.putInt(i << 2, stream.readInt());
+            }
+        } catch (IOException | RuntimeException e) {
+            free(buffer);
+            throw e;
+        }
+        return own(new OffHeapIntArray(buffer, readOnly));
+    }
+
+    /**
+     * @return The number of bytes of native memory allocated so far.
+     */
+    public synchronized long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * Free the memory of every array of this arena.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (OffHeapArray array : arrays) {
+            ByteBuffer buffer = array.release();
+            if (buffer != null) {
+                free(buffer);
+            }
+        }
+        arrays.clear();
+    }
+
+    /**
+     * Free a direct buffer now rather than when it is collected, where the JVM allows it.
+     */
+    private static void free(ByteBuffer buffer) {
+        if (FREE == null) {
+            return;
+        }
+        try {
+            FREE.invokeExact(buffer);
+        } catch (Throwable t) {
+            // Leave it to the garbage collector.
+        }
+    }
+
+    private static MethodHandle freer() {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            // Java 9 and later.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandle invokeCleaner = lookup.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class));
+            return invokeCleaner.bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Try Java 8's way.
+        }
+        try {
+            ByteBuffer probe = ByteBuffer.allocateDirect(1);
+            Method cleanerMethod = probe.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(probe);
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            MethodHandle getCleaner = lookup.unreflect(cleanerMethod).asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            MethodHandle clean = lookup.unreflect(cleanMethod).asType(MethodType.methodType(void.class, Object.class));
+            return MethodHandles.filterArguments(clean, 0, getCleaner);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+}
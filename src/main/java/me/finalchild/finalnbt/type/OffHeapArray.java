@@ -0,0 +1,156 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+/**
+ * An array tag whose elements live in native memory, allocated by an {@link OffHeapArena}.
+ * The elements are stored big-endian, as in Java Edition NBT, so they are written without conversion.
+ *
+ * The memory is freed when the arena is closed. Using the array afterwards throws IllegalStateException.
+ * An OffHeapArray is not thread-safe, and MUST NOT be used while its arena is being closed.
+ */
+public abstract class OffHeapArray {
+
+    private ByteBuffer buffer;
+    private final boolean readOnly;
+
+    OffHeapArray(ByteBuffer buffer, boolean readOnly) {
+        this.buffer = buffer;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return The tag type this is a value of.
+     */
+    public abstract TagType<?> getType();
+
+    /**
+     * @return The number of elements.
+     */
+    public abstract int length();
+
+    /**
+     * @return The size of the elements in bytes.
+     */
+    public int byteSize() {
+        return buffer().capacity();
+    }
+
+    /**
+     * @return Whether the elements can't be set.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return Whether the arena has been closed.
+     */
+    public boolean isFreed() {
+        return buffer == null;
+    }
+
+    final ByteBuffer buffer() {
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            throw new IllegalStateException("The array's arena has been closed");
+        }
+        return buffer;
+    }
+
+    final ByteBuffer writableBuffer() {
+        if (readOnly) {
+            throw new ReadOnlyBufferException();
+        }
+        return buffer();
+    }
+
+    /**
+     * Drop the memory, returning it to be freed.
+     */
+    final ByteBuffer release() {
+        ByteBuffer buffer = this.buffer;
+        this.buffer = null;
+        return buffer;
+    }
+
+    /**
+     * Copy this to a heap array of the standard type.
+     * @return A Byte[] or an Integer[].
+     */
+    public abstract Object toHeap();
+
+    /**
+     * Write this as the payload of its tag type.
+     * @param stream The stream to write to.
+     * @throws IOException IOException.
+     */
+    public abstract void writeTo(DataOutput stream) throws IOException;
+
+    /**
+     * Copy the big-endian encoding of the elements into the array.
+     * @param dst The array.
+     * @param offset Where to start in the array.
+     */
+    public void copyTo(byte[] dst, int offset) {
+        ByteBuffer src = buffer().duplicate();
+        src.clear();
+        src.get(dst, offset, src.remaining());
+    }
+
+    /**
+     * Copy the big-endian encoding of the elements into the buffer, from native memory straight to it.
+     * @param dst The buffer.
+     * @param index Where to start in the buffer. Its position isn't changed.
+     */
+    public void copyTo(ByteBuffer dst, int index) {
+        ByteBuffer src = buffer().duplicate();
+        src.clear();
+        ByteBuffer target = dst.duplicate();
+        target.position(index);
+        target.put(src);
+    }
+
+    /**
+     * Compare the elements to those of another array, on or off the heap.
+     * @param other The other array.
+     * @return Whether the elements are equal.
+     */
+    public abstract boolean contentEquals(Object other);
+
+    /**
+     * Hash the elements the way Arrays.hashCode hashes the equal heap array.
+     * @return The hash code.
+     */
+    public abstract int contentHashCode();
+
+}
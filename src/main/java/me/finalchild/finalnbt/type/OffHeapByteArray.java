@@ -0,0 +1,117 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A byte array tag in native memory.
+ */
+public final class OffHeapByteArray extends OffHeapArray {
+
+    OffHeapByteArray(ByteBuffer buffer, boolean readOnly) {
+        super(buffer, readOnly);
+    }
+
+    @Override
+    public TagType<?> getType() {
+        return TagType.BYTE_ARRAY;
+    }
+
+    @Override
+    public int length() {
+        return buffer().capacity();
+    }
+
+    public byte get(int index) {
+        return buffer().get(index);
+    }
+
+    public void set(int index, byte value) {
+        writableBuffer().put(index, value);
+    }
+
+    @Override
+    public Byte[] toHeap() {
+        ByteBuffer buffer = buffer();
+        Byte[] array = new Byte[buffer.capacity()];
+        for (int i = 0; i < array.length; i ++) {
+            array[i] = buffer.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public void writeTo(DataOutput stream) throws IOException {
+        ByteBuffer src = buffer().duplicate();
+        src.clear();
+        stream.writeInt(src.remaining());
+        byte[] chunk = new byte[Math.min(src.remaining(), 8192)];
+        while (src.hasRemaining()) {
+            int n = Math.min(chunk.length, src.remaining());
+            src.get(chunk, 0, n);
+            stream.write(chunk, 0, n);
+        }
+    }
+
+    @Override
+    public boolean contentEquals(Object other) {
+        ByteBuffer buffer = buffer();
+        if (other instanceof OffHeapByteArray) {
+            ByteBuffer a = buffer.duplicate();
+            ByteBuffer b = ((OffHeapByteArray) other).buffer().duplicate();
+            a.clear();
+            b.clear();
+            return a.equals(b);
+        } else if (other instanceof Byte[]) {
+            Byte[] array = (Byte[]) other;
+            if (array.length != buffer.capacity()) {
+                return false;
+            }
+            for (int i = 0; i < array.length; i ++) {
+                if (array[i] == null || array[i] != buffer.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int contentHashCode() {
+        ByteBuffer buffer = buffer();
+        int hash = 1;
+        for (int i = 0; i < buffer.capacity(); i ++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An int array tag in native memory.
+ */
+public final class OffHeapIntArray extends OffHeapArray {
+
+    OffHeapIntArray(ByteBuffer buffer, boolean readOnly) {
+        super(buffer, readOnly);
+    }
+
+    @Override
+    public TagType<?> getType() {
+        return TagType.INT_ARRAY;
+    }
+
+    @Override
+    public int length() {
+        return buffer().capacity() >> 2;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return buffer().getInt(index << 2);
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        writableBuffer().putInt(index << 2, value);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+    }
+
+    @Override
+    public Integer[] toHeap() {
+        ByteBuffer buffer = buffer();
+        Integer[] array = new Integer[length()];
+        for (int i = 0; i < array.length; i ++) {
+            array[i] = buffer.getInt(i << 2);
+        }
+        return array;
+    }
+
+    @Override
+    public void writeTo(DataOutput stream) throws IOException {
+        ByteBuffer buffer = buffer();
+        int length = length();
+        stream.writeInt(length);
+        for (int i = 0; i < length; i ++) {
+            stream.writeInt(buffer.getInt(i << 2));
+        }
+    }
+
+    @Override
+    public boolean contentEquals(Object other) {
+        ByteBuffer buffer = buffer();
+        if (other instanceof OffHeapIntArray) {
+            ByteBuffer a = buffer.duplicate();
+            ByteBuffer b = ((OffHeapIntArray) other).buffer().duplicate();
+            a.clear();
+            b.clear();
+            return a.equals(b);
+        } else if (other instanceof Integer[]) {
+            Integer[] array = (Integer[]) other;
+            if (array.length != length()) {
+                return false;
+            }
+            for (int i = 0; i < array.length; i ++) {
+                if (array[i] == null || array[i] != buffer.getInt(i << 2)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int contentHashCode() {
+        ByteBuffer buffer = buffer();
+        int hash = 1;
+        for (int i = 0; i < length(); i ++) {
+            hash = 31 * hash + buffer.getInt(i << 2);
+        }
+        return hash;
+    }
+
+}
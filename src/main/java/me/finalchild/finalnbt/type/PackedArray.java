@@ -0,0 +1,319 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+/**
+ * Unsigned values of a fixed number of bits, such as the palette indices of block states, packed into the ints of an int array tag.
+ *
+ * In the spanning layout, values follow each other bit by bit, and one may span two ints.
+ * In the non-spanning layout, each int holds as many whole values as fit, and its remaining high bits are left unused.
+ * Within an int, values are packed from the lowest bit up.
+ *
+ * A PackedArray is not thread-safe.
+ */
+public final class PackedArray {
+
+    private final int[] words;
+    private final int bits;
+    private final int size;
+    private final boolean spanning;
+    private final int mask;
+    /**
+     * The number of values in an int in the non-spanning layout.
+     */
+    private final int perWord;
+
+    /**
+     * Create a packed array of zeroes.
+     * @param bits The number of bits of a value, from 1 to 32.
+     * @param size The number of values.
+     * @param spanning Whether values may span two ints.
+     */
+    public PackedArray(int bits, int size, boolean spanning) {
+        this(new int[wordsFor(bits, size, spanning)], bits, size, spanning);
+    }
+
+    private PackedArray(int[] words, int bits, int size, boolean spanning) {
+        if (bits < 1 || bits > 32) {
+            throw new IllegalArgumentException("Bits out of range: " + bits);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        if (words.length != wordsFor(bits, size, spanning)) {
+            throw new IllegalArgumentException(size + " values of " + bits + " bits need " + wordsFor(bits, size, spanning) + " ints, not " + words.length);
+        }
+        this.words = words;
+        this.bits = bits;
+        this.size = size;
+        this.spanning = spanning;
+        this.mask = bits == 32 ? -1 : (1 << bits) - 1;
+        this.perWord = 32 / bits;
+    }
+
+    /**
+     * View the ints as a packed array. Changes write through to them.
+     * @param words The ints.
+     * @param bits The number of bits of a value, from 1 to 32.
+     * @param size The number of values.
+     * @param spanning Whether values may span two ints.
+     * @return The packed array.
+     */
+    public static PackedArray wrap(int[] words, int bits, int size, boolean spanning) {
+        return new PackedArray(words, bits, size, spanning);
+    }
+
+    /**
+     * Copy an int array tag into a packed array.
+     * @param tag The int array tag.
+     * @param bits The number of bits of a value, from 1 to 32.
+     * @param size The number of values.
+     * @param spanning Whether values may span two ints.
+     * @return The packed array.
+     */
+    public static PackedArray of(Integer[] tag, int bits, int size, boolean spanning) {
+        int[] words = new int[tag.length];
+        for (int i = 0; i < words.length; i ++) {
+            words[i] = tag[i];
+        }
+        return new PackedArray(words, bits, size, spanning);
+    }
+
+    /**
+     * Copy an off-heap int array tag into a packed array.
+     * @param tag The int array tag.
+     * @param bits The number of bits of a value, from 1 to 32.
+     * @param size The number of values.
+     * @param spanning Whether values may span two ints.
+     * @return The packed array.
+     */
+    public static PackedArray of(OffHeapIntArray tag, int bits, int size, boolean spanning) {
+        int[] words = new int[tag.length()];
+        for (int i = 0; i < words.length; i ++) {
+            words[i] = tag.get(i);
+        }
+        return new PackedArray(words, bits, size, spanning);
+    }
+
+    /**
+     * The number of ints that hold the values.
+     * @param bits The number of bits of a value, from 1 to 32.
+     * @param size The number of values.
+     * @param spanning Whether values may span two ints.
+     * @return The number of ints.
+     */
+    public static int wordsFor(int bits, int size, boolean spanning) {
+        if (spanning) {
+            return (int) (((long) size * bits + 31) >>> 5);
+        }
+        int perWord = 32 / bits;
+        return (size + perWord - 1) / perWord;
+    }
+
+    /**
+     * The fewest bits that can hold the indices of a palette.
+     * @param paletteSize The number of entries in the palette.
+     * @return The number of bits, at least 1.
+     */
+    public static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isSpanning() {
+        return spanning;
+    }
+
+    /**
+     * @return The ints that hold the values. Changes write through.
+     */
+    public int[] getWords() {
+        return words;
+    }
+
+    /**
+     * @return An int array tag with a copy of the ints.
+     */
+    public Integer[] toTag() {
+        Integer[] tag = new Integer[words.length];
+        for (int i = 0; i < tag.length; i ++) {
+            tag[i] = words[i];
+        }
+        return tag;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        if (!spanning) {
+            int word = index / perWord;
+            return words[word] >>> (index - word * perWord) * bits & mask;
+        }
+        long offset = (long) index * bits;
+        int word = (int) (offset >>> 5);
+        int shift = (int) offset & 31;
+        int value = words[word] >>> shift;
+        if (shift + bits > 32) {
+            value |= words[word + 1] << 32 - shift;
+        }
+        return value & mask;
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        checkValue(value);
+        if (!spanning) {
+            int word = index / perWord;
+            int shift = (index - word * perWord) * bits;
+            words[word] = words[word] & ~(mask << shift) | value << shift;
+            return;
+        }
+        long offset = (long) index * bits;
+        int word = (int) (offset >>> 5);
+        int shift = (int) offset & 31;
+        words[word] = words[word] & ~(mask << shift) | value << shift;
+        if (shift + bits > 32) {
+            int low = 32 - shift;
+            words[word + 1] = words[word + 1] & ~(mask >>> low) | value >>> low;
+        }
+    }
+
+    /**
+     * Unpack every value, an int at a time.
+     * @param dst The array to unpack into, at least as long as this.
+     */
+    public void unpackTo(int[] dst) {
+        if (dst.length < size) {
+            throw new IndexOutOfBoundsException("The array holds " + dst.length + " of " + size + " values");
+        }
+        int[] words = this.words;
+        int bits = this.bits;
+        int mask = this.mask;
+        if (!spanning) {
+            int perWord = this.perWord;
+            int i = 0;
+            for (int w = 0; i < size; w ++) {
+                int word = words[w];
+                int end = Math.min(i + perWord, size);
+                while (i < end) {
+                    dst[i ++] = word & mask;
+                    word >>>= bits;
+                }
+            }
+            return;
+        }
+        long buffer = 0;
+        int buffered = 0;
+        int w = 0;
+        for (int i = 0; i < size; i ++) {
+            if (buffered < bits) {
+                buffer |= (words[w ++] & 0xFFFFFFFFL) << buffered;
+                buffered += 32;
+            }
+            dst[i] = (int) buffer & mask;
+            buffer >>>= bits;
+            buffered -= bits;
+        }
+    }
+
+    /**
+     * Pack every value, an int at a time. Unused bits are cleared.
+     * @param src The values, at least as many as this holds.
+     * @throws IllegalArgumentException If a value doesn't fit in the bits. The array is left untouched.
+     */
+    public void packFrom(int[] src) {
+        if (src.length < size) {
+            throw new IndexOutOfBoundsException("The array holds " + src.length + " of " + size + " values");
+        }
+        int outside = 0;
+        for (int i = 0; i < size; i ++) {
+            outside |= src[i];
+        }
+        checkValue(outside);
+        int[] words = this.words;
+        int bits = this.bits;
+        if (!spanning) {
+            int perWord = this.perWord;
+            int i = 0;
+            for (int w = 0; w < words.length; w ++) {
+                int word = 0;
+                int end = Math.min(i + perWord, size);
+                for (int shift = 0; i < end; shift += bits) {
+                    word |= src[i ++] << shift;
+                }
+                words[w] = word;
+            }
+            return;
+        }
+        long buffer = 0;
+        int buffered = 0;
+        int w = 0;
+        for (int i = 0; i < size; i ++) {
+            buffer |= (src[i] & 0xFFFFFFFFL) << buffered;
+            buffered += bits;
+            if (buffered >= 32) {
+                words[w ++] = (int) buffer;
+                buffer >>>= 32;
+                buffered -= 32;
+            }
+        }
+        if (buffered > 0) {
+            words[w] = (int) buffer;
+        }
+    }
+
+    /**
+     * Repack the values with another number of bits, such as after the palette grows.
+     * @param bits The new number of bits, from 1 to 32.
+     * @return A new packed array with the same layout.
+     * @throws IllegalArgumentException If a value doesn't fit in the new bits.
+     */
+    public PackedArray resize(int bits) {
+        int[] values = new int[size];
+        unpackTo(values);
+        PackedArray resized = new PackedArray(bits, size, spanning);
+        resized.packFrom(values);
+        return resized;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        }
+    }
+
+    private void checkValue(int value) {
+        if ((value & ~mask) != 0) {
+            throw new IllegalArgumentException("Doesn't fit in " + bits + " bits: " + Integer.toUnsignedString(value));
+        }
+    }
+
+}
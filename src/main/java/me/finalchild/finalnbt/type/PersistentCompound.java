@@ -0,0 +1,348 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.TagType;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable NBT compound tag backed by a hash array mapped trie.
+ * with() and without() return a new compound sharing all untouched structure with this one,
+ * so a PersistentCompound can be handed to another thread without copying or locking.
+ *
+ * The Map mutators throw UnsupportedOperationException.
+ * Use a {@link Builder} to edit it in place and take O(1) snapshots.
+ * Arrays can't be made read-only, so array values are handed out as copies.
+ */
+public class PersistentCompound extends Compound {
+
+    private static final PersistentCompound EMPTY = new PersistentCompound(HashTrieMap.empty());
+
+    private final HashTrieMap<String, Object> trie;
+    /**
+     * The deep hash, or 0 if not computed yet. Nothing in the tree can change, so it is computed once.
+     * Threads may race to compute it, but they all write the same int.
+     */
+    private int hash;
+
+    private PersistentCompound(HashTrieMap<String, Object> trie) {
+        super(trie);
+        this.trie = trie;
+    }
+
+    /**
+     * Wrap a trie holding only persistent values, in O(1).
+     */
+    static PersistentCompound of(HashTrieMap<String, Object> trie) {
+        return trie.isEmpty() ? EMPTY : new PersistentCompound(trie);
+    }
+
+    HashTrieMap<String, Object> trie() {
+        return trie;
+    }
+
+    public static PersistentCompound empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder(EMPTY);
+    }
+
+    /**
+     * Deeply copy the map into a PersistentCompound.
+     * Nested compounds and lists are converted to their persistent variants, and arrays are cloned.
+     * @param map The map to copy. The map's values MUST be NBT standard typed.
+     * @return A PersistentCompound with the same contents.
+     */
+    public static PersistentCompound copyOf(Map<String, ?> map) {
+        if (map instanceof PersistentCompound) {
+            return (PersistentCompound) map;
+        } else if (map instanceof ConcurrentCompound) {
+            return ((ConcurrentCompound) map).snapshot();
+        }
+        Builder builder = builder();
+        for (Map.Entry<String, ?> entry : map.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.snapshot();
+    }
+
+    /**
+     * Convert a value to what a persistent container may hold, so it isn't shared with the caller.
+     * Custom objects are serialized first.
+     */
+    static Object toPersistent(Object value) {
+        if (value == null) {
+            return null;
+        }
+        value = FinalNBT.toTag(value);
+        if (value instanceof ConcurrentCompound) {
+            return ((ConcurrentCompound) value).snapshot();
+        } else if (value instanceof ConcurrentTypedList) {
+            return ((ConcurrentTypedList<?>) value).snapshot();
+        } else if (value instanceof Compound) {
+            return copyOf((Compound) value);
+        } else if (value instanceof TypedList) {
+            return PersistentTypedList.copyOf((TypedList<?>) value);
+        } else if (value instanceof Byte[]) {
+            return ((Byte[]) value).clone();
+        } else if (value instanceof Integer[]) {
+            return ((Integer[]) value).clone();
+        } else if (value instanceof OffHeapArray) {
+            // It dies with its arena.
+            return ((OffHeapArray) value).toHeap();
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Copy the value if it is an array, which could be changed in place otherwise.
+     */
+    static Object copyArray(Object value) {
+        if (value instanceof Byte[]) {
+            return ((Byte[]) value).clone();
+        } else if (value instanceof Integer[]) {
+            return ((Integer[]) value).clone();
+        }
+        return value;
+    }
+
+    @Override
+    public <T> T get(String key) {
+        return (T) copyArray(super.get(key));
+    }
+
+    @Override
+    public Object get(Object key) {
+        return copyArray(super.get(key));
+    }
+
+    @Override
+    public Collection<Object> values() {
+        return new AbstractCollection<Object>() {
+            @Override
+            public Iterator<Object> iterator() {
+                Iterator<Entry<String, Object>> iterator = entrySet().iterator();
+                return new Iterator<Object>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Object next() {
+                        return iterator.next().getValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return trie.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> entries = super.entrySet();
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                Iterator<Entry<String, Object>> iterator = entries.iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        return new CopyingEntry(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return trie.size();
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Returns a compound with the key associated with the value.
+     * @param key The key.
+     * @param value The value. Custom objects are serialized, and mutable compounds, lists and arrays are copied.
+     * @return A compound with the mapping. This compound if nothing changed.
+     */
+    public PersistentCompound with(String key, Object value) {
+        HashTrieMap<String, Object> newTrie = trie.plus(key, toPersistent(value));
+        return newTrie == trie ? this : new PersistentCompound(newTrie);
+    }
+
+    /**
+     * Returns a compound without the key.
+     * @param key The key.
+     * @return A compound without the key. This compound if the key wasn't present.
+     */
+    public PersistentCompound without(String key) {
+        HashTrieMap<String, Object> newTrie = trie.minus(key);
+        return newTrie == trie ? this : new PersistentCompound(newTrie);
+    }
+
+    /**
+     * Start editing from this compound. This compound is not affected.
+     * @return A Builder holding this compound's contents.
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * An entry handing out copies of array values.
+     */
+    private static final class CopyingEntry implements Entry<String, Object> {
+
+        private final Entry<String, Object> entry;
+
+        CopyingEntry(Entry<String, Object> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public Object getValue() {
+            return copyArray(entry.getValue());
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return Objects.equals(getKey(), e.getKey()) && TagType.deepEquals(entry.getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(getKey()) ^ TagType.deepHashCode(entry.getValue());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + entry.getValue();
+        }
+
+    }
+
+    /**
+     * A mutable compound builder that edits its trie in place.
+     * snapshot() freezes the current state in O(1); the builder then copies only the nodes it touches next.
+     * A Builder is not thread-safe, but its snapshots are.
+     */
+    public static class Builder {
+
+        private HashTrieMap.Transient<String, Object> trie;
+
+        private Builder(PersistentCompound from) {
+            this.trie = from.trie.asTransient();
+        }
+
+        public <T> T get(String key) {
+            return (T) copyArray(trie.get(key));
+        }
+
+        public boolean containsKey(String key) {
+            return trie.containsKey(key);
+        }
+
+        public int size() {
+            return trie.size();
+        }
+
+        /**
+         * Associate the key with the value.
+         * @param key The key.
+         * @param value The value. Custom objects are serialized, and mutable compounds, lists and arrays are copied.
+         * @return The previous value, or null. Arrays are copied, as earlier snapshots may still hold them.
+         */
+        public Object put(String key, Object value) {
+            if (key == null) {
+                throw new NullPointerException("key");
+            }
+            return copyArray(trie.put(key, toPersistent(value)));
+        }
+
+        /**
+         * Remove the key's mapping.
+         * @param key The key.
+         * @return The previous value, or null. Arrays are copied, as earlier snapshots may still hold them.
+         */
+        public Object remove(String key) {
+            return copyArray(trie.remove(key));
+        }
+
+        /**
+         * Take an immutable snapshot of the current contents in O(1).
+         * @return A PersistentCompound.
+         */
+        public PersistentCompound snapshot() {
+            return new PersistentCompound(trie.freeze());
+        }
+
+    }
+
+}
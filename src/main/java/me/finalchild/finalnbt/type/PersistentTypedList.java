@@ -0,0 +1,308 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * An immutable NBT list tag backed by a persistent vector of 32-element chunks.
+ * Updates return a new list sharing all untouched chunks with this one.
+ *
+ * The List mutators throw UnsupportedOperationException.
+ * Use a {@link Builder} to edit it in place and take O(1) snapshots.
+ * Arrays can't be made read-only, so array elements are handed out as copies.
+ * @param <T> The type of the elements.
+ */
+public class PersistentTypedList<T> extends TypedList<T> {
+
+    private final PersistentVector<T> vector;
+    /**
+     * The deep hash, or 0 if not computed yet. Nothing in the tree can change, so it is computed once.
+     * Threads may race to compute it, but they all write the same int.
+     */
+    private int hash;
+
+    private PersistentTypedList(TagType<T> type, PersistentVector<T> vector) {
+        super(type, vector);
+        this.vector = vector;
+    }
+
+    public static <T> PersistentTypedList<T> empty(TagType<T> type) {
+        return new PersistentTypedList<>(type, PersistentVector.empty());
+    }
+
+    public static <T> Builder<T> builder(TagType<T> type) {
+        return new Builder<>(type, PersistentVector.empty());
+    }
+
+    /**
+     * Deeply copy the list into a PersistentTypedList.
+     * Nested compounds and lists are converted to their persistent variants, and arrays are cloned.
+     * @param list The list to copy.
+     * @param <T> The type of the elements.
+     * @return A PersistentTypedList with the same contents.
+     */
+    public static <T> PersistentTypedList<T> copyOf(TypedList<T> list) {
+        if (list instanceof PersistentTypedList) {
+            return (PersistentTypedList<T>) list;
+        }
+        Builder<T> builder = builder(list.getType());
+        for (T e : list) {
+            builder.add(e);
+        }
+        return builder.snapshot();
+    }
+
+    private boolean holdsArrays() {
+        return getType() == TagType.BYTE_ARRAY || getType() == TagType.INT_ARRAY;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public T get(int index) {
+        return (T) PersistentCompound.copyArray(vector.get(index));
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        ListIterator<T> iterator = super.listIterator(index);
+        if (!holdsArrays()) {
+            return iterator;
+        }
+        return new ListIterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return (T) PersistentCompound.copyArray(iterator.next());
+            }
+
+            @Override
+            public boolean hasPrevious() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public T previous() {
+                return (T) PersistentCompound.copyArray(iterator.previous());
+            }
+
+            @Override
+            public int nextIndex() {
+                return iterator.nextIndex();
+            }
+
+            @Override
+            public int previousIndex() {
+                return iterator.previousIndex();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void set(T t) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void add(T t) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return holdsArrays() ? copies().toArray() : super.toArray();
+    }
+
+    @Override
+    public <U> U[] toArray(U[] a) {
+        return holdsArrays() ? copies().toArray(a) : super.toArray(a);
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return holdsArrays() ? Collections.unmodifiableList(copies().subList(fromIndex, toIndex)) : super.subList(fromIndex, toIndex);
+    }
+
+    private List<T> copies() {
+        List<T> copies = new ArrayList<>(vector.size());
+        for (T e : this) {
+            copies.add(e);
+        }
+        return copies;
+    }
+
+    /**
+     * Returns a list with the element at the index replaced.
+     * @param index The index.
+     * @param element The new element. Mutable compounds, lists and arrays are copied.
+     * @return A list with the element replaced.
+     */
+    public PersistentTypedList<T> with(int index, T element) {
+        return new PersistentTypedList<>(getType(), vector.with(index, (T) PersistentCompound.toPersistent(element)));
+    }
+
+    /**
+     * Returns a list with the element appended.
+     * @param element The element. Mutable compounds, lists and arrays are copied.
+     * @return A list with the element appended.
+     */
+    public PersistentTypedList<T> withAdded(T element) {
+        return new PersistentTypedList<>(getType(), vector.plus((T) PersistentCompound.toPersistent(element)));
+    }
+
+    /**
+     * Returns a list without the last element.
+     * @return A list without the last element.
+     */
+    public PersistentTypedList<T> withoutLast() {
+        return new PersistentTypedList<>(getType(), vector.minusLast());
+    }
+
+    /**
+     * Returns a list without the element at the index.
+     * Removing anything but the last element rebuilds the elements after the index.
+     * @param index The index.
+     * @return A list without the element.
+     */
+    public PersistentTypedList<T> without(int index) {
+        int size = vector.size();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        PersistentVector.Transient<T> t = vector.asTransient();
+        for (int i = index; i < size - 1; i ++) {
+            t.set(i, vector.get(i + 1));
+        }
+        t.removeLast();
+        return new PersistentTypedList<>(getType(), t.freeze());
+    }
+
+    /**
+     * Start editing from this list. This list is not affected.
+     * @return A Builder holding this list's contents.
+     */
+    public Builder<T> toBuilder() {
+        return new Builder<>(getType(), vector);
+    }
+
+    /**
+     * A mutable list builder that edits its chunks in place.
+     * snapshot() freezes the current state in O(1); the builder then copies only the chunks it touches next.
+     * A Builder is not thread-safe, but its snapshots are.
+     * @param <T> The type of the elements.
+     */
+    public static class Builder<T> {
+
+        private final TagType<T> type;
+        private final PersistentVector.Transient<T> vector;
+
+        private Builder(TagType<T> type, PersistentVector<T> from) {
+            this.type = type;
+            this.vector = from.asTransient();
+        }
+
+        public TagType<T> getType() {
+            return type;
+        }
+
+        public T get(int index) {
+            return (T) PersistentCompound.copyArray(vector.get(index));
+        }
+
+        public int size() {
+            return vector.size();
+        }
+
+        /**
+         * Replace the element at the index.
+         * @param index The index.
+         * @param element The element. Mutable compounds, lists and arrays are copied.
+         * @return The previous element. Arrays are copied, as earlier snapshots may still hold them.
+         */
+        public T set(int index, T element) {
+            return (T) PersistentCompound.copyArray(vector.set(index, (T) PersistentCompound.toPersistent(element)));
+        }
+
+        /**
+         * Append the element.
+         * @param element The element. Mutable compounds, lists and arrays are copied.
+         */
+        public void add(T element) {
+            vector.add((T) PersistentCompound.toPersistent(element));
+        }
+
+        /**
+         * Remove the last element.
+         * @return The element. Arrays are copied, as earlier snapshots may still hold them.
+         */
+        public T removeLast() {
+            return (T) PersistentCompound.copyArray(vector.removeLast());
+        }
+
+        /**
+         * Take an immutable snapshot of the current contents in O(1).
+         * @return A PersistentTypedList.
+         */
+        public PersistentTypedList<T> snapshot() {
+            return new PersistentTypedList<>(type, vector.freeze());
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A persistent vector: a 32-way trie of chunks with a separate tail chunk.
+ * Updates return a new vector sharing every untouched chunk with this one.
+ * @param <T> The type of the elements.
+ */
+final class PersistentVector<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final Node EMPTY_NODE = new Node(null, new Object[32]);
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 5, EMPTY_NODE, new Object[0]);
+
+    private final int count;
+    private final int shift;
+    private final Node root;
+    private final Object[] tail;
+
+    private PersistentVector(int count, int shift, Node root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    private int tailOffset() {
+        return tailOffset(count);
+    }
+
+    private static int tailOffset(int count) {
+        return count < 32 ? 0 : ((count - 1) >>> 5) << 5;
+    }
+
+    private Object[] chunkFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Node node = root;
+        for (int level = shift; level > 0; level -= 5) {
+            node = (Node) node.array[(index >>> level) & 31];
+        }
+        return node.array;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return (T) chunkFor(index)[index & 31];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a vector with the element at the index replaced.
+     * @param index The index.
+     * @param element The new element.
+     * @return A vector with the element replaced.
+     */
+    PersistentVector<T> with(int index, T element) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & 31] = element;
+            return new PersistentVector<>(count, shift, root, newTail);
+        }
+        return new PersistentVector<>(count, shift, assoc(null, shift, root, index, element), tail);
+    }
+
+    /**
+     * Returns a vector with the element appended.
+     * @param element The element.
+     * @return A vector with the element appended.
+     */
+    PersistentVector<T> plus(T element) {
+        if (count - tailOffset() < 32) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(count + 1, shift, root, newTail);
+        }
+        Node tailNode = new Node(null, tail);
+        int newShift = shift;
+        Node newRoot;
+        if ((count >>> 5) > (1 << shift)) {
+            newRoot = new Node(null, new Object[32]);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += 5;
+        } else {
+            newRoot = pushTail(null, count, shift, root, tailNode);
+        }
+        return new PersistentVector<>(count + 1, newShift, newRoot, new Object[] {element});
+    }
+
+    /**
+     * Returns a vector without the last element.
+     * @return A vector without the last element.
+     */
+    PersistentVector<T> minusLast() {
+        if (count == 0) {
+            throw new IllegalStateException("Can't remove from an empty vector!");
+        }
+        if (count == 1) {
+            return empty();
+        }
+        if (count - tailOffset() > 1) {
+            return new PersistentVector<>(count - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        Object[] newTail = chunkFor(count - 2);
+        Node newRoot = popTail(null, count, shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > 5 && newRoot.array[1] == null) {
+            newRoot = (Node) newRoot.array[0];
+            newShift -= 5;
+        }
+        return new PersistentVector<>(count - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * Returns a transient copy of this vector which may be edited in place until it is frozen.
+     * @return A transient vector.
+     */
+    Transient<T> asTransient() {
+        return new Transient<>(this);
+    }
+
+    private static Node editable(Object edit, Node node) {
+        if (edit != null && node.edit == edit) {
+            return node;
+        }
+        return new Node(edit, node.array.clone());
+    }
+
+    private static Node assoc(Object edit, int level, Node node, int index, Object element) {
+        Node ret = editable(edit, node);
+        if (level == 0) {
+            ret.array[index & 31] = element;
+        } else {
+            int sub = (index >>> level) & 31;
+            ret.array[sub] = assoc(edit, level - 5, (Node) node.array[sub], index, element);
+        }
+        return ret;
+    }
+
+    private static Node newPath(Object edit, int level, Node node) {
+        if (level == 0) {
+            return node;
+        }
+        Node ret = new Node(edit, new Object[32]);
+        ret.array[0] = newPath(edit, level - 5, node);
+        return ret;
+    }
+
+    private static Node pushTail(Object edit, int count, int level, Node parent, Node tailNode) {
+        int sub = ((count - 1) >>> level) & 31;
+        Node ret = editable(edit, parent);
+        Node toInsert;
+        if (level == 5) {
+            toInsert = tailNode;
+        } else {
+            Node child = (Node) parent.array[sub];
+            toInsert = child != null
+                    ? pushTail(edit, count, level - 5, child, tailNode)
+                    : newPath(edit, level - 5, tailNode);
+        }
+        ret.array[sub] = toInsert;
+        return ret;
+    }
+
+    private static Node popTail(Object edit, int count, int level, Node node) {
+        int sub = ((count - 2) >>> level) & 31;
+        if (level > 5) {
+            Node newChild = popTail(edit, count, level - 5, (Node) node.array[sub]);
+            if (newChild == null && sub == 0) {
+                return null;
+            }
+            Node ret = editable(edit, node);
+            ret.array[sub] = newChild;
+            return ret;
+        } else if (sub == 0) {
+            return null;
+        } else {
+            Node ret = editable(edit, node);
+            ret.array[sub] = null;
+            return ret;
+        }
+    }
+
+    private static final class Node {
+
+        final Object edit;
+        final Object[] array;
+
+        Node(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+    }
+
+    /**
+     * A vector whose chunks are edited in place while they are owned by it.
+     * freeze() hands out the current trie in O(1); later edits copy the chunks they touch.
+     */
+    static final class Transient<T> {
+
+        private Object edit = new Object();
+        private int count;
+        private int shift;
+        private Node root;
+        private Object[] tail;
+
+        private Transient(PersistentVector<T> v) {
+            this.count = v.count;
+            this.shift = v.shift;
+            this.root = v.root;
+            this.tail = Arrays.copyOf(v.tail, 32);
+        }
+
+        int size() {
+            return count;
+        }
+
+        private Object[] chunkFor(int index) {
+            if (index >= tailOffset(count)) {
+                return tail;
+            }
+            Node node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = (Node) node.array[(index >>> level) & 31];
+            }
+            return node.array;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+            }
+            return (T) chunkFor(index)[index & 31];
+        }
+
+        T set(int index, T element) {
+            T old = get(index);
+            if (index >= tailOffset(count)) {
+                tail[index & 31] = element;
+            } else {
+                root = assoc(edit, shift, root, index, element);
+            }
+            return old;
+        }
+
+        void add(T element) {
+            int tailCount = count - tailOffset(count);
+            if (tailCount < 32) {
+                tail[tailCount] = element;
+                count++;
+                return;
+            }
+            Node tailNode = new Node(edit, tail);
+            tail = new Object[32];
+            tail[0] = element;
+            if ((count >>> 5) > (1 << shift)) {
+                Node newRoot = new Node(edit, new Object[32]);
+                newRoot.array[0] = root;
+                newRoot.array[1] = newPath(edit, shift, tailNode);
+                root = newRoot;
+                shift += 5;
+            } else {
+                root = pushTail(edit, count, shift, root, tailNode);
+            }
+            count++;
+        }
+
+        T removeLast() {
+            if (count == 0) {
+                throw new IllegalStateException("Can't remove from an empty vector!");
+            }
+            T old = get(count - 1);
+            if (count == 1) {
+                count = 0;
+                tail[0] = null;
+                return old;
+            }
+            int tailCount = count - tailOffset(count);
+            if (tailCount > 1) {
+                tail[tailCount - 1] = null;
+                count--;
+                return old;
+            }
+            Object[] newTail = Arrays.copyOf(chunkFor(count - 2), 32);
+            Node newRoot = popTail(edit, count, shift, root);
+            if (newRoot == null) {
+                newRoot = EMPTY_NODE;
+            }
+            if (shift > 5 && newRoot.array[1] == null) {
+                newRoot = (Node) newRoot.array[0];
+                shift -= 5;
+            }
+            root = newRoot;
+            tail = newTail;
+            count--;
+            return old;
+        }
+
+        PersistentVector<T> freeze() {
+            edit = new Object();
+            return new PersistentVector<>(count, shift, root, Arrays.copyOf(tail, count - tailOffset(count)));
+        }
+
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package me.finalchild.finalnbt.type;
+
+import me.finalchild.finalnbt.TagType;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A weak intern table that deduplicates identical values while decoding.
+ *
+ * Strings and small arrays are interned as they are. Small compounds and lists that only hold
+ * non-container values share one canonical backing map or list, and copy it before their first change.
+ * Interned arrays are shared as they are, so they MUST NOT be changed in place; copy them with TagType.deepCopy first.
+ *
+ * Canonical values are only weakly held, and dropped once nothing decoded refers to them anymore.
+ * An interner may be shared by several threads.
+ */
+public class TagInterner {
+
+    private final int maxEntries;
+    private final int maxArrayLength;
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private Ref[] table = new Ref[256];
+    private int size;
+
+    /**
+     * Creates an interner for compounds and lists of up to 16 entries and arrays of up to 256 elements.
+     */
+    public TagInterner() {
+        this(16, 256);
+    }
+
+    /**
+     * @param maxEntries Compounds and lists with more entries are not canonicalized.
+     * @param maxArrayLength Longer arrays are not interned.
+     */
+    public TagInterner(int maxEntries, int maxArrayLength) {
+        this.maxEntries = maxEntries;
+        this.maxArrayLength = maxArrayLength;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getMaxArrayLength() {
+        return maxArrayLength;
+    }
+
+    /**
+     * @return The number of canonical values currently held.
+     */
+    public synchronized int size() {
+        expunge();
+        return size;
+    }
+
+    public String intern(String value) {
+        return value == null ? null : (String) canonical(value, value.hashCode());
+    }
+
+    public Byte[] intern(Byte[] value) {
+        return value == null || value.length > maxArrayLength ? value : (Byte[]) canonical(value, Arrays.hashCode(value));
+    }
+
+    public Integer[] intern(Integer[] value) {
+        return value == null || value.length > maxArrayLength ? value : (Integer[]) canonical(value, Arrays.hashCode(value));
+    }
+
+    /**
+     * Intern the values of a freshly decoded compound, and canonicalize the compound itself
+     * if it is small enough and doesn't hold any compound, list or off-heap array.
+     * @param compound The compound. It MUST NOT be shared with anyone yet.
+     * @return A compound sharing the canonical backing map, or the same compound.
+     */
+    public Compound intern(Compound compound) {
+        if (compound instanceof PersistentCompound || compound instanceof ConcurrentCompound) {
+            return compound;
+        }
+        boolean leaves = true;
+        for (Map.Entry<String, Object> entry : compound.map().entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Compound || value instanceof TypedList || value instanceof OffHeapArray) {
+                leaves = false;
+            } else {
+                Object interned = internLeaf(value);
+                if (interned != value) {
+                    entry.setValue(interned);
+                }
+            }
+        }
+        if (!leaves || compound.size() > maxEntries) {
+            return compound;
+        }
+        Map<String, Object> map = compound.map();
+        Object canonical = canonical(map, compound.hashCode());
+        if (canonical == map) {
+            return compound.share();
+        }
+        return new Compound((Map<String, Object>) canonical).share();
+    }
+
+    /**
+     * Intern the elements of a freshly decoded list, and canonicalize the list itself
+     * if it is small enough and doesn't hold any compound or list.
+     * @param list The list. It MUST NOT be shared with anyone yet.
+     * @param <T> The type of the elements.
+     * @return A list sharing the canonical backing list, or the same list.
+     */
+    public <T> TypedList<T> intern(TypedList<T> list) {
+        TagType<T> type = list.getType();
+        if (type == TagType.COMPOUND || type == TagType.LIST || list instanceof PersistentTypedList || list instanceof ConcurrentTypedList) {
+            return list;
+        }
+        List<T> backing = list.list();
+        if (type == TagType.STRING || type == TagType.BYTE_ARRAY || type == TagType.INT_ARRAY) {
+            for (int i = 0; i < backing.size(); i ++) {
+                T e = backing.get(i);
+                if (e instanceof OffHeapArray) {
+                    // It dies with its arena, so it can't be canonical.
+                    return list;
+                }
+                Object interned = internLeaf(e);
+                if (interned != e) {
+                    backing.set(i, (T) interned);
+                }
+            }
+        }
+        if (backing.size() > maxEntries) {
+            return list;
+        }
+        Object canonical = canonical(backing, list.hashCode());
+        if (canonical == backing) {
+            return list.share();
+        }
+        return new TypedList<>(type, (List<T>) canonical).share();
+    }
+
+    private Object internLeaf(Object value) {
+        if (value instanceof String) {
+            return intern((String) value);
+        } else if (value instanceof Byte[]) {
+            return intern((Byte[]) value);
+        } else if (value instanceof Integer[]) {
+            return intern((Integer[]) value);
+        } else {
+            return value;
+        }
+    }
+
+    private synchronized Object canonical(Object value, int hash) {
+        expunge();
+        int index = hash & (table.length - 1);
+        for (Ref ref = table[index]; ref != null; ref = ref.next) {
+            if (ref.hash == hash) {
+                Object candidate = ref.get();
+                if (candidate != null && contentEquals(candidate, value)) {
+                    return candidate;
+                }
+            }
+        }
+        table[index] = new Ref(value, hash, table[index], queue);
+        if (++size > table.length * 3 / 4) {
+            resize();
+        }
+        return value;
+    }
+
+    private static boolean contentEquals(Object a, Object b) {
+        if (a instanceof Map) {
+            if (!(b instanceof Map)) {
+                return false;
+            }
+            Map<?, ?> m1 = (Map<?, ?>) a;
+            Map<?, ?> m2 = (Map<?, ?>) b;
+            if (m1.size() != m2.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : m1.entrySet()) {
+                Object value = m2.get(entry.getKey());
+                if (value == null || !TagType.deepEquals(entry.getValue(), value)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a instanceof List) {
+            if (!(b instanceof List) || ((List<?>) a).size() != ((List<?>) b).size()) {
+                return false;
+            }
+            Iterator<?> it = ((List<?>) b).iterator();
+            for (Object e : (List<?>) a) {
+                if (!TagType.deepEquals(e, it.next())) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a.getClass() != b.getClass()) {
+            return false;
+        } else {
+            return TagType.deepEquals(a, b);
+        }
+    }
+
+    private void resize() {
+        Ref[] newTable = new Ref[table.length * 2];
+        for (Ref head : table) {
+            for (Ref ref = head; ref != null; ) {
+                Ref next = ref.next;
+                int index = ref.hash & (newTable.length - 1);
+                ref.next = newTable[index];
+                newTable[index] = ref;
+                ref = next;
+            }
+        }
+        table = newTable;
+    }
+
+    private void expunge() {
+        Object cleared;
+        while ((cleared = queue.poll()) != null) {
+            Ref ref = (Ref) cleared;
+            int index = ref.hash & (table.length - 1);
+            Ref prev = null;
+            for (Ref r = table[index]; r != null; prev = r, r = r.next) {
+                if (r == ref) {
+                    if (prev == null) {
+                        table[index] = r.next;
+                    } else {
+                        prev.next = r.next;
+                    }
+                    size--;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static final class Ref extends WeakReference<Object> {
+
+        final int hash;
+        Ref next;
+
+        Ref(Object referent, int hash, Ref next, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+
+    }
+
+}
@@ -28,10 +28,13 @@ import com.google.gson.*;
 import me.finalchild.finalnbt.FinalNBT;
 import me.finalchild.finalnbt.TagType;
 import me.finalchild.finalnbt.exception.UnsupportedTypeException;
+import me.finalchild.finalnbt.serialize.NBTSerializer;
+import me.finalchild.finalnbt.snbt.SNBTWriter;
 
 import java.lang.reflect.Type;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * NBT List tag.
@@ -39,8 +42,27 @@ import java.util.stream.Collectors;
  */
 public class TypedList<T> implements List<T> {
 
+    /**
+     * The number of elements from which the bulk serialization methods taking a ForkJoinPool split their work.
+     */
+    public static final int PARALLEL_THRESHOLD = 2048;
+
     private final TagType<T> type;
-    private final List<T> list;
+    private List<T> list;
+
+    /**
+     * Only cached for lists of non-container, non-array types, as those can change without us knowing.
+     */
+    private int hash;
+    /**
+     * Volatile, so a thread that sees it set also sees the hash written before it.
+     */
+    private volatile boolean hashed;
+
+    /**
+     * Whether the backing list may be shared with other lists. If so, it is copied before the first change.
+     */
+    private boolean shared;
 
     public TypedList(TagType<T> type) {
         this(type, new ArrayList<>());
@@ -51,12 +73,67 @@ public class TypedList<T> implements List<T> {
         this.list = list;
     }
 
+    /**
+     * Returns a copy-on-write list sharing this list's backing list.
+     * Both lists copy the backing list before their next change.
+     */
+    TypedList<T> share() {
+        shared = true;
+        TypedList<T> typedList = new TypedList<>(type, list);
+        typedList.shared = true;
+        typedList.hash = hash;
+        typedList.hashed = hashed;
+        return typedList;
+    }
+
+    /**
+     * For internal use only. The backing list, which must not be changed.
+     */
+    List<T> list() {
+        return list;
+    }
+
+    private List<T> mutableList() {
+        if (shared) {
+            list = new ArrayList<>(list);
+            shared = false;
+        }
+        return list;
+    }
+
     public TagType<T> getType() {
         return type;
     }
 
+    /**
+     * Get the backing list.
+     * Changes made later through a kept reference aren't seen by the cached hash code.
+     * @return The backing list.
+     */
     public List<T> getList() {
-        return list;
+        hashed = false;
+        return mutableList();
+    }
+
+    /**
+     * Deeply copy this list. Primitives and strings are shared, arrays are copied,
+     * and nested compounds and lists are deeply copied into mutable ones.
+     * @return A mutable deep copy.
+     */
+    public TypedList<T> deepCopy() {
+        ArrayList<T> copy;
+        if (type == TagType.COMPOUND || type == TagType.LIST || type == TagType.BYTE_ARRAY || type == TagType.INT_ARRAY) {
+            copy = new ArrayList<>(list.size());
+            for (T e : list) {
+                copy.add((T) TagType.deepCopy(e));
+            }
+        } else {
+            copy = new ArrayList<>(list);
+        }
+        TypedList<T> typedList = new TypedList<>(type, copy);
+        typedList.hash = hash;
+        typedList.hashed = hashed;
+        return typedList;
     }
 
     /**
@@ -66,7 +143,24 @@ public class TypedList<T> implements List<T> {
      * @return The TypedList of NBT Compound tags.
      */
     public static <T> TypedList<Compound> serialize(List<T> list) {
-        return new TypedList<>(TagType.COMPOUND, list.stream().map(FinalNBT::serialize).collect(Collectors.toList()));
+        return serialize(list, null);
+    }
+
+    /**
+     * Serializes the elements to NBT Compound tags, splitting the work across the pool
+     * if there are at least {@link #PARALLEL_THRESHOLD} elements. The order is kept.
+     * The serializer is resolved once per run of elements of the same class.
+     * The serializers MUST be thread-safe if a pool is given.
+     * @param list The list.
+     * @param pool The pool, or null to serialize on this thread.
+     * @param <T> The type of the list.
+     * @return The TypedList of NBT Compound tags.
+     */
+    public static <T> TypedList<Compound> serialize(List<T> list, ForkJoinPool pool) {
+        List<Object> source = list instanceof RandomAccess ? (List<Object>) list : new ArrayList<>(list);
+        List<Compound> result = new ArrayList<>(Collections.nCopies(source.size(), null));
+        convert(new Convert(source, (List) result, null, 0, source.size()), pool);
+        return new TypedList<>(TagType.COMPOUND, result);
     }
 
     /**
@@ -77,10 +171,89 @@ public class TypedList<T> implements List<T> {
      * @return The deserialized List.
      */
     public <U> List<U> deserialize(Class<U> type) {
+        return deserialize(type, null);
+    }
+
+    /**
+     * Deserializes the elements to the specified type, splitting the work across the pool
+     * if there are at least {@link #PARALLEL_THRESHOLD} elements. The order is kept.
+     * The element type of this TypedList MUST be Compound.
+     * The serializer MUST be thread-safe if a pool is given.
+     * @param type The custom type.
+     * @param pool The pool, or null to deserialize on this thread.
+     * @param <U> The custom type.
+     * @return The deserialized List.
+     */
+    public <U> List<U> deserialize(Class<U> type, ForkJoinPool pool) {
         if (this.type != TagType.COMPOUND) {
             throw new UnsupportedOperationException();
         }
-        return list.stream().map(e -> FinalNBT.deserialize((Compound) e, type)).collect(Collectors.toList());
+        List<U> result = new ArrayList<>(Collections.nCopies(list.size(), null));
+        convert(new Convert((List<Object>) list, (List) result, FinalNBT.resolveSerializer(type), 0, list.size()), pool);
+        return result;
+    }
+
+    private static void convert(Convert task, ForkJoinPool pool) {
+        if (pool == null || task.to - task.from < PARALLEL_THRESHOLD) {
+            task.run(task.from, task.to);
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    /**
+     * Serializes or deserializes a range of elements into the same indices of a presized list, splitting it while it is large.
+     */
+    private static class Convert extends RecursiveAction {
+
+        private static final int LEAF = 512;
+
+        final List<Object> source;
+        final List<Object> target;
+        /**
+         * The serializer to deserialize with, or null to serialize.
+         */
+        final NBTSerializer<Object> deserializer;
+        final int from;
+        final int to;
+
+        Convert(List<Object> source, List<Object> target, NBTSerializer<?> deserializer, int from, int to) {
+            this.source = source;
+            this.target = target;
+            this.deserializer = (NBTSerializer<Object>) deserializer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF) {
+                run(from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Convert(source, target, deserializer, from, middle), new Convert(source, target, deserializer, middle, to));
+            }
+        }
+
+        void run(int from, int to) {
+            if (deserializer != null) {
+                for (int i = from; i < to; i ++) {
+                    target.set(i, deserializer.deserialize((Compound) source.get(i)));
+                }
+                return;
+            }
+            Class<?> last = null;
+            NBTSerializer<Object> serializer = null;
+            for (int i = from; i < to; i ++) {
+                Object e = source.get(i);
+                if (e.getClass() != last) {
+                    last = e.getClass();
+                    serializer = (NBTSerializer<Object>) FinalNBT.resolveSerializer(last);
+                }
+                target.set(i, serializer.serialize(e));
+            }
+        }
+
     }
 
     @Override
@@ -100,7 +273,7 @@ public class TypedList<T> implements List<T> {
 
     @Override
     public Iterator<T> iterator() {
-        return list.iterator();
+        return new ViewIterator(0);
     }
 
     @Override
@@ -115,12 +288,14 @@ public class TypedList<T> implements List<T> {
 
     @Override
     public boolean add(T t) {
-        return list.add(t);
+        hashed = false;
+        return mutableList().add(t);
     }
 
     @Override
     public boolean remove(Object o) {
-        return list.remove(o);
+        hashed = false;
+        return mutableList().remove(o);
     }
 
     @Override
@@ -130,27 +305,37 @@ public class TypedList<T> implements List<T> {
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
-        return list.addAll(c);
+        hashed = false;
+        return mutableList().addAll(c);
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends T> c) {
-        return list.addAll(index, c);
+        hashed = false;
+        return mutableList().addAll(index, c);
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        return list.removeAll(c);
+        hashed = false;
+        return mutableList().removeAll(c);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        return list.retainAll(c);
+        hashed = false;
+        return mutableList().retainAll(c);
     }
 
     @Override
     public void clear() {
-        list.clear();
+        hashed = false;
+        if (shared) {
+            list = new ArrayList<>();
+            shared = false;
+        } else {
+            list.clear();
+        }
     }
 
     @Override
@@ -160,17 +345,20 @@ public class TypedList<T> implements List<T> {
 
     @Override
     public T set(int index, T element) {
-        return list.set(index, element);
+        hashed = false;
+        return mutableList().set(index, element);
     }
 
     @Override
     public void add(int index, T element) {
-        list.add(index, element);
+        hashed = false;
+        mutableList().add(index, element);
     }
 
     @Override
     public T remove(int index) {
-        return list.remove(index);
+        hashed = false;
+        return mutableList().remove(index);
     }
 
     @Override
@@ -185,17 +373,203 @@ public class TypedList<T> implements List<T> {
 
     @Override
     public ListIterator<T> listIterator() {
-        return list.listIterator();
+        return new ViewIterator(0);
     }
 
     @Override
     public ListIterator<T> listIterator(int index) {
-        return list.listIterator(index);
+        return new ViewIterator(index);
     }
 
     @Override
     public List<T> subList(int fromIndex, int toIndex) {
-        return list.subList(fromIndex, toIndex);
+        return new View().subList(fromIndex, toIndex);
+    }
+
+    /**
+     * Compares the elements deeply, following the List contract. Array elements are compared by their elements.
+     * @param o The object to compare with.
+     * @return Whether o is a list with deeply equal elements.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof List)) {
+            return false;
+        }
+        List<?> other = (List<?>) o;
+        if (other.size() != list.size()) {
+            return false;
+        }
+        if (o instanceof TypedList) {
+            TypedList<?> t = (TypedList<?>) o;
+            if (hashed && t.hashed && hash != t.hash) {
+                return false;
+            }
+        }
+        Iterator<?> it = other.iterator();
+        for (T e : list) {
+            if (!TagType.deepEquals(e, it.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the elements deeply, following the List contract. Array elements are hashed by their elements.
+     * The hash is cached until the next change, unless the elements are compounds, lists or arrays.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        if (hashed) {
+            return hash;
+        }
+        int h = 1;
+        for (T e : list) {
+            h = 31 * h + TagType.deepHashCode(e);
+        }
+        if (type != TagType.COMPOUND && type != TagType.LIST && type != TagType.BYTE_ARRAY && type != TagType.INT_ARRAY) {
+            hash = h;
+            hashed = true;
+        }
+        return h;
+    }
+
+    /**
+     * @return This list as SNBT.
+     */
+    @Override
+    public String toString() {
+        return SNBTWriter.toString(this);
+    }
+
+    /**
+     * Iterates the backing list. Changes drop the cached hash.
+     * If the list has been shared or replaced since the iteration started,
+     * the iteration moves over to this list's own copy before the change.
+     */
+    private final class ViewIterator implements ListIterator<T> {
+
+        private static final int NONE = 0;
+        private static final int NEXT = 1;
+        private static final int PREVIOUS = 2;
+
+        private List<T> source;
+        private ListIterator<T> iterator;
+        private int last = NONE;
+
+        ViewIterator(int index) {
+            this.source = list;
+            this.iterator = source.listIterator(index);
+        }
+
+        private void prepare() {
+            hashed = false;
+            if (shared || list != source) {
+                int cursor = iterator.nextIndex();
+                source = mutableList();
+                if (last == NEXT) {
+                    iterator = source.listIterator(cursor - 1);
+                    iterator.next();
+                } else if (last == PREVIOUS) {
+                    iterator = source.listIterator(cursor + 1);
+                    iterator.previous();
+                } else {
+                    iterator = source.listIterator(cursor);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            T next = iterator.next();
+            last = NEXT;
+            return next;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return iterator.hasPrevious();
+        }
+
+        @Override
+        public T previous() {
+            T previous = iterator.previous();
+            last = PREVIOUS;
+            return previous;
+        }
+
+        @Override
+        public int nextIndex() {
+            return iterator.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return iterator.previousIndex();
+        }
+
+        @Override
+        public void remove() {
+            prepare();
+            iterator.remove();
+            last = NONE;
+        }
+
+        @Override
+        public void set(T t) {
+            prepare();
+            iterator.set(t);
+        }
+
+        @Override
+        public void add(T t) {
+            prepare();
+            iterator.add(t);
+            last = NONE;
+        }
+
+    }
+
+    /**
+     * Routes the changes made through sub lists back to this list.
+     */
+    private final class View extends AbstractList<T> {
+
+        @Override
+        public T get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public T set(int index, T element) {
+            return TypedList.this.set(index, element);
+        }
+
+        @Override
+        public void add(int index, T element) {
+            TypedList.this.add(index, element);
+        }
+
+        @Override
+        public T remove(int index) {
+            return TypedList.this.remove(index);
+        }
+
     }
 
     public static class TypedListSerializer implements JsonSerializer<TypedList>, JsonDeserializer<TypedList> {
@@ -0,0 +1,197 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.ConcurrentCompound;
+import me.finalchild.finalnbt.type.PersistentCompound;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks that ConcurrentCompound's changes are atomic when threads race,
+ * and that snapshots see the entries as they were at one moment while writers keep changing them.
+ */
+public class ConcurrentCompoundTest {
+
+    private static final int THREADS = 8;
+    private static final int KEYS = 16;
+    private static final int ROUNDS = 20000;
+
+    public static void main(String[] args) throws InterruptedException {
+        mergeAndCompute();
+        putIfAbsent();
+        updateAcrossKeys();
+        snapshots();
+        System.out.println("ConcurrentCompound: OK");
+    }
+
+    private static void mergeAndCompute() throws InterruptedException {
+        ConcurrentCompound compound = new ConcurrentCompound();
+        race(thread -> {
+            for (int i = 0; i < ROUNDS; i ++) {
+                String key = "k" + (i + thread) % KEYS;
+                compound.merge(key, 1, (a, b) -> (Integer) a + (Integer) b);
+                compound.compute("c" + i % KEYS, (k, v) -> v == null ? 1 : (Integer) v + 1);
+            }
+        });
+        int merged = 0;
+        int computed = 0;
+        for (int i = 0; i < KEYS; i ++) {
+            merged += compound.<Integer>get("k" + i);
+            computed += compound.<Integer>get("c" + i);
+            check(compound.<Integer>get("c" + i) == THREADS * ROUNDS / KEYS, "compute counted every call on c" + i);
+        }
+        check(merged == THREADS * ROUNDS, "merge counted every call: " + merged);
+        check(computed == THREADS * ROUNDS, "compute counted every call: " + computed);
+    }
+
+    private static void putIfAbsent() throws InterruptedException {
+        ConcurrentCompound compound = new ConcurrentCompound();
+        AtomicInteger winners = new AtomicInteger();
+        race(thread -> {
+            for (int i = 0; i < 1000; i ++) {
+                if (compound.putIfAbsent("k" + i, thread) == null) {
+                    winners.incrementAndGet();
+                }
+            }
+        });
+        check(winners.get() == 1000, "exactly one thread put each key: " + winners.get());
+        check(compound.size() == 1000, "every key was put");
+    }
+
+    private static void updateAcrossKeys() throws InterruptedException {
+        ConcurrentCompound compound = new ConcurrentCompound();
+        compound.put("a", THREADS * ROUNDS);
+        compound.put("b", 0);
+        compound.put("moves", 0);
+        race(thread -> {
+            for (int i = 0; i < ROUNDS; i ++) {
+                compound.update(c -> c.with("a", c.<Integer>get("a") - 1)
+                        .with("b", c.<Integer>get("b") + 1)
+                        .with("moves", c.<Integer>get("moves") + 1));
+            }
+        });
+        check(compound.<Integer>get("a") == 0, "every update moved one from a: " + compound.get("a"));
+        check(compound.<Integer>get("b") == THREADS * ROUNDS, "every update moved one to b: " + compound.get("b"));
+        check(compound.<Integer>get("moves") == THREADS * ROUNDS, "every update took effect once: " + compound.get("moves"));
+    }
+
+    private static void snapshots() throws InterruptedException {
+        ConcurrentCompound compound = new ConcurrentCompound();
+        compound.put("a", 1000);
+        compound.put("b", 0);
+        for (int i = 0; i < KEYS; i ++) {
+            compound.put("g" + i, 0);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger snapshots = new AtomicInteger();
+        List<PersistentCompound> kept = new ArrayList<>();
+        List<Compound> copies = new ArrayList<>();
+        race(thread -> {
+            if (thread < THREADS / 2) {
+                // Writers: move between a and b, and bump every g to the same generation, each in one update.
+                for (int i = 0; i < ROUNDS / 4; i ++) {
+                    int generation = thread * ROUNDS + i;
+                    compound.update(c -> {
+                        PersistentCompound result = c.with("a", c.<Integer>get("a") - 1).with("b", c.<Integer>get("b") + 1);
+                        for (int k = 0; k < KEYS; k ++) {
+                            result = result.with("g" + k, generation);
+                        }
+                        return result;
+                    });
+                    compound.update(c -> c.with("a", c.<Integer>get("a") + 1).with("b", c.<Integer>get("b") - 1));
+                }
+                done.set(true);
+            } else {
+                // Readers: every snapshot keeps the invariants, and stays as it was.
+                while (!done.get() || snapshots.get() < 100) {
+                    PersistentCompound snapshot = compound.snapshot();
+                    check(snapshot.<Integer>get("a") + snapshot.<Integer>get("b") == 1000, "a snapshot sees a and b at one moment");
+                    int generation = snapshot.<Integer>get("g0");
+                    for (int k = 1; k < KEYS; k ++) {
+                        check(snapshot.<Integer>get("g" + k) == generation, "a snapshot sees every g at one moment");
+                    }
+                    if (snapshots.incrementAndGet() % 100 == 0) {
+                        synchronized (kept) {
+                            kept.add(snapshot);
+                            copies.add(new Compound(new HashMap<>(snapshot)));
+                        }
+                    }
+                }
+            }
+        });
+        check(compound.<Integer>get("a") == 1000 && compound.<Integer>get("b") == 0, "the writers left a and b as they were");
+        for (int i = 0; i < kept.size(); i ++) {
+            check(kept.get(i).equals(copies.get(i)), "snapshot " + i + " didn't change after it was taken");
+        }
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    /**
+     * Run the task on several threads at once, and rethrow the first failure.
+     */
+    private static void race(Task task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t ++) {
+            int thread = t;
+            Thread th = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(thread);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            th.start();
+            threads.add(th);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() instanceof AssertionError) {
+            throw (AssertionError) failure.get();
+        } else if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.LimitException;
+import me.finalchild.finalnbt.io.NBTDialect;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks that every dialect round trips, that its own decode loop agrees with TagType's,
+ * that Bedrock's network varints encode negative numbers as zigzag, and that truncated input fails.
+ */
+public class NBTDialectTest {
+
+    public static void main(String[] args) throws IOException {
+        Compound compound = FinalNBT.readNBT(new FileInputStream("bigtest.nbt")).getValue();
+        compound.put("negativeInt", -1);
+        compound.put("minInt", Integer.MIN_VALUE);
+        compound.put("minLong", Long.MIN_VALUE);
+        compound.put("negativeInts", new Integer[]{-1, 0, Integer.MIN_VALUE, Integer.MAX_VALUE});
+        compound.put("emptyList", new TypedList<>(TagType.END));
+        TypedList<String> strings = new TypedList<>(TagType.STRING);
+        strings.add("\u0000");
+        strings.add("\u00e9\u4e2d\ud834\udd1e");
+        compound.put("strings", strings);
+        NamedTag<Compound> tag = new NamedTag<>("root", compound);
+
+        for (NBTDialect dialect : new NBTDialect[]{NBTDialect.JAVA, NBTDialect.BEDROCK, NBTDialect.BEDROCK_NETWORK}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            dialect.write(out, tag);
+            byte[] bytes = out.toByteArray();
+
+            ByteArrayOutputStream generic = new ByteArrayOutputStream();
+            DataOutput output = dialect.newOutput(generic);
+            tag.write(output);
+            ((Flushable) output).flush();
+            check(Arrays.equals(bytes, generic.toByteArray()), dialect + ": the dialect's encoder writes what TagType writes");
+
+            check(dialect.read(new ByteArrayInputStream(bytes)).getValue().equals(compound), dialect + ": round trip");
+            check(NamedTag.read(dialect.newInput(new ByteArrayInputStream(bytes))).getValue().equals(compound), dialect + ": TagType reads it back");
+            check(dialect.read(new ByteArrayInputStream(bytes), NBTLimits.UNTRUSTED).getValue().equals(compound), dialect + ": round trip within limits");
+            try {
+                dialect.read(new ByteArrayInputStream(bytes), new NBTLimits(1000, 100, 100));
+                throw new AssertionError(dialect + ": read over the limits");
+            } catch (LimitException expected) {
+            }
+
+            DataInput input = dialect.newInput(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length + 1)));
+            TagType.read(input);
+            input.readUTF();
+            TagType.COMPOUND.skipValue(input);
+            check(input.readByte() == 0, dialect + ": skipping stops right after the compound");
+
+            for (int length = 0; length < bytes.length; length ++) {
+                try {
+                    dialect.read(new ByteArrayInputStream(bytes, 0, length));
+                    throw new AssertionError(dialect + ": read a truncation to " + length + " bytes");
+                } catch (EOFException expected) {
+                }
+            }
+        }
+
+        check(Arrays.equals(encode(-1), new byte[]{1}), "-1 is the zigzag varint 1");
+        check(Arrays.equals(encode(1), new byte[]{2}), "1 is the zigzag varint 2");
+        check(Arrays.equals(encode(-65), new byte[]{(byte) 0x81, 1}), "-65 takes two bytes");
+        check(Arrays.equals(encode(Integer.MIN_VALUE), new byte[]{-1, -1, -1, -1, 15}), "Integer.MIN_VALUE takes five bytes");
+        for (long value : new long[]{0, -1, 1, Integer.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutput output = NBTDialect.BEDROCK_NETWORK.newOutput(bytes);
+            output.writeLong(value);
+            ((Flushable) output).flush();
+            long back = NBTDialect.BEDROCK_NETWORK.newInput(new ByteArrayInputStream(bytes.toByteArray())).readLong();
+            check(back == value, "the varint long " + value + " round trips");
+        }
+
+        byte[] endList = {10, 0, 0, 9, 0, 1, 'l', 0, 0, 0, 0, 1, 0};
+        try {
+            NBTDialect.JAVA.read(new ByteArrayInputStream(endList));
+            throw new AssertionError("read a list of end tags");
+        } catch (EOFException e) {
+            throw new AssertionError("a list of end tags should be rejected as malformed, not truncated");
+        } catch (IOException expected) {
+        }
+        System.out.println("NBTDialect: OK");
+    }
+
+    private static byte[] encode(int value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutput output = NBTDialect.BEDROCK_NETWORK.newOutput(bytes);
+        output.writeInt(value);
+        ((Flushable) output).flush();
+        return bytes.toByteArray();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
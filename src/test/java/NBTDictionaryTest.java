@@ -0,0 +1,122 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.exception.LimitException;
+import me.finalchild.finalnbt.io.NBTDictionary;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that preset-dictionary blobs round trip, beat GZIP on small item stacks, and reject foreign or broken input.
+ */
+public class NBTDictionaryTest {
+
+    private static final String[] IDS = {"minecraft:diamond_sword", "minecraft:stone", "minecraft:oak_planks", "minecraft:iron_pickaxe"};
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(3);
+        List<NamedTag<Compound>> samples = new ArrayList<>();
+        for (int i = 0; i < 200; i ++) {
+            samples.add(item(random));
+        }
+        NBTDictionary dictionary = NBTDictionary.train(samples);
+
+        long gzip = 0;
+        long compressed = 0;
+        for (int i = 0; i < 1000; i ++) {
+            NamedTag<Compound> tag = item(random);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            FinalNBT.writeNBT(out, tag);
+            gzip += out.size();
+            byte[] blob = dictionary.compress(tag);
+            compressed += blob.length;
+            NamedTag<Compound> back = dictionary.decompress(blob);
+            check(back.getName().equals(tag.getName()) && back.getValue().equals(tag.getValue()), "round trip of sample " + i);
+        }
+        System.out.println("Average blob: " + gzip / 1000 + " bytes with GZIP, " + compressed / 1000 + " bytes with the dictionary");
+        check(compressed * 2 < gzip, "the dictionary should at least halve the GZIP size");
+
+        NBTDictionary reloaded = new NBTDictionary(dictionary.getBytes());
+        check(reloaded.getId() == dictionary.getId(), "a reloaded dictionary keeps its id");
+        byte[] blob = dictionary.compress(samples.get(0));
+        check(reloaded.decompress(blob).getValue().equals(samples.get(0).getValue()), "a reloaded dictionary reads old blobs");
+
+        expectFailure(() -> new NBTDictionary(new byte[]{1, 2, 3}).decompress(blob), "a blob of another dictionary");
+        expectFailure(() -> dictionary.decompress(Arrays.copyOf(blob, blob.length - 5)), "a truncated blob");
+        expectFailure(() -> dictionary.decompress(blob, 0, blob.length, new NBTLimits(50, 1000, 100)), "a blob over the limits");
+        System.out.println("NBTDictionary: OK");
+    }
+
+    private static NamedTag<Compound> item(Random random) {
+        Compound item = new Compound();
+        item.put("id", IDS[random.nextInt(IDS.length)]);
+        item.put("Count", (byte) random.nextInt(64));
+        item.put("Slot", (byte) random.nextInt(36));
+        Compound tag = new Compound();
+        tag.put("Damage", random.nextInt(100));
+        tag.put("RepairCost", 0);
+        Compound display = new Compound();
+        display.put("Name", "{\"text\":\"Item " + random.nextInt(1000) + "\"}");
+        tag.put("display", display);
+        TypedList<Compound> enchantments = new TypedList<>(TagType.COMPOUND);
+        Compound enchantment = new Compound();
+        enchantment.put("id", "minecraft:sharpness");
+        enchantment.put("lvl", (short) random.nextInt(5));
+        enchantments.add(enchantment);
+        tag.put("Enchantments", enchantments);
+        item.put("tag", tag);
+        return new NamedTag<>("", item);
+    }
+
+    private interface Action {
+        void run() throws IOException;
+    }
+
+    private static void expectFailure(Action action, String what) {
+        try {
+            action.run();
+        } catch (IOException | LimitException e) {
+            return;
+        }
+        throw new AssertionError("Accepted " + what);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.cache.NBTFileCache;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.PersistentCompound;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Checks that NBTFileCache serves a file from the cache until its modification time or size changes,
+ * that invalidate drops it, and that the weight stays within the maximum.
+ */
+public class NBTFileCacheTest {
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("nbtcache");
+        Path file = directory.resolve("level.dat");
+        try {
+            NBTFileCache cache = new NBTFileCache(1 << 20);
+            FileTime time = FileTime.fromMillis(1500000000000L);
+
+            write(file, compound("aaaa"), time);
+            NamedTag<PersistentCompound> first = cache.get(file);
+            check(first.getValue().equals(compound("aaaa")), "the first get reads the file");
+            check(cache.get(file) == first, "the second get is served from the cache");
+            check(cache.get(directory.resolve(".").resolve("level.dat")) == first, "another path to the same file hits the same entry");
+            check(cache.getHits() == 2 && cache.getMisses() == 1, "two hits and a miss");
+
+            // Same size, another modification time.
+            write(file, compound("bbbb"), FileTime.fromMillis(time.toMillis() + 2000));
+            check(Files.size(file) == sizeOf(compound("aaaa")), "the rewrite keeps the size");
+            NamedTag<PersistentCompound> second = cache.get(file);
+            check(second != first && second.getValue().equals(compound("bbbb")), "a new modification time rereads the file");
+            check(first.getValue().equals(compound("aaaa")), "the old compound is unchanged");
+
+            // Another size, the same modification time.
+            write(file, compound("cdefghijklmnopqrstuv"), FileTime.fromMillis(time.toMillis() + 2000));
+            check(Files.size(file) != sizeOf(compound("bbbb")), "the rewrite changes the size");
+            NamedTag<PersistentCompound> third = cache.get(file);
+            check(third != second && third.getValue().equals(compound("cdefghijklmnopqrstuv")), "a new size rereads the file");
+            check(cache.size() == 1, "a reread replaces the entry");
+
+            check(cache.get(file) == third, "the unchanged file is served from the cache");
+            cache.invalidate(file);
+            check(cache.size() == 0 && cache.getWeight() == 0, "invalidate drops the entry and its weight");
+            check(cache.get(file) != third, "an invalidated file is reread");
+
+            NBTFileCache small = new NBTFileCache(cache.getWeight() * 2 + 1);
+            Path[] files = new Path[5];
+            for (int i = 0; i < files.length; i ++) {
+                files[i] = directory.resolve(i + ".dat");
+                write(files[i], compound("cdefghijklmnopqrstuv"), time);
+                small.get(files[i]);
+                check(small.getWeight() <= small.getMaxWeight(), "the weight stays within the maximum");
+            }
+            check(small.size() == 2 && small.getEvictions() == 3, "the least recently used entries are evicted");
+            NamedTag<PersistentCompound> last = small.get(files[4]);
+            check(small.get(files[4]) == last, "the most recently used entry is kept");
+            for (Path p : files) {
+                Files.delete(p);
+            }
+
+            NBTFileCache tiny = new NBTFileCache(1);
+            tiny.get(file);
+            check(tiny.size() == 0 && tiny.getWeight() == 0, "an entry heavier than the maximum isn't kept");
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+        System.out.println("NBTFileCache: OK");
+    }
+
+    private static Compound compound(String value) {
+        Compound compound = new Compound();
+        compound.put("value", value);
+        compound.put("number", 42);
+        return compound;
+    }
+
+    private static void write(Path file, Compound compound, FileTime time) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            FinalNBT.writeNBT(out, new NamedTag<>("", compound));
+        }
+        Files.setLastModifiedTime(file, time);
+    }
+
+    private static long sizeOf(Compound compound) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FinalNBT.writeNBT(out, new NamedTag<>("", compound));
+        return out.size();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.exception.LimitException;
+import me.finalchild.finalnbt.io.ByteArrayNBTDecoder;
+import me.finalchild.finalnbt.io.NBTDialect;
+import me.finalchild.finalnbt.io.NBTValidator;
+import me.finalchild.finalnbt.io.ParallelNBTDecoder;
+import me.finalchild.finalnbt.type.Compound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Checks that every decoder rejects adversarial headers with an IOException or a LimitException,
+ * with and without limits, instead of allocating what the header claims or accepting it:
+ * negative list lengths, lists of end tags, and huge string and array lengths.
+ */
+public class NBTLimitsTest {
+
+    interface Body {
+        void write(DataOutput output, NBTDialect dialect) throws IOException;
+    }
+
+    interface Decoder {
+        void decode(byte[] bytes) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, Body> bodies = new LinkedHashMap<>();
+        bodies.put("a negative list length", (output, dialect) -> {
+            output.writeByte(9);
+            output.writeUTF("l");
+            output.writeByte(3);
+            output.writeInt(-60000);
+        });
+        bodies.put("a negative list length of compounds", (output, dialect) -> {
+            output.writeByte(9);
+            output.writeUTF("l");
+            output.writeByte(10);
+            output.writeInt(-1);
+        });
+        bodies.put("a list of end tags", (output, dialect) -> {
+            output.writeByte(9);
+            output.writeUTF("l");
+            output.writeByte(0);
+            output.writeInt(1000000);
+        });
+        bodies.put("a huge string length", (output, dialect) -> {
+            output.writeByte(8);
+            output.writeUTF("s");
+            hugeStringLength(output, dialect);
+        });
+        bodies.put("a huge name length", (output, dialect) -> {
+            output.writeByte(1);
+            hugeStringLength(output, dialect);
+        });
+        bodies.put("a huge byte array length", (output, dialect) -> {
+            output.writeByte(7);
+            output.writeUTF("b");
+            output.writeInt(Integer.MAX_VALUE);
+        });
+        bodies.put("a huge int array length", (output, dialect) -> {
+            output.writeByte(11);
+            output.writeUTF("i");
+            output.writeInt(Integer.MAX_VALUE);
+        });
+        bodies.put("a negative int array length", (output, dialect) -> {
+            output.writeByte(11);
+            output.writeUTF("i");
+            output.writeInt(-1);
+        });
+        bodies.put("a huge long list length", (output, dialect) -> {
+            output.writeByte(9);
+            output.writeUTF("l");
+            output.writeByte(4);
+            output.writeInt(Integer.MAX_VALUE);
+        });
+
+        for (Map.Entry<String, Body> body : bodies.entrySet()) {
+            for (NBTDialect dialect : new NBTDialect[]{NBTDialect.JAVA, NBTDialect.BEDROCK, NBTDialect.BEDROCK_NETWORK}) {
+                byte[] bytes = encode(dialect, body.getValue());
+                String what = dialect + ", " + body.getKey();
+                reject(what + ", dialect", bytes, in -> dialect.read(new ByteArrayInputStream(in)));
+                reject(what + ", dialect within limits", bytes, in -> dialect.read(new ByteArrayInputStream(in), NBTLimits.UNTRUSTED));
+                reject(what + ", TagType over the dialect", bytes, in -> NamedTag.read(dialect.newInput(new ByteArrayInputStream(in))));
+                reject(what + ", TagType over the dialect within limits", bytes, in -> {
+                    DataInput input = dialect.newInput(new ByteArrayInputStream(in));
+                    FinalNBT.setLimits(input, NBTLimits.UNTRUSTED);
+                    NamedTag.read(input);
+                });
+            }
+
+            byte[] bytes = encode(NBTDialect.JAVA, body.getValue());
+            String what = body.getKey();
+            reject(what + ", DataInputStream", bytes, in -> NamedTag.read(new DataInputStream(new ByteArrayInputStream(in))));
+            reject(what + ", DataInputStream within limits", bytes, in -> {
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(in));
+                FinalNBT.setLimits(input, NBTLimits.UNTRUSTED);
+                NamedTag.read(input);
+            });
+            reject(what + ", readNBT", gzip(bytes), in -> FinalNBT.readNBT(new ByteArrayInputStream(in)));
+            reject(what + ", readNBT within limits", gzip(bytes), in -> FinalNBT.readNBT(new ByteArrayInputStream(in), NBTLimits.UNTRUSTED));
+            reject(what + ", byte array", bytes, ByteArrayNBTDecoder::decode);
+            reject(what + ", byte array within limits", bytes, in -> new ByteArrayNBTDecoder(in).limits(NBTLimits.UNTRUSTED).readNamedTag());
+            reject(what + ", parallel", bytes, in -> new ParallelNBTDecoder().decode(in));
+            check(!NBTValidator.check(bytes).isValid(), what + ": the validator rejects it");
+            check(!new NBTValidator().limits(NBTLimits.UNTRUSTED).validate(bytes, 0, bytes.length).isValid(), what + ": the validator rejects it within limits");
+        }
+        Compound large = new Compound();
+        Byte[] bytes = new Byte[100000];
+        Integer[] ints = new Integer[100000];
+        for (int i = 0; i < bytes.length; i ++) {
+            bytes[i] = (byte) i;
+            ints[i] = i * 31;
+        }
+        large.put("bytes", bytes);
+        large.put("ints", ints);
+        for (NBTDialect dialect : new NBTDialect[]{NBTDialect.JAVA, NBTDialect.BEDROCK, NBTDialect.BEDROCK_NETWORK}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            dialect.write(out, new NamedTag<>("", large));
+            check(dialect.read(new ByteArrayInputStream(out.toByteArray())).getValue().equals(large), dialect + ": arrays longer than the first allocation round trip");
+            check(NamedTag.read(dialect.newInput(new ByteArrayInputStream(out.toByteArray()))).getValue().equals(large), dialect + ": TagType reads arrays longer than the first allocation");
+        }
+        System.out.println("NBTLimits: OK");
+    }
+
+    /**
+     * Encode a root compound holding the body, without its end tag.
+     */
+    private static byte[] encode(NBTDialect dialect, Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutput output = dialect.newOutput(bytes);
+        output.writeByte(10);
+        output.writeUTF("");
+        body.write(output, dialect);
+        ((Flushable) output).flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the longest string length the dialect can encode, with no string after it.
+     */
+    private static void hugeStringLength(DataOutput output, NBTDialect dialect) throws IOException {
+        if (dialect == NBTDialect.BEDROCK_NETWORK) {
+            // The unsigned varint 2^31-1.
+            output.write(new byte[]{-1, -1, -1, -1, 7});
+        } else {
+            output.writeShort(0xFFFF);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static void reject(String what, byte[] bytes, Decoder decoder) {
+        try {
+            decoder.decode(bytes);
+            throw new AssertionError(what + ": decoded");
+        } catch (IOException | LimitException expected) {
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.FinalNBT;
+import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.query.NBTTransform;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Checks NBTTransform's renames and inserted defaults against reading the whole tree and changing the Compound,
+ * including renames onto keys that already exist, where whichever entry comes first is kept.
+ */
+public class NBTTransformTest {
+
+    public static void main(String[] args) throws IOException {
+        bigtest();
+        collisions();
+        System.out.println("NBTTransform: OK");
+    }
+
+    private static void bigtest() throws IOException {
+        NBTTransform transform = new NBTTransform()
+                .rename("\"nested compound test\".egg", "chicken")
+                .insertDefault("\"nested compound test\".chicken", "not inserted")
+                .insertDefault("\"nested compound test\".bacon", "crispy")
+                .insertDefault("\"listTest (compound)\"[].name", "not inserted")
+                .insertDefault("\"listTest (compound)\"[].id", 7)
+                .insertDefault("intTest", 0)
+                .insertDefault("DataVersion", 1343);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transform.apply(new FileInputStream("bigtest.nbt"), out);
+        Compound actual = FinalNBT.readNBT(new ByteArrayInputStream(out.toByteArray())).getValue();
+
+        Compound expected = FinalNBT.readNBT(new FileInputStream("bigtest.nbt")).getValue();
+        Compound nested = expected.get("nested compound test");
+        nested.put("chicken", nested.remove("egg"));
+        nested.put("bacon", "crispy");
+        TypedList<Compound> list = expected.get("listTest (compound)");
+        for (Compound element : list) {
+            element.put("id", 7);
+        }
+        expected.put("DataVersion", 1343);
+        check(actual.equals(expected), "the transformed bigtest is the mutated one");
+    }
+
+    private static void collisions() throws IOException {
+        // Whichever of the renamed and the existing entry comes first is kept.
+        byte[] ab = encode("a", 1, "b", 2);
+        byte[] ba = encode("b", 2, "a", 1);
+        NBTTransform rename = new NBTTransform().rename("a", "b");
+        check(transform(rename, ab).equals(renamed(ab, "a", "b", true)), "a renamed entry before the existing one is kept");
+        check(transform(rename, ba).equals(renamed(ba, "a", "b", false)), "an existing entry before the renamed one is kept");
+        check(transform(rename, ab).size() == 1 && transform(rename, ab).<Integer>get("b") == 1, "{a:1,b:2} becomes {b:1}");
+        check(transform(rename, ba).size() == 1 && transform(rename, ba).<Integer>get("b") == 2, "{b:2,a:1} becomes {b:2}");
+
+        // Two entries renamed to the same key.
+        NBTTransform both = new NBTTransform().rename("a", "x").rename("b", "x");
+        Compound expected = read(ab);
+        expected.put("x", expected.remove("a"));
+        expected.remove("b");
+        check(transform(both, ab).equals(expected), "of two entries renamed to one key, the first is kept");
+
+        // A default is checked against the key as it is named after renaming.
+        NBTTransform defaults = new NBTTransform().rename("a", "b").insertDefault("b", 9).insertDefault("c", 3);
+        byte[] a = encode("a", 1);
+        expected = read(a);
+        expected.put("b", expected.remove("a"));
+        expected.put("c", 3);
+        check(transform(defaults, a).equals(expected), "a renamed key isn't inserted again");
+        expected = read(encode());
+        expected.put("b", 9);
+        expected.put("c", 3);
+        check(transform(defaults, encode()).equals(expected), "defaults fill an empty compound");
+    }
+
+    /**
+     * Read the compound and rename a key onto another the way a transform should.
+     */
+    private static Compound renamed(byte[] bytes, String from, String to, boolean fromFirst) throws IOException {
+        Compound compound = read(bytes);
+        Object value = compound.remove(from);
+        if (fromFirst) {
+            compound.put(to, value);
+        }
+        return compound;
+    }
+
+    private static Compound transform(NBTTransform transform, byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataInput in = new DataInputStream(new ByteArrayInputStream(bytes));
+        DataOutput output = new DataOutputStream(out);
+        transform.apply(in, output);
+        return read(out.toByteArray());
+    }
+
+    private static Compound read(byte[] bytes) throws IOException {
+        return NamedTag.<Compound>read(new DataInputStream(new ByteArrayInputStream(bytes))).getValue();
+    }
+
+    /**
+     * Encode a root compound of int entries in the given order.
+     */
+    private static byte[] encode(Object... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        for (int i = 0; i < entries.length; i += 2) {
+            out.writeByte(3);
+            out.writeUTF((String) entries[i]);
+            out.writeInt((Integer) entries[i + 1]);
+        }
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
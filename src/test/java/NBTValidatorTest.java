@@ -0,0 +1,171 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.NBTLimits;
+import me.finalchild.finalnbt.exception.DepthException;
+import me.finalchild.finalnbt.exception.LimitException;
+import me.finalchild.finalnbt.io.ByteArrayNBTDecoder;
+import me.finalchild.finalnbt.io.NBTValidator;
+import me.finalchild.finalnbt.type.Compound;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Checks that NBTValidator accepts exactly what ByteArrayNBTDecoder decodes, on truncated and corrupted inputs,
+ * and that it names the right error for hand-made malformed ones.
+ */
+public class NBTValidatorTest {
+
+    private static final NBTLimits LARGE = new NBTLimits(1L << 30, 1 << 20, 1 << 20);
+    private static final NBTLimits SMALL = new NBTLimits(40000, 2000, 100);
+
+    public static void main(String[] args) throws IOException {
+        byte[] raw = inflate("bigtest.nbt");
+        check(NBTValidator.check(raw).isValid(), "bigtest.nbt is valid");
+
+        NBTValidator validator = new NBTValidator();
+        NBTValidator limited = new NBTValidator().limits(SMALL);
+        for (int length = 0; length < raw.length; length ++) {
+            byte[] data = Arrays.copyOf(raw, length);
+            check(!validator.validate(data, 0, length).isValid(), "a truncation to " + length + " bytes is invalid");
+        }
+        Random random = new Random(5);
+        int inputs = 40000;
+        for (int i = 0; i < inputs; i ++) {
+            byte[] data = raw.clone();
+            for (int k = 1 + random.nextInt(3); k > 0; k --) {
+                data[random.nextInt(data.length)] = (byte) random.nextInt(256);
+            }
+            agree(validator, LARGE, data, i);
+            agree(limited, SMALL, data, i);
+        }
+        System.out.println("Validator agrees with the decoder on " + inputs + " corrupted inputs");
+
+        check(NBTValidator.check(Arrays.copyOf(raw, raw.length + 1)).getError() == NBTValidator.Error.TRAILING_DATA, "trailing data");
+        byte[] list = raw.clone();
+        list[0] = 9;
+        check(NBTValidator.check(list).getError() == NBTValidator.Error.NOT_A_COMPOUND, "a root that isn't a compound");
+        check(limited.validate(raw, 0, raw.length).getError() == NBTValidator.Error.LIMIT_EXCEEDED, "data over the limits");
+
+        expect(root(out -> {
+            out.writeByte(9);
+            out.writeUTF("list");
+            out.writeByte(0);
+            out.writeInt(Integer.MAX_VALUE);
+        }), NBTValidator.Error.BAD_LIST_TYPE);
+        expect(root(out -> {
+            out.writeByte(7);
+            out.writeUTF("bytes");
+            out.writeInt(-1);
+        }), NBTValidator.Error.NEGATIVE_LENGTH);
+        expect(root(out -> {
+            out.writeByte(8);
+            out.writeUTF("string");
+            out.writeShort(1);
+            out.writeByte(0xFF);
+        }), NBTValidator.Error.MALFORMED_STRING);
+        expect(root(out -> {
+            out.writeByte(15);
+            out.writeUTF("unknown");
+        }), NBTValidator.Error.UNKNOWN_TAG_TYPE);
+        expect(root(out -> {
+            for (int i = 0; i < 600; i ++) {
+                out.writeByte(10);
+                out.writeUTF("");
+            }
+            for (int i = 0; i < 600; i ++) {
+                out.writeByte(0);
+            }
+        }), NBTValidator.Error.TOO_DEEP);
+        System.out.println("NBTValidator: OK");
+    }
+
+    private static void agree(NBTValidator validator, NBTLimits limits, byte[] data, int input) {
+        NBTValidator.Result result = validator.validate(data, 0, data.length);
+        boolean decoded;
+        try {
+            ByteArrayNBTDecoder decoder = new ByteArrayNBTDecoder(data).limits(limits);
+            decoded = decoder.readNamedTag().getValue() instanceof Compound && decoder.position() == data.length;
+        } catch (IOException | LimitException | DepthException e) {
+            decoded = false;
+        }
+        check(result.isValid() == decoded, "input " + input + ": the validator says " + result + " but the decoder " + (decoded ? "accepts it" : "rejects it"));
+    }
+
+    private static void expect(byte[] data, NBTValidator.Error error) {
+        NBTValidator.Result result = NBTValidator.check(data);
+        check(result.getError() == error, "expected " + error + " but got " + result);
+        boolean decoded;
+        try {
+            new ByteArrayNBTDecoder(data).limits(LARGE).readNamedTag();
+            decoded = true;
+        } catch (IOException | LimitException | DepthException e) {
+            decoded = false;
+        }
+        check(!decoded, "the decoder rejects what the validator finds " + error);
+    }
+
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * A named root compound around the payload.
+     */
+    private static byte[] root(Payload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(10);
+        out.writeUTF("");
+        payload.write(out);
+        out.writeByte(0);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] inflate(String file) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.type.PackedArray;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks PackedArray against a plain int array for every width in both layouts,
+ * including 32-bit values and values that span two ints.
+ */
+public class PackedArrayTest {
+
+    public static void main(String[] args) {
+        Random random = new Random(13);
+        for (int bits = 1; bits <= 32; bits ++) {
+            for (boolean spanning : new boolean[]{false, true}) {
+                model(random, bits, spanning, 0);
+                model(random, bits, spanning, 1);
+                model(random, bits, spanning, 4096);
+            }
+        }
+
+        check(PackedArray.wordsFor(5, 4096, false) == 683, "4096 5-bit values take 683 ints without spanning");
+        check(PackedArray.wordsFor(5, 4096, true) == 640, "4096 5-bit values take 640 ints with spanning");
+        check(PackedArray.wordsFor(32, 3, true) == 3 && PackedArray.wordsFor(32, 3, false) == 3, "32-bit values take an int each");
+        check(PackedArray.bitsFor(1) == 1 && PackedArray.bitsFor(2) == 1 && PackedArray.bitsFor(17) == 5, "bits for a palette");
+
+        // Index 6 of 5-bit values starts at bit 30, so its top three bits go in the next int.
+        PackedArray spanning = new PackedArray(5, 8, true);
+        spanning.set(6, 0b11111);
+        check(spanning.getWords()[0] == 0xC0000000 && spanning.getWords()[1] == 0b111, "a value spanning two ints");
+        spanning.set(6, 0b00100);
+        check(spanning.getWords()[0] == 0 && spanning.getWords()[1] == 0b001 && spanning.get(6) == 0b00100, "overwriting a spanning value");
+        PackedArray padded = new PackedArray(5, 8, false);
+        padded.set(6, 0b11111);
+        check(padded.getWords()[0] == 0 && padded.getWords()[1] == 0b11111, "without spanning, the value starts the next int");
+
+        PackedArray full = new PackedArray(32, 3, true);
+        full.set(1, -1);
+        full.set(2, Integer.MIN_VALUE);
+        check(full.get(0) == 0 && full.get(1) == -1 && full.get(2) == Integer.MIN_VALUE, "32-bit values keep their sign bit");
+        check(Arrays.equals(PackedArray.of(full.toTag(), 32, 3, true).getWords(), full.getWords()), "an int array tag round trip");
+
+        PackedArray narrow = new PackedArray(4, 10, true);
+        narrow.set(3, 7);
+        int[] before = narrow.getWords().clone();
+        expectIllegal(() -> narrow.set(3, 16), "a value wider than the bits");
+        expectIllegal(() -> narrow.packFrom(new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 16}), "packing a value wider than the bits");
+        check(Arrays.equals(before, narrow.getWords()), "a rejected value leaves the array untouched");
+        expectIllegal(() -> narrow.resize(2), "shrinking below a value's width");
+        expectIllegal(() -> new PackedArray(33, 1, true), "33 bits");
+        expectIllegal(() -> PackedArray.wrap(new int[1], 5, 8, true), "too few ints for the size");
+        try {
+            narrow.get(10);
+            throw new AssertionError("read past the end");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        System.out.println("PackedArray: OK");
+    }
+
+    private static void model(Random random, int bits, boolean spanning, int size) {
+        String where = bits + " bits, " + (spanning ? "spanning" : "padded") + ", " + size + " values";
+        PackedArray array = new PackedArray(bits, size, spanning);
+        int[] model = new int[size];
+        int mask = bits == 32 ? -1 : (1 << bits) - 1;
+        for (int i = 0; i < size * 2; i ++) {
+            int index = random.nextInt(size);
+            int value = random.nextInt() & mask;
+            model[index] = value;
+            array.set(index, value);
+        }
+        for (int i = 0; i < size; i ++) {
+            check(array.get(i) == model[i], where + ": get " + i);
+        }
+        int[] unpacked = new int[size];
+        array.unpackTo(unpacked);
+        check(Arrays.equals(unpacked, model), where + ": unpackTo");
+
+        PackedArray packed = new PackedArray(bits, size, spanning);
+        packed.packFrom(model);
+        check(Arrays.equals(packed.getWords(), array.getWords()), where + ": packFrom writes what set writes");
+
+        if (bits < 32) {
+            PackedArray wider = array.resize(bits + 1);
+            int[] widened = new int[size];
+            wider.unpackTo(widened);
+            check(Arrays.equals(widened, model), where + ": resizing up");
+        }
+    }
+
+    private static void expectIllegal(Runnable action, String what) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("Accepted " + what);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * This file is part of finalnbt, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Final Child <https://finalchild.me>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+import me.finalchild.finalnbt.TagType;
+import me.finalchild.finalnbt.type.Compound;
+import me.finalchild.finalnbt.type.PersistentCompound;
+import me.finalchild.finalnbt.type.PersistentTypedList;
+import me.finalchild.finalnbt.type.TypedList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks PersistentCompound and PersistentTypedList against HashMap and ArrayList models,
+ * including colliding hash codes, and that old versions and callers' objects are never changed.
+ */
+public class PersistentCompoundTest {
+
+    public static void main(String[] args) {
+        modelCompound();
+        collisions();
+        copies();
+        modelList();
+        System.out.println("PersistentCompound: OK");
+    }
+
+    private static void modelCompound() {
+        Random random = new Random(7);
+        Map<String, Object> model = new HashMap<>();
+        PersistentCompound compound = PersistentCompound.empty();
+        List<PersistentCompound> versions = new ArrayList<>();
+        List<Map<String, Object>> models = new ArrayList<>();
+        for (int i = 0; i < 20000; i ++) {
+            String key = "k" + random.nextInt(3000);
+            if (random.nextInt(4) == 0) {
+                model.remove(key);
+                compound = compound.without(key);
+            } else {
+                model.put(key, i);
+                compound = compound.with(key, i);
+            }
+            if (i % 1000 == 0) {
+                versions.add(compound);
+                models.add(new HashMap<>(model));
+            }
+        }
+        check(compound.size() == model.size(), "size after random updates");
+        check(compound.equals(new Compound(new HashMap<>(model))), "contents after random updates");
+        check(compound.hashCode() == new Compound(new HashMap<>(model)).hashCode(), "hash code after random updates");
+        for (int i = 0; i < versions.size(); i ++) {
+            check(versions.get(i).equals(new Compound(new HashMap<>(models.get(i)))), "version " + i + " is unchanged");
+        }
+        check(compound.without("missing") == compound, "removing a missing key returns the same compound");
+
+        PersistentCompound.Builder builder = compound.toBuilder();
+        PersistentCompound before = builder.snapshot();
+        builder.put("k0", "changed");
+        builder.remove("k1");
+        check(!"changed".equals(before.get("k0")), "a snapshot doesn't see later puts");
+        check(before.containsKey("k1") == model.containsKey("k1"), "a snapshot doesn't see later removals");
+        check("changed".equals(builder.snapshot().get("k0")) && !builder.snapshot().containsKey("k1"), "the builder's next snapshot does");
+    }
+
+    private static void collisions() {
+        // All of these have the same String.hashCode().
+        String[] keys = {"AaAa", "AaBB", "BBAa", "BBBB"};
+        for (String key : keys) {
+            check(key.hashCode() == keys[0].hashCode(), "the keys collide");
+        }
+        PersistentCompound compound = PersistentCompound.empty();
+        for (int i = 0; i < keys.length; i ++) {
+            compound = compound.with(keys[i], i);
+        }
+        check(compound.size() == keys.length, "colliding keys are all kept");
+        for (int i = 0; i < keys.length; i ++) {
+            check(Integer.valueOf(i).equals(compound.get(keys[i])), "colliding key " + keys[i] + " maps to its own value");
+        }
+        PersistentCompound replaced = compound.with("AaBB", 10);
+        check(replaced.size() == keys.length && Integer.valueOf(10).equals(replaced.get("AaBB")), "replacing a colliding key");
+        check(Integer.valueOf(1).equals(compound.get("AaBB")), "replacing doesn't change the old compound");
+        PersistentCompound removed = compound.without("BBAa");
+        check(removed.size() == 3 && !removed.containsKey("BBAa"), "removing a colliding key");
+        check(Integer.valueOf(3).equals(removed.get("BBBB")) && Integer.valueOf(0).equals(removed.get("AaAa")), "removing leaves the other colliding keys");
+        PersistentCompound emptied = removed.without("AaAa").without("AaBB").without("BBBB");
+        check(emptied.isEmpty(), "removing every colliding key");
+        check(compound.equals(PersistentCompound.copyOf(compound.toBuilder().snapshot())), "a collision node survives a builder round trip");
+    }
+
+    private static void copies() {
+        Compound nested = new Compound();
+        nested.put("a", 1);
+        Byte[] bytes = {1, 2, 3};
+        PersistentCompound compound = PersistentCompound.empty().with("nested", nested).with("bytes", bytes);
+        nested.put("a", 2);
+        bytes[0] = 9;
+        check(Integer.valueOf(1).equals(((Compound) compound.get("nested")).get("a")), "a mutable compound is copied on insert");
+        check(compound.get("nested") instanceof PersistentCompound, "a nested compound is made persistent");
+        check(((Byte[]) compound.get("bytes"))[0] == 1, "an array is copied on insert");
+        ((Byte[]) compound.get("bytes"))[1] = 9;
+        check(((Byte[]) compound.get("bytes"))[1] == 2, "an array is copied on the way out");
+
+        TypedList<Integer> list = new TypedList<>(TagType.INT);
+        list.add(1);
+        PersistentCompound.Builder builder = PersistentCompound.builder();
+        builder.put("list", list);
+        list.add(2);
+        check(((TypedList<?>) builder.snapshot().get("list")).size() == 1, "Builder.put copies a mutable list");
+
+        PersistentCompound.Builder editing = compound.toBuilder();
+        ((Byte[]) editing.put("bytes", new Byte[]{4}))[0] = 9;
+        editing.put("bytes", new Byte[]{4});
+        ((Byte[]) editing.remove("bytes"))[0] = 9;
+        check(((Byte[]) compound.get("bytes"))[0] == 1, "arrays returned by Builder.put and remove are copies");
+
+        PersistentTypedList<Integer[]> arrays = PersistentTypedList.<Integer[]>empty(TagType.INT_ARRAY).withAdded(new Integer[]{1});
+        PersistentTypedList.Builder<Integer[]> arraysBuilder = arrays.toBuilder();
+        arraysBuilder.set(0, new Integer[]{2})[0] = 9;
+        arrays.toBuilder().removeLast()[0] = 9;
+        check(arrays.get(0)[0] == 1, "arrays returned by the list builder are copies");
+        try {
+            compound.put("x", 1);
+            throw new AssertionError("put on a PersistentCompound");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    private static void modelList() {
+        List<Integer> model = new ArrayList<>();
+        PersistentTypedList<Integer> list = PersistentTypedList.empty(TagType.INT);
+        // Past one chunk, one full trie level and into the next.
+        for (int i = 0; i < 1100; i ++) {
+            model.add(i);
+            list = list.withAdded(i);
+        }
+        check(list.equals(model), "appended elements");
+        PersistentTypedList<Integer> full = list;
+        Random random = new Random(11);
+        for (int i = 0; i < 2000; i ++) {
+            int index = random.nextInt(model.size());
+            model.set(index, -i);
+            list = list.with(index, -i);
+        }
+        check(list.equals(model), "replaced elements");
+        list = list.without(40);
+        model.remove(40);
+        check(list.equals(model), "removing from the middle");
+        while (!model.isEmpty()) {
+            model.remove(model.size() - 1);
+            list = list.withoutLast();
+            if (model.size() % 97 == 0) {
+                check(list.equals(model), "removing the last element down to " + model.size());
+            }
+        }
+        check(list.isEmpty(), "removing every element");
+        for (int i = 0; i < full.size(); i ++) {
+            check(full.get(i) == i, "an old version is unchanged at " + i);
+        }
+
+        PersistentTypedList.Builder<Integer> builder = full.toBuilder();
+        PersistentTypedList<Integer> snapshot = builder.snapshot();
+        builder.set(0, -1);
+        builder.add(5000);
+        check(snapshot.get(0) == 0 && snapshot.size() == 1100, "a list snapshot doesn't see later changes");
+        check(builder.snapshot().get(0) == -1 && builder.snapshot().size() == 1101, "the builder's next snapshot does");
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+}
@@ -26,6 +26,9 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import me.finalchild.finalnbt.FinalNBT;
 import me.finalchild.finalnbt.NamedTag;
+import me.finalchild.finalnbt.snbt.SNBTReader;
+import me.finalchild.finalnbt.snbt.SNBTWriter;
+import me.finalchild.finalnbt.type.Compound;
 import me.finalchild.finalnbt.type.TypedList;
 
 import java.io.FileInputStream;
@@ -43,6 +46,11 @@ public class Test {
         System.out.println(origin);
 
         FinalNBT.writeNBT(new FileOutputStream("bigtestcopied.nbt"), nbt, TestType.class);
+
+        NamedTag<Compound> raw = FinalNBT.readNBT(new FileInputStream("bigtest.nbt"));
+        String snbt = SNBTWriter.toString(raw.getValue());
+        System.out.println(snbt);
+        System.out.println("SNBT round trip: " + SNBTReader.parseCompound(snbt).equals(raw.getValue()));
         /*
         Map<String, Object> nbtFromJson = gson.fromJson(origin, new TypeToken<Map<String, Object>>(){}.getType());
         String doubleConverted = gson.toJson(nbtFromJson);